@@ -0,0 +1,150 @@
+package persistence;
+
+import ui.GamePanel;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Represents a store that saves and loads games on a background thread, so
+ * that the caller (typically the Swing event dispatch thread) never waits for
+ * the disk. Saves work from what changed in the game, captured by the caller,
+ * so the game can keep changing while the change is written. Requests run one at a
+ * time in the order they were made, and every callback is run on the
+ * callback executor given to the store.
+ */
+public class AsyncGameStore {
+    private static AsyncGameStore theStore; // Shared store, so that all saves are ordered
+
+    private final ExecutorService io; // Runs the file I/O, one request at a time
+    private final Executor callbacks; // Runs progress and completion callbacks
+    private final SaveStore store; // Slots the games are saved in
+
+    /**
+     * Represents the receiver of the progress and outcome of a request. Exactly
+     * one of onSuccess or onFailure is called, after any progress updates.
+     */
+    public interface Callback<T> {
+        /*
+         * EFFECTS: Reports what the request is doing now.
+         */
+        default void onProgress(String stage) {
+        }
+
+        /*
+         * EFFECTS: Reports that the request finished with the given result.
+         */
+        void onSuccess(T result);
+
+        /*
+         * EFFECTS: Reports that the request failed.
+         */
+        void onFailure(Exception e);
+    }
+
+    /*
+     * REQUIRES: store and callbacks are not null
+     * EFFECTS: Constructs a store that saves to the slots of store, runs its
+     * I/O on a new daemon thread and its callbacks on callbacks.
+     */
+    public AsyncGameStore(SaveStore store, Executor callbacks) {
+        this.store = store;
+        this.callbacks = callbacks;
+        this.io = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "game-store-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the shared store, which saves to the default SaveStore
+     * and whose callbacks run on the Swing event dispatch thread.
+     */
+    public static synchronized AsyncGameStore getInstance() {
+        if (theStore == null) {
+            theStore = new AsyncGameStore(SaveStore.getInstance(), SwingUtilities::invokeLater);
+        }
+        return theStore;
+    }
+
+    /*
+     * REQUIRES: called on the thread that changes game
+     * EFFECTS: Captures what changed in game since its last save to slot, then
+     * writes it in the background and reports the outcome to callback. Only
+     * the capture reads the game; a full snapshot is copied for the writer
+     * when one is due.
+     */
+    public void save(GamePanel game, String slot, Callback<Void> callback) {
+        SaveStore.Pending pending = store.capture(slot, game);
+        io.execute(() -> {
+            try {
+                progress(callback, "Saving " + slot);
+                store.commit(pending);
+                callbacks.execute(() -> callback.onSuccess(null));
+            } catch (IOException | RuntimeException e) {
+                callbacks.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    /*
+     * EFFECTS: Deletes slot, with its backups, checkpoints and index entry, in
+     * the background and reports the outcome to callback.
+     */
+    public void delete(String slot, Callback<Void> callback) {
+        io.execute(() -> {
+            try {
+                progress(callback, "Deleting " + slot);
+                store.delete(slot);
+                callbacks.execute(() -> callback.onSuccess(null));
+            } catch (IOException | RuntimeException e) {
+                callbacks.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    /*
+     * EFFECTS: Reads and rebuilds the game saved in slot, or in its newest
+     * autosave checkpoint if that is more recent, in the background and hands
+     * it to callback.
+     */
+    public void load(String slot, Callback<GamePanel> callback) {
+        io.execute(() -> {
+            try {
+                progress(callback, "Loading " + slot);
+                GamePanel game = store.load(slot);
+                callbacks.execute(() -> callback.onSuccess(game));
+            } catch (IOException | RuntimeException e) {
+                callbacks.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    /*
+     * EFFECTS: Reads the index of saved slots in the background and hands it
+     * to callback, most recently saved first.
+     */
+    public void list(Callback<List<SaveStore.Entry>> callback) {
+        io.execute(() -> {
+            try {
+                List<SaveStore.Entry> entries = store.list();
+                callbacks.execute(() -> callback.onSuccess(entries));
+            } catch (IOException | RuntimeException e) {
+                callbacks.execute(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    /*
+     * EFFECTS: Reports stage to callback on the callback executor.
+     */
+    private void progress(Callback<?> callback, String stage) {
+        callbacks.execute(() -> callback.onProgress(stage));
+    }
+}
@@ -0,0 +1,333 @@
+package persistence;
+
+import model.Event;
+import model.EventLog;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Represents an autosave service that checkpoints a game while it is played.
+ * The game thread reports each move; once enough moves have been made, or
+ * moves have gone unsaved for long enough, a snapshot is taken on the game
+ * thread and written in the background, so play never waits for the disk.
+ * Nothing is written while the game is idle, and if checkpoints are due
+ * faster than they can be written, only the newest one waiting is written.
+ * A game loop that waits for input should wait no longer than nextDue(), or
+ * call idle() before blocking, so that the interval is kept while it waits.
+ *
+ * Checkpoints are kept in a ring of ringSize files beside the save,
+ * destination.auto.0, destination.auto.1, ..., the oldest overwritten first.
+ * Each is written atomically by GameWriter, and newest() tells whether one
+ * is more recent than the save itself.
+ */
+public class Autosaver {
+    public static final String SUFFIX = ".auto."; // Checkpoints are destination.auto.0, .1, ...
+    public static final int DEFAULT_RING_SIZE = 4; // Checkpoints kept on disk
+    public static final int DEFAULT_MOVES = 25; // Moves between checkpoints
+    public static final long DEFAULT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30); // Longest a move goes unsaved
+
+    private static final ScheduledExecutorService io = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    }); // Writes the checkpoints of every autosaver, one at a time
+
+    private final String destination; // Save file the checkpoints belong to
+    private final Supplier<JSONObject> snapshots; // Takes a snapshot of the game, on the game thread
+    private final int ringSize; // Number of checkpoint files
+    private final int movesPerCheckpoint; // Moves that make a checkpoint due
+    private final long intervalNanos; // Time after an unsaved move that makes a checkpoint due
+    private final AtomicReference<JSONObject> pending = new AtomicReference<>(); // Snapshot waiting to be written
+    private int unsavedMoves; // Moves since the last checkpoint, on the game thread
+    private long firstUnsavedAt; // System.nanoTime of the first of those moves
+    private int nextSlot = -1; // Ring slot written next, on the I/O thread; -1 until found
+    private ScheduledFuture<?> idleCheckpoint; // Checkpoint written if play stays idle, or null; game thread
+
+    /*
+     * REQUIRES: destination and snapshots are not null
+     * EFFECTS: Constructs an autosaver for destination with the default ring
+     * size, moves and interval; snapshots is called to take each checkpoint.
+     */
+    public Autosaver(String destination, Supplier<JSONObject> snapshots) {
+        this(destination, snapshots, DEFAULT_RING_SIZE, DEFAULT_MOVES, DEFAULT_INTERVAL_NANOS);
+    }
+
+    /*
+     * REQUIRES: destination and snapshots are not null, ringSize > 0,
+     * movesPerCheckpoint > 0, intervalNanos > 0
+     * EFFECTS: Constructs an autosaver for destination that keeps ringSize
+     * checkpoints and takes one every movesPerCheckpoint moves, or once a move
+     * has gone unsaved for intervalNanos.
+     */
+    public Autosaver(String destination, Supplier<JSONObject> snapshots, int ringSize, int movesPerCheckpoint,
+                     long intervalNanos) {
+        this.destination = destination;
+        this.snapshots = snapshots;
+        this.ringSize = ringSize;
+        this.movesPerCheckpoint = movesPerCheckpoint;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /*
+     * EFFECTS: Returns the path of the checkpoint in the given ring slot of the
+     * save file destination.
+     */
+    public static Path checkpointPath(String destination, int slot) {
+        return Paths.get(destination + SUFFIX + slot);
+    }
+
+    /*
+     * REQUIRES: called on the game thread, count >= 0
+     * MODIFIES: this
+     * EFFECTS: Records that count moves were made, taking a checkpoint if one
+     * is now due.
+     */
+    public void moved(int count) {
+        if (count == 0) {
+            return;
+        }
+        if (idleCheckpoint != null && idleCheckpoint.isDone()) {
+            unsavedMoves = 0; // Saved while the game was idle
+        }
+        cancelIdleCheckpoint(); // The game has moved on since its snapshot
+        if (unsavedMoves == 0) {
+            firstUnsavedAt = System.nanoTime();
+        }
+        unsavedMoves += count;
+        tick();
+    }
+
+    /*
+     * REQUIRES: called on the game thread
+     * MODIFIES: this
+     * EFFECTS: Takes a checkpoint if enough moves have been made since the last
+     * one, or if a move has gone unsaved for the interval. Cheap enough to call
+     * every frame; does nothing while the game is idle.
+     */
+    public void tick() {
+        if (unsavedMoves > 0 && (unsavedMoves >= movesPerCheckpoint
+                || System.nanoTime() - firstUnsavedAt >= intervalNanos)) {
+            checkpoint();
+        }
+    }
+
+    /*
+     * REQUIRES: called on the game thread
+     * EFFECTS: Returns the System.nanoTime at which a checkpoint falls due if
+     * no more moves are made, or Long.MAX_VALUE if every move is saved.
+     */
+    public long nextDue() {
+        return unsavedMoves > 0 ? firstUnsavedAt + intervalNanos : Long.MAX_VALUE;
+    }
+
+    /*
+     * REQUIRES: called on the game thread, just before it blocks waiting for
+     * input without a deadline
+     * MODIFIES: this
+     * EFFECTS: If moves are unsaved, takes a snapshot now, while the game
+     * cannot change, and writes it in the background once the interval is up,
+     * unless another move is made first.
+     */
+    public void idle() {
+        if (unsavedMoves == 0 || idleCheckpoint != null) {
+            return;
+        }
+        JSONObject snapshot = snapshots.get();
+        long delay = Math.max(0, nextDue() - System.nanoTime());
+        idleCheckpoint = io.schedule(() -> {
+            if (pending.getAndSet(snapshot) == null) {
+                writePending();
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /*
+     * REQUIRES: called on the game thread
+     * MODIFIES: this
+     * EFFECTS: Drops the checkpoint idle() scheduled, if it has not been
+     * written yet.
+     */
+    private void cancelIdleCheckpoint() {
+        if (idleCheckpoint != null) {
+            idleCheckpoint.cancel(false);
+            idleCheckpoint = null;
+        }
+    }
+
+    /*
+     * REQUIRES: called on the game thread
+     * MODIFIES: this
+     * EFFECTS: Takes a snapshot now and writes it to the next ring slot in the
+     * background. If an earlier snapshot is still waiting to be written, this
+     * one replaces it.
+     */
+    public void checkpoint() {
+        cancelIdleCheckpoint();
+        unsavedMoves = 0;
+        if (pending.getAndSet(snapshots.get()) == null) {
+            io.execute(this::writePending);
+        }
+    }
+
+    /*
+     * REQUIRES: called on the game thread
+     * MODIFIES: this, file system
+     * EFFECTS: Forgets the moves not yet saved, drops any checkpoint waiting to
+     * be written and deletes the checkpoints on disk, waiting for a checkpoint
+     * being written to finish first. Used when the save is cleared, so that no
+     * checkpoint outlives it.
+     */
+    public void clear() {
+        try {
+            clearAsync(null).get();
+        } catch (ExecutionException e) {
+            // Logged by clearAsync
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * REQUIRES: called on the game thread
+     * MODIFIES: this, file system
+     * EFFECTS: As clear(), but returns at once; the checkpoints are deleted in
+     * the background, after any checkpoint being written, and then callback is
+     * called on the autosave thread.
+     */
+    public void clear(AsyncGameStore.Callback<Void> callback) {
+        clearAsync(callback);
+    }
+
+    /*
+     * REQUIRES: called on the game thread
+     * MODIFIES: this
+     * EFFECTS: Drops the unsaved moves and waiting checkpoints, and queues the
+     * deletion of the checkpoints on disk, reporting to callback if it is not
+     * null. Returns the queued deletion.
+     */
+    private Future<Void> clearAsync(AsyncGameStore.Callback<Void> callback) {
+        unsavedMoves = 0;
+        cancelIdleCheckpoint();
+        pending.set(null);
+        return io.submit(() -> {
+            try {
+                for (int slot = 0; slot < ringSize; slot++) {
+                    Files.deleteIfExists(checkpointPath(destination, slot));
+                }
+            } catch (IOException e) {
+                EventLog.getInstance().log(Event.Severity.WARN, "save", "Unable to delete the checkpoints of {}: {}",
+                        destination, e.getMessage());
+                if (callback != null) {
+                    callback.onFailure(e);
+                }
+                throw e;
+            }
+            nextSlot = 0;
+            if (callback != null) {
+                callback.onSuccess(null);
+            }
+            return null;
+        });
+    }
+
+    /*
+     * REQUIRES: called on the I/O thread
+     * MODIFIES: this, file system
+     * EFFECTS: Writes the waiting snapshot, if any, to the next ring slot.
+     */
+    private void writePending() {
+        JSONObject snapshot = pending.getAndSet(null);
+        if (snapshot == null) {
+            return; // Dropped by clear
+        }
+        if (nextSlot < 0) {
+            nextSlot = (newestSlot(destination, ringSize) + 1) % ringSize;
+        }
+        String path = checkpointPath(destination, nextSlot).toString();
+        GameWriter writer = new GameWriter(path);
+        writer.setGenerationsKept(0); // The ring itself keeps the older checkpoints
+        try {
+            writer.open();
+            try {
+                writer.write(snapshot);
+            } catch (IOException | RuntimeException e) {
+                writer.abort();
+                throw e;
+            }
+            writer.close();
+            nextSlot = (nextSlot + 1) % ringSize;
+        } catch (IOException | RuntimeException e) {
+            EventLog.getInstance().log(Event.Severity.WARN, "save", "Unable to write checkpoint {}: {}", path,
+                    e.getMessage());
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the ring slot of the most recently written checkpoint of
+     * destination, or -1 if there is none.
+     */
+    private static int newestSlot(String destination, int ringSize) {
+        int newest = -1;
+        FileTime newestTime = null;
+        for (int slot = 0; slot < ringSize; slot++) {
+            FileTime time = modifiedTime(checkpointPath(destination, slot));
+            if (time != null && (newestTime == null || time.compareTo(newestTime) > 0)) {
+                newest = slot;
+                newestTime = time;
+            }
+        }
+        return newest;
+    }
+
+    /*
+     * EFFECTS: Returns the file to load the game saved to destination from:
+     * its newest checkpoint if that was written after the save and its
+     * DeltaLog, otherwise destination itself.
+     */
+    public static String newest(String destination) {
+        FileTime saved = latest(modifiedTime(Paths.get(destination)), modifiedTime(DeltaLog.pathFor(destination)));
+        int slot = newestSlot(destination, DEFAULT_RING_SIZE);
+        if (slot >= 0) {
+            FileTime checkpointed = modifiedTime(checkpointPath(destination, slot));
+            if (saved == null || checkpointed.compareTo(saved) > 0) {
+                return checkpointPath(destination, slot).toString();
+            }
+        }
+        return destination;
+    }
+
+    /*
+     * EFFECTS: Returns the later of two times, either of which may be null.
+     */
+    private static FileTime latest(FileTime a, FileTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /*
+     * EFFECTS: Returns when the file at path was last modified, or null if it
+     * does not exist.
+     */
+    private static FileTime modifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
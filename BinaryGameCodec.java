@@ -0,0 +1,708 @@
+package persistence;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the compact binary save format: the same document as the JSON
+ * save, written without any text. A file is
+ *
+ * int MAGIC | varint VERSION | value
+ *
+ * where each value is a one-byte tag followed by its body. Integers are
+ * zig-zag varints; strings are a varint length and UTF-8 bytes. An array of
+ * equal-length rows of small non-negative integers, such as the maze
+ * structure, is written as a GRID: its rows, columns and bits per cell as
+ * varints, then every cell packed into that many bits. A maze cell therefore
+ * takes one bit instead of the two to six characters of JSON.
+ *
+ * Since VERSION 2 the format can be written and read as a stream: arrays end
+ * with TAG_END, and each object entry starts with a varint key reference
+ * (0 ends the object, 1 introduces a new key written in full, n >= 2 repeats
+ * the (n - 2)th key). Version 1 files, which count their entries up front
+ * instead, can still be read. Since VERSION 3 a grid may instead be written
+ * as a GRID_RLE: its rows and columns, then each row as runs of equal cells,
+ * a varint cell and a varint run length per run. Runs are larger than packed
+ * bits on their own, but compress far better, so they are written when the
+ * file is deflated afterwards.
+ */
+public final class BinaryGameCodec {
+    public static final int MAGIC = 0x4D5A5331; // "MZS1"
+    public static final int VERSION = 3;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_INT = 3; // Zig-zag varint
+    private static final int TAG_DOUBLE = 4; // 8 bytes, big-endian IEEE 754
+    private static final int TAG_STRING = 5; // Varint length, UTF-8 bytes
+    private static final int TAG_ARRAY = 6; // Values, then TAG_END (version 1: varint count, values)
+    private static final int TAG_OBJECT = 7; // Entries, then key reference 0 (version 1: varint count, entries)
+    private static final int TAG_GRID = 8; // Varint rows, columns, bits per cell; packed cells
+    private static final int TAG_END = 9; // End of an array
+    private static final int TAG_GRID_RLE = 10; // Varint rows, columns; per row, varint cell and run length pairs
+    private static final int MAX_GRID_BITS = 31; // Widest cell that still fits an int
+    private static final int MAX_GRID_CELLS = 1 << 24; // Most cells a decoded grid may have
+
+    /*
+     * EFFECTS: Not instantiable; all methods are static.
+     */
+    private BinaryGameCodec() {
+    }
+
+    /*
+     * EFFECTS: Returns true if data starts with the binary save header.
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data.length >= 4 && ((data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16
+                | (data[2] & 0xFF) << 8 | (data[3] & 0xFF)) == MAGIC;
+    }
+
+    /*
+     * REQUIRES: document holds only JSONObjects, JSONArrays, strings, numbers,
+     * booleans and JSONObject.NULL
+     * EFFECTS: Returns document in the binary save format; throws
+     * IllegalArgumentException if it holds anything else.
+     */
+    public static byte[] encode(JSONObject document) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            Sink sink = new Sink(out);
+            sink.json(document);
+            sink.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // A ByteArrayOutputStream does not fail
+        }
+        return out.toByteArray();
+    }
+
+    /*
+     * REQUIRES: isEncoded(data)
+     * EFFECTS: Returns the document held in data; throws IOException if data
+     * is truncated, malformed or written by a newer version.
+     */
+    public static JSONObject decode(byte[] data) throws IOException {
+        Object root = new Source(new ByteArrayInputStream(data)).nextValue();
+        if (!(root instanceof JSONObject)) {
+            throw new IOException("Binary save does not hold an object");
+        }
+        return (JSONObject) root;
+    }
+
+    /**
+     * Represents a JsonSink that writes the binary save format, header first,
+     * to an OutputStream.
+     */
+    public static final class Sink implements JsonSink {
+        private final OutputStream out; // Where the bytes are written
+        private final boolean runLengthGrids; // True to write grids as runs rather than packed bits
+        private final Map<String, Integer> keys = new HashMap<>(); // Index of every key written so far
+
+        /*
+         * REQUIRES: out is not null; out should be buffered
+         * EFFECTS: Constructs a sink that writes to out, starting with the header.
+         */
+        public Sink(OutputStream out) throws IOException {
+            this(out, false);
+        }
+
+        /*
+         * REQUIRES: out is not null; out should be buffered
+         * EFFECTS: Constructs a sink that writes to out, starting with the
+         * header, writing grids as runs if runLengthGrids is true.
+         */
+        public Sink(OutputStream out, boolean runLengthGrids) throws IOException {
+            this.out = out;
+            this.runLengthGrids = runLengthGrids;
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                out.write(MAGIC >>> shift);
+            }
+            writeVarLong(VERSION);
+        }
+
+        @Override
+        public JsonSink beginObject() throws IOException {
+            out.write(TAG_OBJECT);
+            return this;
+        }
+
+        @Override
+        public JsonSink endObject() throws IOException {
+            writeVarLong(0);
+            return this;
+        }
+
+        @Override
+        public JsonSink beginArray() throws IOException {
+            out.write(TAG_ARRAY);
+            return this;
+        }
+
+        @Override
+        public JsonSink endArray() throws IOException {
+            out.write(TAG_END);
+            return this;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Writes name in full the first time and as a back-reference
+         * after that.
+         */
+        @Override
+        public JsonSink name(String name) throws IOException {
+            Integer index = keys.get(name);
+            if (index == null) {
+                writeVarLong(1); // A new key follows
+                writeString(name);
+                keys.put(name, keys.size());
+            } else {
+                writeVarLong(index + 2L);
+            }
+            return this;
+        }
+
+        @Override
+        public JsonSink value(String value) throws IOException {
+            if (value == null) {
+                return nullValue();
+            }
+            out.write(TAG_STRING);
+            writeString(value);
+            return this;
+        }
+
+        @Override
+        public JsonSink value(long value) throws IOException {
+            out.write(TAG_INT);
+            writeVarLong((value << 1) ^ (value >> 63)); // Zig-zag, so small negatives stay short
+            return this;
+        }
+
+        @Override
+        public JsonSink value(double value) throws IOException {
+            if (value == Math.rint(value) && Math.abs(value) < 0x1p62) {
+                return value((long) value);
+            }
+            out.write(TAG_DOUBLE);
+            long bits = Double.doubleToLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (bits >>> shift));
+            }
+            return this;
+        }
+
+        @Override
+        public JsonSink value(boolean value) throws IOException {
+            out.write(value ? TAG_TRUE : TAG_FALSE);
+            return this;
+        }
+
+        @Override
+        public JsonSink nullValue() throws IOException {
+            out.write(TAG_NULL);
+            return this;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Writes grid's size, then its cells row by row: as runs of
+         * equal cells if the sink writes run-length grids, otherwise in as few
+         * bits as the largest cell needs, least significant bit first.
+         */
+        @Override
+        public JsonSink grid(int[][] grid) throws IOException {
+            int columns = grid[0].length;
+            int max = 0;
+            for (int[] row : grid) {
+                if (row.length != columns) {
+                    throw new IllegalArgumentException("Grid rows differ in length");
+                }
+                for (int cell : row) {
+                    if (cell < 0) {
+                        throw new IllegalArgumentException("Grid cells must not be negative");
+                    }
+                    max |= cell;
+                }
+            }
+            if (runLengthGrids) {
+                writeRuns(grid);
+                return this;
+            }
+            int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+            out.write(TAG_GRID);
+            writeVarLong(grid.length);
+            writeVarLong(columns);
+            writeVarLong(bits);
+            long buffer = 0;
+            int buffered = 0;
+            for (int[] row : grid) {
+                for (int cell : row) {
+                    buffer |= (long) cell << buffered;
+                    buffered += bits;
+                    while (buffered >= 8) {
+                        out.write((int) buffer);
+                        buffer >>>= 8;
+                        buffered -= 8;
+                    }
+                }
+            }
+            if (buffered > 0) {
+                out.write((int) buffer);
+            }
+            return this;
+        }
+
+        /*
+         * REQUIRES: grid is rectangular with non-negative cells
+         * MODIFIES: this
+         * EFFECTS: Writes grid's size, then each row as runs of equal cells.
+         */
+        private void writeRuns(int[][] grid) throws IOException {
+            out.write(TAG_GRID_RLE);
+            writeVarLong(grid.length);
+            writeVarLong(grid[0].length);
+            for (int[] row : grid) {
+                int start = 0;
+                while (start < row.length) {
+                    int end = start + 1;
+                    while (end < row.length && row[end] == row[start]) {
+                        end++;
+                    }
+                    writeVarLong(row[start]);
+                    writeVarLong(end - start);
+                    start = end;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Writes value as a varint length and its UTF-8 bytes.
+         */
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Writes value, taken as unsigned, seven bits at a time, low
+         * bits first, with the top bit of each byte set if more follow.
+         */
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+
+    /**
+     * Represents a JsonSource that reads the binary save format from an
+     * InputStream, of any version.
+     */
+    public static final class Source implements JsonSource {
+        private final InputStream in; // Where the bytes come from
+        private final int version; // Format version of the data
+        private final List<String> keys = new ArrayList<>(); // Keys met so far, by index
+        private long offset; // Number of bytes read, for error messages
+        private int[] remaining = new int[16]; // Per open container, entries left (version 1) or -1
+        private boolean[] inObject = new boolean[16]; // Per open container, true for objects
+        private int depth; // Number of open containers
+        private boolean rootRead; // True once the root value has been peeked
+        private boolean valueNext; // True if an object entry's name was read and its value is next
+        private Token peeked; // Next token if already read, otherwise null
+        private long peekedLong; // Value of a peeked whole NUMBER
+        private double peekedDouble; // Value of a peeked NUMBER
+        private boolean peekedWhole; // True if the peeked NUMBER was written as a whole number
+        private String peekedText; // Text of a peeked NAME or STRING
+        private boolean peekedBoolean; // Value of a peeked BOOLEAN
+        private boolean peekedRuns; // True if the peeked GRID is run-length encoded
+
+        /*
+         * REQUIRES: in is not null; in should be buffered
+         * EFFECTS: Constructs a source that reads from in, checking the header;
+         * throws IOException if in does not start with one this class can read.
+         */
+        public Source(InputStream in) throws IOException {
+            this.in = in;
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                magic = (magic << 8) | readByte();
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Not a binary save");
+            }
+            version = readVarInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported binary save version " + version);
+            }
+        }
+
+        @Override
+        public Token peek() throws IOException {
+            if (peeked == null) {
+                peeked = readNext();
+            }
+            return peeked;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Consumes the start of an object, reading its entry count in
+         * version 1.
+         */
+        @Override
+        public void beginObject() throws IOException {
+            expect(Token.BEGIN_OBJECT);
+            push(true, version == 1 ? readVarInt() : -1);
+        }
+
+        @Override
+        public void endObject() throws IOException {
+            expect(Token.END_OBJECT);
+            depth--;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Consumes the start of an array, reading its length in
+         * version 1.
+         */
+        @Override
+        public void beginArray() throws IOException {
+            expect(Token.BEGIN_ARRAY);
+            push(false, version == 1 ? readVarInt() : -1);
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            expect(Token.END_ARRAY);
+            depth--;
+        }
+
+        @Override
+        public String nextName() throws IOException {
+            expect(Token.NAME);
+            valueNext = true;
+            return peekedText;
+        }
+
+        @Override
+        public String nextString() throws IOException {
+            expect(Token.STRING);
+            return peekedText;
+        }
+
+        @Override
+        public long nextLong() throws IOException {
+            expect(Token.NUMBER);
+            if (!peekedWhole) {
+                throw new IOException("Expected a whole number but was " + peekedDouble);
+            }
+            return peekedLong;
+        }
+
+        @Override
+        public double nextDouble() throws IOException {
+            expect(Token.NUMBER);
+            return peekedWhole ? peekedLong : peekedDouble;
+        }
+
+        @Override
+        public Number nextNumber() throws IOException {
+            expect(Token.NUMBER);
+            if (!peekedWhole) {
+                return peekedDouble;
+            }
+            return peekedLong == (int) peekedLong ? Integer.valueOf((int) peekedLong) : Long.valueOf(peekedLong);
+        }
+
+        @Override
+        public boolean nextBoolean() throws IOException {
+            expect(Token.BOOLEAN);
+            return peekedBoolean;
+        }
+
+        @Override
+        public void nextNull() throws IOException {
+            expect(Token.NULL);
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Consumes a packed or run-length grid and expands it, or reads
+         * an ordinary array of rows.
+         */
+        @Override
+        public int[][] nextGrid() throws IOException {
+            if (peek() != Token.GRID) {
+                return JsonSource.super.nextGrid();
+            }
+            expect(Token.GRID);
+            int rows = readVarInt();
+            int columns = readVarInt();
+            checkGridSize(rows, columns);
+            if (peekedRuns) {
+                return readRuns(rows, columns);
+            }
+            int bits = readVarInt();
+            if (bits < 1 || bits > MAX_GRID_BITS) {
+                throw new IOException("Invalid grid cell width " + bits);
+            }
+            int mask = (1 << bits) - 1;
+            long buffer = 0;
+            int buffered = 0;
+            int[][] grid = new int[rows][columns];
+            for (int[] row : grid) {
+                for (int x = 0; x < columns; x++) {
+                    while (buffered < bits) {
+                        buffer |= (long) readByte() << buffered;
+                        buffered += 8;
+                    }
+                    row[x] = (int) (buffer & mask);
+                    buffer >>>= bits;
+                    buffered -= bits;
+                }
+            }
+            return grid;
+        }
+
+        /*
+         * EFFECTS: Throws IOException unless a rows x columns grid has at least
+         * one cell in each direction and at most MAX_GRID_CELLS in all.
+         */
+        private void checkGridSize(int rows, int columns) throws IOException {
+            if (rows < 1 || columns < 1 || (long) rows * columns > MAX_GRID_CELLS) {
+                throw new IOException("Invalid grid size " + rows + " x " + columns + " at byte " + offset);
+            }
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Reads the runs of a rows x columns grid; throws IOException
+         * if a run does not fit its row.
+         */
+        private int[][] readRuns(int rows, int columns) throws IOException {
+            int[][] grid = new int[rows][columns];
+            for (int[] row : grid) {
+                int x = 0;
+                while (x < columns) {
+                    int cell = readVarInt();
+                    int length = readVarInt();
+                    if (length < 1 || length > columns - x) {
+                        throw new IOException("Invalid grid run at byte " + offset);
+                    }
+                    Arrays.fill(row, x, x + length, cell);
+                    x += length;
+                }
+            }
+            return grid;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Consumes the peeked token; throws IOException if it is not
+         * of the expected kind.
+         */
+        private void expect(Token expected) throws IOException {
+            Token token = peek();
+            if (token != expected) {
+                throw new IOException("Expected " + expected + " but was " + token + " at byte " + offset);
+            }
+            peeked = null;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Reads the next token: the end of the innermost container, an
+         * object entry's name, or a value.
+         */
+        private Token readNext() throws IOException {
+            if (depth == 0) {
+                if (rootRead) {
+                    return Token.END_DOCUMENT;
+                }
+                rootRead = true;
+                return readValue(readByte());
+            }
+            int top = depth - 1;
+            if (inObject[top] && !valueNext) {
+                return readName(top);
+            }
+            valueNext = false;
+            if (inObject[top]) {
+                return readValue(readByte());
+            }
+            if (remaining[top] == 0) {
+                return Token.END_ARRAY;
+            }
+            if (remaining[top] > 0) {
+                remaining[top]--;
+                return readValue(readByte());
+            }
+            int tag = readByte();
+            return tag == TAG_END ? Token.END_ARRAY : readValue(tag);
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Reads the key reference of the next entry of the object at
+         * index top, returning END_OBJECT or NAME.
+         */
+        private Token readName(int top) throws IOException {
+            if (remaining[top] == 0) {
+                return Token.END_OBJECT;
+            }
+            int reference = readVarInt();
+            if (remaining[top] > 0) {
+                remaining[top]--;
+                reference++; // Version 1 has no end reference
+            } else if (reference == 0) {
+                return Token.END_OBJECT;
+            }
+            if (reference == 1) {
+                peekedText = readString();
+                keys.add(peekedText);
+            } else if (reference - 2 < keys.size()) {
+                peekedText = keys.get(reference - 2);
+            } else {
+                throw new IOException("Unknown key reference " + reference + " at byte " + offset);
+            }
+            return Token.NAME;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Reads the body of a scalar value with the given tag, or just
+         * reports the start of a container.
+         */
+        private Token readValue(int tag) throws IOException {
+            switch (tag) {
+                case TAG_NULL:
+                    return Token.NULL;
+                case TAG_FALSE:
+                case TAG_TRUE:
+                    peekedBoolean = tag == TAG_TRUE;
+                    return Token.BOOLEAN;
+                case TAG_INT:
+                    long raw = readVarLong();
+                    peekedLong = (raw >>> 1) ^ -(raw & 1);
+                    peekedWhole = true;
+                    return Token.NUMBER;
+                case TAG_DOUBLE:
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | readByte();
+                    }
+                    peekedDouble = Double.longBitsToDouble(bits);
+                    peekedWhole = false;
+                    return Token.NUMBER;
+                case TAG_STRING:
+                    peekedText = readString();
+                    return Token.STRING;
+                case TAG_ARRAY:
+                    return Token.BEGIN_ARRAY;
+                case TAG_OBJECT:
+                    return Token.BEGIN_OBJECT;
+                case TAG_GRID:
+                case TAG_GRID_RLE:
+                    peekedRuns = tag == TAG_GRID_RLE;
+                    return Token.GRID;
+                default:
+                    throw new IOException("Unknown tag " + tag + " at byte " + (offset - 1));
+            }
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Opens a container with the given number of entries left, or
+         * -1 if it is terminated.
+         */
+        private void push(boolean object, int count) {
+            if (depth == remaining.length) {
+                remaining = Arrays.copyOf(remaining, depth * 2);
+                inObject = Arrays.copyOf(inObject, depth * 2);
+            }
+            inObject[depth] = object;
+            remaining[depth++] = count;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Reads a varint length and that many UTF-8 bytes.
+         */
+        private String readString() throws IOException {
+            int length = readVarInt();
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException("Truncated binary save");
+            }
+            offset += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Reads a varint that must fit a non-negative int.
+         */
+        private int readVarInt() throws IOException {
+            long value = readVarLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Varint out of range at byte " + offset);
+            }
+            return (int) value;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Reads a varint of up to 64 bits.
+         */
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Varint too long at byte " + offset);
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Reads one unsigned byte; throws EOFException at the end of
+         * the data.
+         */
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated binary save");
+            }
+            offset++;
+            return b;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package persistence;
+
+import model.Event;
+import model.EventLog;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents the append-only log of changes made to a save file since its
+ * last full snapshot. The log lives next to the save, in a file with the
+ * suffix ".delta", and holds one JSON value per line:
+ *
+ * {"snapshot": checksum} | [op, op, ...] | [op, ...] | ...
+ *
+ * The first line names the snapshot the changes apply to by the CRC-32 of its
+ * bytes, so a log left over from an older snapshot is ignored. Each further
+ * line is one save: a list of JSON Patch operations (add, replace, remove)
+ * that turn the previous document into the new one. A line cut short by a
+ * crash is ignored along with everything after it. Every line is forced to
+ * disk before the save counts as done. The header is only written with the
+ * first save, so a snapshot with no changes after it has no log at all.
+ */
+public class DeltaLog {
+    public static final String SUFFIX = ".delta";
+
+    private final Path path; // File holding the log
+    private String header; // First line of the log, written with the first save
+    private long bytes; // Size of the log written so far
+    private long syncNanos; // Time spent forcing the last line to disk
+
+    /*
+     * REQUIRES: destination is not null
+     * EFFECTS: Constructs the log of changes to the save file destination.
+     */
+    public DeltaLog(String destination) {
+        this.path = pathFor(destination);
+    }
+
+    /*
+     * EFFECTS: Returns the path of the log of changes to the save file
+     * destination.
+     */
+    public static Path pathFor(String destination) {
+        return Paths.get(destination + SUFFIX);
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Deletes the log and starts a new one for the snapshot whose
+     * bytes have the given CRC-32, to be written with the first append;
+     * throws IOException if the old log cannot be deleted.
+     */
+    public void start(long snapshotChecksum) throws IOException {
+        Files.deleteIfExists(path);
+        header = new JSONObject().put("snapshot", snapshotChecksum).toString() + "\n";
+        bytes = 0;
+    }
+
+    /*
+     * REQUIRES: start has been called
+     * MODIFIES: this
+     * EFFECTS: Appends one save's operations as a line, after the header if it
+     * is the first; throws IOException if they cannot be written.
+     */
+    public void append(JSONArray operations) throws IOException {
+        if (bytes == 0) {
+            bytes = write(header + operations.toString() + "\n", StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            bytes += write(operations.toString() + "\n", StandardOpenOption.APPEND);
+        }
+        EventLog.getInstance().log(Event.Severity.DEBUG, "save", "Logged changes to {} (fsync {} us)", path,
+                syncNanos / 1000);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes line to the log file opened with mode and forces it to
+     * disk; returns the number of bytes written.
+     */
+    private int write(String line, StandardOpenOption mode) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        int length = data.remaining();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                mode)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            long start = System.nanoTime();
+            channel.force(false);
+            syncNanos = System.nanoTime() - start;
+        }
+        return length;
+    }
+
+    /*
+     * EFFECTS: Returns the time spent forcing the last line to disk, in
+     * nanoseconds.
+     */
+    public long getSyncNanos() {
+        return syncNanos;
+    }
+
+    /*
+     * EFFECTS: Returns true if the save file source has a log holding at least
+     * one save; throws IOException if the log exists but cannot be read.
+     */
+    public static boolean hasChanges(String source) throws IOException {
+        Path path = pathFor(source);
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return in.readLine() != null && in.readLine() != null;
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the number of bytes written to the log since start.
+     */
+    public long size() {
+        return bytes;
+    }
+
+    /*
+     * MODIFIES: document
+     * EFFECTS: Applies every complete line of the log of changes to the save
+     * file source to document, which was read from that file and whose bytes
+     * have the given CRC-32. Does nothing if there is no log or it belongs to
+     * another snapshot. Returns the number of saves applied; throws
+     * IOException if the log exists but cannot be read.
+     */
+    public static int replay(String source, long snapshotChecksum, JSONObject document) throws IOException {
+        Path path = pathFor(source);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int applied = 0;
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null || !matches(header, snapshotChecksum)) {
+                return 0;
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                JSONArray operations;
+                try {
+                    operations = new JSONArray(line);
+                } catch (JSONException e) {
+                    break; // Cut short by a crash; later lines cannot apply
+                }
+                apply(document, operations);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /*
+     * EFFECTS: Returns true if header starts a log for the snapshot with the
+     * given checksum.
+     */
+    private static boolean matches(String header, long snapshotChecksum) {
+        try {
+            return new JSONObject(header).optLong("snapshot", -1) == snapshotChecksum;
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    /*
+     * EFFECTS: Returns one JSON Patch operation; value is ignored for remove.
+     */
+    static JSONObject operation(String op, String path, Object value) {
+        JSONObject operation = new JSONObject().put("op", op).put("path", path);
+        if (!op.equals("remove")) {
+            operation.put("value", value);
+        }
+        return operation;
+    }
+
+    /*
+     * MODIFIES: document
+     * EFFECTS: Applies operations, as logged by a DeltaSaver, to document; throws
+     * JSONException if one does not fit it.
+     */
+    public static void apply(JSONObject document, JSONArray operations) {
+        for (int i = 0; i < operations.length(); i++) {
+            JSONObject operation = operations.getJSONObject(i);
+            String[] keys = operation.getString("path").split("/", -1);
+            JSONObject parent = document;
+            for (int k = 1; k < keys.length - 1; k++) {
+                parent = parent.getJSONObject(unescape(keys[k]));
+            }
+            String key = unescape(keys[keys.length - 1]);
+            if (operation.getString("op").equals("remove")) {
+                parent.remove(key);
+            } else {
+                parent.put(key, operation.get("value"));
+            }
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the key part names in a JSON Pointer path.
+     */
+    private static String unescape(String part) {
+        return part.replace("~1", "/").replace("~0", "~");
+    }
+}
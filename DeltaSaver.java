@@ -0,0 +1,414 @@
+package persistence;
+
+import model.ExploredMap;
+import model.Ghost;
+import model.Item;
+import model.Level;
+import model.Maze;
+import model.Player;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import ui.GamePanel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+/**
+ * Represents incremental saving of a game to one save file. The first save,
+ * and any save after the DeltaLog has grown as large as the snapshot it
+ * follows or holds maxDeltas saves, streams a full snapshot with GameWriter
+ * and starts a new log. Every other save appends only what changed since the
+ * previous save: the player's position, inventory and view, the key,
+ * flashlight and ghost, the explored map and the progress flags, each
+ * compared directly with its value at the previous save, so its cost follows
+ * what changed rather than the size of the maze. A new level or maze is
+ * always saved as a snapshot. GameReader applies the log when it reads the
+ * save file. If anything else rewrites the save file, the next save is a
+ * snapshot.
+ *
+ * A save can also be taken in two steps, so the game is only read on its own
+ * thread: capture records what changed on the game thread, and commit writes
+ * it on another, in the order captured. A captured snapshot is copied with
+ * GamePanel.toJson(), since the game may change before it is written. If a
+ * commit fails, the changes captured after it are refused and the next
+ * capture is a snapshot.
+ */
+public class DeltaSaver {
+    public static final int DEFAULT_MAX_DELTAS = 64; // Saves logged before a snapshot is forced
+
+    private final String destination; // Save file
+    private final GameWriter.Format format; // Format of the snapshots
+    private final int maxDeltas; // Saves logged before a snapshot is forced
+    private final DeltaLog log; // Changes since the last snapshot
+    private final Object captureLock = new Object(); // Guards the fields the game thread captures with
+    private Mark mark; // Game as of the last capture, or null if the next must be a snapshot
+    private long captured; // Number of changes captured
+    private int capturedDeltas; // Deltas captured since the last snapshot
+    private long capturedBytes; // Size of those deltas
+    private volatile boolean broken; // True once a commit failed, until the next snapshot is captured
+    private volatile long snapshotBytes = Long.MAX_VALUE; // Size of the last snapshot, once one is written
+    private long written = -1; // Sequence of the last change written, or -1 if it failed
+    private FileTime snapshotTime; // When the last snapshot was written
+    private int deltas; // Saves logged since the last snapshot
+
+    /**
+     * Represents one save captured from the game: either a full snapshot, or
+     * the operations that turn the previous save into this one.
+     */
+    public static final class Change {
+        private final long sequence; // Position in capture order, from 1
+        private final JSONObject snapshot; // Copy of the game, for a snapshot taken to commit later
+        private final JSONArray operations; // Changes since the previous capture, or null for a snapshot
+
+        /*
+         * EFFECTS: Constructs the change captured at sequence.
+         */
+        private Change(long sequence, JSONObject snapshot, JSONArray operations) {
+            this.sequence = sequence;
+            this.snapshot = snapshot;
+            this.operations = operations;
+        }
+
+        /*
+         * EFFECTS: Returns true if this change is a full snapshot.
+         */
+        public boolean isSnapshot() {
+            return operations == null;
+        }
+    }
+
+    /*
+     * Writes the content of a snapshot.
+     */
+    private interface Content {
+        void writeTo(GameWriter writer) throws IOException;
+    }
+
+    /*
+     * REQUIRES: destination is not null
+     * EFFECTS: Constructs a saver for destination that writes snapshots in the
+     * default format and forces one every DEFAULT_MAX_DELTAS saves.
+     */
+    public DeltaSaver(String destination) {
+        this(destination, GameWriter.defaultFormat(), DEFAULT_MAX_DELTAS);
+    }
+
+    /*
+     * REQUIRES: destination and format are not null, maxDeltas >= 0
+     * EFFECTS: Constructs a saver for destination that writes snapshots in
+     * format and forces one every maxDeltas saves.
+     */
+    public DeltaSaver(String destination, GameWriter.Format format, int maxDeltas) {
+        this.destination = destination;
+        this.format = format;
+        this.maxDeltas = maxDeltas;
+        this.log = new DeltaLog(destination);
+    }
+
+    /*
+     * REQUIRES: game is not changed during this call
+     * MODIFIES: this
+     * EFFECTS: Saves game, as a delta when that is cheaper and otherwise as a
+     * full snapshot streamed from the game. Returns true if a snapshot was
+     * written; throws IOException if the save could not be written, after
+     * which the next save is a snapshot.
+     */
+    public boolean save(GamePanel game) throws IOException {
+        if (!snapshotUnchanged()) {
+            broken = true; // Rewritten by something else, so changes would not apply to it
+        }
+        Change change = next(game, false);
+        if (change.isSnapshot()) {
+            writeSnapshot(writer -> writer.write(game), change.sequence);
+            return true;
+        }
+        return commit(change);
+    }
+
+    /*
+     * REQUIRES: document is a game state, such as from GamePanel.toJson()
+     * MODIFIES: this
+     * EFFECTS: Saves document as a full snapshot, after which the next save is
+     * a snapshot too; throws IOException if it could not be written.
+     */
+    public boolean save(JSONObject document) throws IOException {
+        long sequence;
+        synchronized (captureLock) {
+            mark = null;
+            sequence = ++captured;
+        }
+        writeSnapshot(writer -> writer.write(document), sequence);
+        return true;
+    }
+
+    /*
+     * REQUIRES: called on the thread that changes game
+     * MODIFIES: this
+     * EFFECTS: Returns what changed in game since the previous capture, to be
+     * written later by commit, or a copy of game if a snapshot is due.
+     */
+    public Change capture(GamePanel game) {
+        return next(game, true);
+    }
+
+    /*
+     * REQUIRES: every change captured before this one has been committed
+     * MODIFIES: this
+     * EFFECTS: Writes change; returns true if it was a snapshot. Throws
+     * IOException if it could not be written, or if it is a delta and an
+     * earlier change was not written or the save file was rewritten since the
+     * last snapshot; the next capture is then a snapshot.
+     */
+    public synchronized boolean commit(Change change) throws IOException {
+        if (change.isSnapshot()) {
+            writeSnapshot(writer -> writer.write(change.snapshot), change.sequence);
+            return true;
+        }
+        if (written != change.sequence - 1) {
+            broken = true;
+            throw new IOException("Changes to " + destination + " not saved, as an earlier save failed");
+        }
+        if (!snapshotUnchanged()) {
+            broken = true;
+            written = -1;
+            throw new IOException(destination + " was rewritten since its last snapshot");
+        }
+        if (!change.operations.isEmpty()) {
+            try {
+                log.append(change.operations);
+            } catch (IOException e) {
+                broken = true;
+                written = -1;
+                throw e;
+            }
+            deltas++;
+        }
+        written = change.sequence;
+        return false;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the next change: the operations that turn the previous
+     * capture into game, or a snapshot, copied from game if copy is true, when
+     * one is due or the level changed.
+     */
+    private Change next(GamePanel game, boolean copy) {
+        synchronized (captureLock) {
+            long sequence = ++captured;
+            if (!broken && mark != null && capturedDeltas < maxDeltas) {
+                JSONArray operations = mark.update(game);
+                if (operations != null && operations.isEmpty()) {
+                    return new Change(sequence, null, operations);
+                }
+                if (operations != null) {
+                    long length = operations.toString().length();
+                    if (capturedBytes + length < snapshotBytes) {
+                        capturedDeltas++;
+                        capturedBytes += length;
+                        return new Change(sequence, null, operations);
+                    }
+                }
+            }
+            broken = false;
+            mark = new Mark(game);
+            capturedDeltas = 0;
+            capturedBytes = 0;
+            return new Change(sequence, copy ? game.toJson() : null, null);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes content as a full snapshot and starts an empty log for
+     * it; the log file is only created once a change is logged.
+     */
+    private synchronized void writeSnapshot(Content content, long sequence) throws IOException {
+        written = -1;
+        try {
+            GameWriter writer = new GameWriter(destination, format);
+            writer.open();
+            try {
+                content.writeTo(writer);
+            } catch (IOException | RuntimeException e) {
+                writer.abort();
+                throw e;
+            }
+            writer.close();
+            log.start(writer.getChecksum());
+            Path path = Paths.get(destination);
+            snapshotBytes = Files.size(path);
+            snapshotTime = Files.getLastModifiedTime(path);
+        } catch (IOException | RuntimeException e) {
+            broken = true;
+            throw e;
+        }
+        deltas = 0;
+        written = sequence;
+    }
+
+    /*
+     * EFFECTS: Returns true if the save file is still the last snapshot this
+     * saver wrote, judged by its size and modification time.
+     */
+    private synchronized boolean snapshotUnchanged() {
+        Path path = Paths.get(destination);
+        try {
+            return Files.size(path) == snapshotBytes && Files.getLastModifiedTime(path).equals(snapshotTime);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the number of saves logged since the last snapshot.
+     */
+    public synchronized int getDeltaCount() {
+        return deltas;
+    }
+
+    /**
+     * Represents the parts of a game that change during play, as they were at
+     * the last capture, to compare the game with. The maze grid is not kept:
+     * it never changes while a level is played.
+     */
+    private static final class Mark {
+        private final Level level; // Level being played, or null
+        private final Maze maze; // Its maze
+        private boolean[] levelCompleted; // Completion of each level
+        private boolean resumedGame; // Whether the game was resumed
+        private boolean levelInProgress; // Whether a level is in progress
+        private boolean completed; // Whether the level is completed
+        private int playerX; // Player's column
+        private int playerY; // Player's row
+        private int visibilityDiameter; // How far the player sees
+        private JSONObject inventory; // Items the player holds
+        private Object key; // Key as saved: its JSON, or NULL once collected
+        private Object flashlight; // Flashlight as saved: its JSON, or NULL once collected
+        private Object ghost; // Ghost as saved: its JSON, or NULL if there is none
+        private ExploredMap explored; // Explored map, or null
+        private int exploredChanges; // Its change count
+
+        /*
+         * EFFECTS: Constructs a mark of game as it is now.
+         */
+        Mark(GamePanel game) {
+            this.level = game.getCurrentLevel();
+            this.maze = level == null ? null : level.getMaze();
+            update(game);
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Returns the operations that turn the game as marked into game
+         * as it is now, and marks it; returns null if the level or its maze was
+         * replaced, which needs a snapshot.
+         */
+        JSONArray update(GamePanel game) {
+            Level now = game.getCurrentLevel();
+            if (now != level || (now != null && now.getMaze() != maze)) {
+                return null;
+            }
+            JSONArray operations = new JSONArray();
+            if (!Arrays.equals(levelCompleted, game.getLevelCompleted())) {
+                levelCompleted = game.getLevelCompleted().clone();
+                replace(operations, "/levelCompleted", new JSONArray(levelCompleted));
+            }
+            if (resumedGame != game.isResumedGame()) {
+                resumedGame = game.isResumedGame();
+                replace(operations, "/resumedGame", resumedGame);
+            }
+            if (levelInProgress != game.isLevelInProgress()) {
+                levelInProgress = game.isLevelInProgress();
+                replace(operations, "/isLevelInProgress", levelInProgress);
+            }
+            if (level != null) {
+                updateLevel(operations);
+            }
+            return operations;
+        }
+
+        /*
+         * MODIFIES: this, operations
+         * EFFECTS: Adds the operations for what changed in the level.
+         */
+        private void updateLevel(JSONArray operations) {
+            if (completed != level.isCompleted()) {
+                completed = level.isCompleted();
+                replace(operations, "/currentLevel/completed", completed);
+            }
+            Player player = level.getPlayer();
+            if (playerX != player.getPlayerX()) {
+                playerX = player.getPlayerX();
+                replace(operations, "/currentLevel/player/playerX", playerX);
+            }
+            if (playerY != player.getPlayerY()) {
+                playerY = player.getPlayerY();
+                replace(operations, "/currentLevel/player/playerY", playerY);
+            }
+            if (visibilityDiameter != player.getVisibilityDiameter()) {
+                visibilityDiameter = player.getVisibilityDiameter();
+                replace(operations, "/currentLevel/player/visibilityDiameter", visibilityDiameter);
+            }
+            JSONObject heldNow = player.getInventory().toJson();
+            if (!heldNow.similar(inventory)) {
+                inventory = heldNow;
+                replace(operations, "/currentLevel/player/inventory", heldNow);
+            }
+            Object keyNow = asSaved(level.getKey());
+            if (!same(key, keyNow)) {
+                key = keyNow;
+                replace(operations, "/currentLevel/key", keyNow);
+            }
+            Object flashlightNow = asSaved(level.getFlashlight());
+            if (!same(flashlight, flashlightNow)) {
+                flashlight = flashlightNow;
+                replace(operations, "/currentLevel/flashlight", flashlightNow);
+            }
+            Ghost ghostNow = level.getGhost();
+            Object ghostSaved = ghostNow == null ? JSONObject.NULL : ghostNow.toJson();
+            if (!same(ghost, ghostSaved)) {
+                ghost = ghostSaved;
+                operations.put(DeltaLog.operation(ghostNow == null ? "remove" : "add", "/currentLevel/ghost",
+                        ghostSaved));
+            }
+            ExploredMap exploredNow = level.getExplored();
+            if (exploredNow != explored || exploredNow != null && exploredNow.getChangeCount() != exploredChanges) {
+                explored = exploredNow;
+                exploredChanges = exploredNow == null ? 0 : exploredNow.getChangeCount();
+                operations.put(DeltaLog.operation(exploredNow == null ? "remove" : "add", "/currentLevel/explored",
+                        exploredNow == null ? null : exploredNow.encode()));
+            }
+        }
+
+        /*
+         * EFFECTS: Returns item as Level.toJson() saves it: its JSON, or NULL if
+         * it is absent or collected.
+         */
+        private static Object asSaved(Item item) {
+            return item != null && !item.isCollected() ? item.toJson() : JSONObject.NULL;
+        }
+
+        /*
+         * EFFECTS: Returns true if the two saved values are equal.
+         */
+        private static boolean same(Object a, Object b) {
+            if (a instanceof JSONObject && b instanceof JSONObject) {
+                return ((JSONObject) a).similar(b);
+            }
+            return a == b;
+        }
+
+        /*
+         * MODIFIES: operations
+         * EFFECTS: Adds an operation setting path to value.
+         */
+        private static void replace(JSONArray operations, String path, Object value) {
+            operations.put(DeltaLog.operation("replace", path, value));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Represents a direction the player can move in, with its WASD key and the change it makes
+// to the player's position.
+
+public enum Direction {
+    UP('w', "up", 0, -1),
+    DOWN('s', "down", 0, 1),
+    LEFT('a', "left", -1, 0),
+    RIGHT('d', "right", 1, 0);
+
+    private final char key; // Lower-case WASD key for this direction
+    private final String name; // Lower-case name of this direction
+    private final int dx; // Change in x-coordinate for one step
+    private final int dy; // Change in y-coordinate for one step
+    private final String moveMessage; // Event description logged for a step in this direction
+
+    /*
+     * EFFECTS: Constructs a direction with the given key, name and step.
+     */
+    Direction(char key, String name, int dx, int dy) {
+        this.key = key;
+        this.name = name;
+        this.dx = dx;
+        this.dy = dy;
+        this.moveMessage = "Player moved " + name;
+    }
+
+    /*
+     * EFFECTS: Returns the lower-case WASD key for this direction.
+     */
+    public char getKey() {
+        return key;
+    }
+
+    /*
+     * EFFECTS: Returns the change in x-coordinate for one step in this direction.
+     */
+    public int getDx() {
+        return dx;
+    }
+
+    /*
+     * EFFECTS: Returns the change in y-coordinate for one step in this direction.
+     */
+    public int getDy() {
+        return dy;
+    }
+
+    /*
+     * EFFECTS: Returns the event description for a step in this direction.
+     */
+    public String getMoveMessage() {
+        return moveMessage;
+    }
+
+    /*
+     * EFFECTS: Returns the direction for the given WASD key (case-insensitive),
+     * or null if the key is not a move.
+     */
+    public static Direction fromKey(char key) {
+        switch (Character.toLowerCase(key)) {
+            case 'w':
+                return UP;
+            case 's':
+                return DOWN;
+            case 'a':
+                return LEFT;
+            case 'd':
+                return RIGHT;
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * REQUIRES: direction is not null
+     * EFFECTS: Returns the direction named by direction, which is one of "up",
+     * "down", "left", "right", "w", "a", "s" or "d" (case-insensitive), or null
+     * if it names no direction.
+     */
+    public static Direction fromString(String direction) {
+        if (direction.length() == 1) {
+            return fromKey(direction.charAt(0));
+        }
+        for (Direction d : values()) {
+            if (d.name.equalsIgnoreCase(direction)) {
+                return d;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * REQUIRES: moves is not null
+     * EFFECTS: Returns the directions for a string of WASD keys such as
+     * "wwwddsa", in order. Whitespace is ignored. Throws IllegalArgumentException
+     * if any other character is not a WASD key.
+     */
+    public static List<Direction> parseMoves(CharSequence moves) {
+        List<Direction> directions = new ArrayList<>(moves.length());
+        for (int i = 0; i < moves.length(); i++) {
+            char c = moves.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            Direction direction = fromKey(c);
+            if (direction == null) {
+                throw new IllegalArgumentException("Not a move: '" + c + "'");
+            }
+            directions.add(direction);
+        }
+        return directions;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
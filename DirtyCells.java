@@ -0,0 +1,208 @@
+package model;
+
+import java.util.Arrays;
+
+// Tracks which cells of a level look different from when the level was last drawn.
+// Each call to collect compares the level with what was drawn last time and records only
+// the cells that can have changed: the player's and ghost's old and new cells, items that
+// appeared or were collected, and the line of sight before and after the step. A renderer
+// then redraws just those cells, so a step costs the size of the change, not of the maze.
+
+public class DirtyCells {
+    private int width; // Number of columns in the tracked maze
+    private int height; // Number of rows in the tracked maze
+    private long[] marked; // One bit per cell, set if the cell is in cells
+    private int[] cells; // Indices (y * width + x) of the dirty cells, in the order they were added
+    private int size; // Number of dirty cells
+    private boolean all; // True if every cell must be redrawn
+
+    private int[][] shownGrid; // Maze structure that was drawn, or null if nothing was drawn yet
+    private int shownPlayerX; // Player position that was drawn
+    private int shownPlayerY;
+    private int shownGhostX; // Ghost position that was drawn, -1 if there was no ghost
+    private int shownGhostY;
+    private int[] shownKey; // Key position that was drawn, or null if it was not shown
+    private int[] shownFlashlight; // Flashlight position that was drawn, or null if it was not shown
+    private FieldOfView.Visibility shownVisibility; // Line of sight that was drawn, or null for full view
+
+    /*
+     * EFFECTS: Constructs a tracker that has not seen any level yet, so the first
+     * collect marks every cell dirty.
+     */
+    public DirtyCells() {
+        this.cells = new int[64];
+        this.marked = new long[0];
+    }
+
+    /*
+     * REQUIRES: level is not null; visibility is the line of sight about to be
+     * drawn, or null if the whole maze is shown
+     * MODIFIES: this
+     * EFFECTS: Replaces the dirty set with the cells that differ between the
+     * level as it was last collected and as it is now, and remembers the current
+     * state for the next call. Marks every cell dirty if the maze changed.
+     */
+    public void collect(Level level, FieldOfView.Visibility visibility) {
+        clear();
+        int[][] grid = level.getMaze().getMaze();
+        Player player = level.getPlayer();
+        Ghost ghost = level.getGhost();
+        int ghostX = ghost != null ? ghost.getGhostX() : -1;
+        int ghostY = ghost != null ? ghost.getGhostY() : -1;
+        int[] key = position(level.getKey());
+        int[] flashlight = position(level.getFlashlight());
+
+        if (grid != shownGrid) {
+            resize(grid[0].length, grid.length);
+            all = true;
+        } else {
+            add(shownPlayerX, shownPlayerY);
+            add(player.getPlayerX(), player.getPlayerY());
+            if (ghostX != shownGhostX || ghostY != shownGhostY) {
+                add(shownGhostX, shownGhostY);
+                add(ghostX, ghostY);
+            }
+            if (!Arrays.equals(key, shownKey)) {
+                add(shownKey);
+                add(key);
+            }
+            if (!Arrays.equals(flashlight, shownFlashlight)) {
+                add(shownFlashlight);
+                add(flashlight);
+            }
+            if (visibility != shownVisibility) {
+                if (visibility == null || shownVisibility == null) {
+                    all = true; // Switching between full view and line of sight changes everything
+                } else {
+                    addWindow(shownVisibility);
+                    addWindow(visibility);
+                }
+            }
+        }
+
+        shownGrid = grid;
+        shownPlayerX = player.getPlayerX();
+        shownPlayerY = player.getPlayerY();
+        shownGhostX = ghostX;
+        shownGhostY = ghostY;
+        shownKey = key;
+        shownFlashlight = flashlight;
+        shownVisibility = visibility;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Forgets what was drawn, so the next collect marks every cell
+     * dirty.
+     */
+    public void invalidate() {
+        shownGrid = null;
+    }
+
+    /*
+     * EFFECTS: Returns true if every cell must be redrawn; the individual cells
+     * are then not listed.
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /*
+     * EFFECTS: Returns the number of dirty cells listed.
+     */
+    public int size() {
+        return size;
+    }
+
+    /*
+     * REQUIRES: 0 <= i < size()
+     * EFFECTS: Returns the x-coordinate of the i-th dirty cell.
+     */
+    public int getX(int i) {
+        return cells[i] % width;
+    }
+
+    /*
+     * REQUIRES: 0 <= i < size()
+     * EFFECTS: Returns the y-coordinate of the i-th dirty cell.
+     */
+    public int getY(int i) {
+        return cells[i] / width;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Adds the cell at (x, y) unless it is already dirty or lies outside
+     * the maze.
+     */
+    public void add(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return;
+        }
+        int index = y * width + x;
+        if ((marked[index >>> 6] & (1L << index)) != 0) {
+            return;
+        }
+        marked[index >>> 6] |= 1L << index;
+        if (size == cells.length) {
+            cells = Arrays.copyOf(cells, size * 2);
+        }
+        cells[size++] = index;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Adds the cell at position {x, y}, if position is not null.
+     */
+    private void add(int[] position) {
+        if (position != null) {
+            add(position[0], position[1]);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Adds every cell in the square covered by visibility.
+     */
+    private void addWindow(FieldOfView.Visibility visibility) {
+        int radius = visibility.getRadius();
+        for (int y = visibility.getOriginY() - radius; y <= visibility.getOriginY() + radius; y++) {
+            for (int x = visibility.getOriginX() - radius; x <= visibility.getOriginX() + radius; x++) {
+                add(x, y);
+            }
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Empties the dirty set, touching only the cells that were in it.
+     */
+    private void clear() {
+        for (int i = 0; i < size; i++) {
+            marked[cells[i] >>> 6] = 0;
+        }
+        size = 0;
+        all = false;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Tracks a width x height maze from now on.
+     */
+    private void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.marked = new long[(width * height + 63) / 64];
+    }
+
+    /*
+     * EFFECTS: Returns the position of item as {x, y} if it is in the maze and
+     * not yet collected, otherwise null.
+     */
+    private static int[] position(Item item) {
+        if (item == null || item.isCollected()) {
+            return null;
+        }
+        return new int[] { item.getItemX(), item.getItemY() };
+    }
+}
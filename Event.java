@@ -0,0 +1,135 @@
+package model;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Represents a game event with a severity, a category and a description.
+ * The description may be given as a template with up to two "{}" placeholders;
+ * it is only formatted when first read, so events that are logged but never
+ * displayed do not pay for string building.
+ */
+public class Event {
+    private static final int HASH_CONSTANT = 13;
+    public static final String GENERAL = "general"; // Category used when none is given
+
+    /**
+     * Represents how important an event is. Events below the log's minimum
+     * severity are dropped before they are created.
+     */
+    public enum Severity {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private final long timestamp; // Time the event was created, in milliseconds since the epoch
+    private final Severity severity; // Importance of the event
+    private final String category; // Subsystem the event belongs to (e.g. "movement", "inventory")
+    private final String template; // Description, possibly containing "{}" placeholders
+    private final Object arg0; // Value for the first placeholder, or null
+    private final Object arg1; // Value for the second placeholder, or null
+    private String description; // Formatted description, built on first use
+
+    /*
+     * REQUIRES: description is not null
+     * EFFECTS: Constructs an INFO event in the general category with the given
+     * description, timestamped with the current time.
+     */
+    public Event(String description) {
+        this(Severity.INFO, GENERAL, description, null, null);
+    }
+
+    /*
+     * REQUIRES: severity, category and template are not null
+     * EFFECTS: Constructs an event whose description is template with each "{}"
+     * replaced in turn by arg0 and arg1, timestamped with the current time.
+     */
+    public Event(Severity severity, String category, String template, Object arg0, Object arg1) {
+        this.timestamp = System.currentTimeMillis();
+        this.severity = severity;
+        this.category = category;
+        this.template = template;
+        this.arg0 = arg0;
+        this.arg1 = arg1;
+    }
+
+    /*
+     * EFFECTS: Returns the time this event was created.
+     */
+    public Date getDate() {
+        return new Date(timestamp);
+    }
+
+    /*
+     * EFFECTS: Returns the time this event was created, in milliseconds since the
+     * epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /*
+     * EFFECTS: Returns the severity of this event.
+     */
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /*
+     * EFFECTS: Returns the category of this event.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the description of this event, formatting it from the
+     * template on first use.
+     */
+    public String getDescription() {
+        if (description == null) {
+            description = format(template, arg0, arg1);
+        }
+        return description;
+    }
+
+    /*
+     * EFFECTS: Returns template with the first two "{}" placeholders replaced by
+     * arg0 and arg1; templates without placeholders are returned unchanged.
+     */
+    private static String format(String template, Object arg0, Object arg1) {
+        int first = template.indexOf("{}");
+        if (first < 0) {
+            return template;
+        }
+        StringBuilder sb = new StringBuilder(template.length() + 16);
+        sb.append(template, 0, first).append(arg0);
+        int second = template.indexOf("{}", first + 2);
+        if (second < 0) {
+            sb.append(template, first + 2, template.length());
+        } else {
+            sb.append(template, first + 2, second).append(arg1).append(template, second + 2, template.length());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        Event otherEvent = (Event) other;
+        return timestamp == otherEvent.timestamp && severity == otherEvent.severity
+                && category.equals(otherEvent.category) && getDescription().equals(otherEvent.getDescription());
+    }
+
+    @Override
+    public int hashCode() {
+        return HASH_CONSTANT * Long.hashCode(timestamp) + Objects.hash(severity, category, getDescription());
+    }
+
+    @Override
+    public String toString() {
+        return getDate().toString() + "\n" + getDescription();
+    }
+}
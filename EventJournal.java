@@ -0,0 +1,313 @@
+package persistence;
+
+import model.Event;
+import model.EventLog;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Represents an append-only binary journal of game events on local disk.
+ * Events handed over by the EventLog are queued without locking and written
+ * by a background thread, so logging never waits for the disk.
+ *
+ * The journal is a sequence of fixed-size, memory-mapped segment files
+ * (journal-00000.bin, journal-00001.bin, ...). Each segment starts with an
+ * 8-byte header (MAGIC, VERSION) followed by length-prefixed records:
+ *
+ * int bodyLength | long timestamp | byte severity | short categoryLength |
+ * category (UTF-8) | message (UTF-8)
+ *
+ * Unused space at the end of a segment is zero, so a body length of 0 marks
+ * the end of its records. Once maxSegments files exist the oldest is deleted.
+ */
+public class EventJournal implements EventLog.EventListener, AutoCloseable {
+    public static final int MAGIC = 0x45564A31; // "EVJ1"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8; // MAGIC and VERSION
+    public static final int RECORD_OVERHEAD = 4 + 8 + 1 + 2; // Length prefix and fixed-size fields
+    public static final String SEGMENT_PREFIX = "journal-";
+    public static final String SEGMENT_SUFFIX = ".bin";
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+    public static final int DEFAULT_QUEUE_LIMIT = 65536; // Events waiting to be written before new ones are dropped
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final Path directory; // Directory holding the segment files
+    private final int segmentSize; // Size of each segment file in bytes
+    private final int maxSegments; // Number of segment files kept on disk
+    private final int queueLimit; // Maximum number of queued events
+    private final Queue<Event> queue; // Events waiting for the writer thread
+    private final AtomicInteger queued; // Number of events in queue
+    private final AtomicLong dropped; // Events dropped because the queue was full
+    private final AtomicBoolean writerParked; // True while the writer thread is waiting for events
+    private final Thread writer; // Background thread that writes queued events
+    private volatile boolean running; // False once close() has been called
+
+    private FileChannel channel; // Channel of the current segment, used only by the writer thread
+    private MappedByteBuffer segment; // Mapping of the current segment, used only by the writer thread
+    private int segmentNumber; // Number of the current segment
+    private boolean dirty; // True if records were written since the last force, used only by the writer thread
+    private volatile long written; // Events written so far, updated only by the writer thread
+
+    /*
+     * REQUIRES: segmentSize > HEADER_SIZE + RECORD_OVERHEAD, maxSegments >= 1,
+     * queueLimit >= 1
+     * EFFECTS: Constructs a journal that writes segments of the given size into
+     * directory, keeping at most maxSegments of them. The writer thread is not
+     * started until start() is called.
+     */
+    public EventJournal(Path directory, int segmentSize, int maxSegments, int queueLimit) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.queueLimit = queueLimit;
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.queued = new AtomicInteger();
+        this.dropped = new AtomicLong();
+        this.writerParked = new AtomicBoolean();
+        this.writer = new Thread(this::runWriter, "event-journal-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /*
+     * EFFECTS: Constructs a journal in directory with the default segment size,
+     * segment count and queue limit.
+     */
+    public EventJournal(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS, DEFAULT_QUEUE_LIMIT);
+    }
+
+    /*
+     * MODIFIES: this, EventLog
+     * EFFECTS: Opens a journal in directory, starts its writer thread and
+     * registers it as the EventLog listener. The journal is closed by a shutdown
+     * hook, so queued events are written however the application exits. Throws
+     * IOException if the directory or the first segment cannot be created.
+     */
+    public static EventJournal attach(Path directory) throws IOException {
+        EventJournal journal = new EventJournal(directory);
+        journal.start();
+        EventLog.getInstance().setListener(journal);
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "event-journal-shutdown"));
+        return journal;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Creates the directory and a new segment after any existing ones,
+     * deleting the oldest so that at most maxSegments remain, then starts the
+     * writer thread; throws IOException if the segment cannot be created.
+     */
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> existing = listSegments(directory);
+        segmentNumber = existing.isEmpty() ? 0 : segmentNumber(existing.get(existing.size() - 1)) + 1;
+        pruneSegments(maxSegments - 1); // Room for the new one
+        openSegment();
+        running = true;
+        writer.start();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Queues the event for the writer thread without blocking. The
+     * event is dropped and counted if the queue is full or the journal is closed.
+     */
+    @Override
+    public void eventLogged(Event event) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (queued.incrementAndGet() > queueLimit) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(event);
+        if (writerParked.get() && writerParked.compareAndSet(true, false)) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes queued events until the journal is closed and the queue is
+     * empty, parking while there is nothing to write.
+     */
+    private void runWriter() {
+        try {
+            while (running || !queue.isEmpty()) {
+                Event event = queue.poll();
+                if (event == null) {
+                    if (dirty) {
+                        segment.force(); // Idle: make what has been written so far durable
+                        dirty = false;
+                    }
+                    writerParked.set(true);
+                    if (queue.isEmpty() && running) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    writerParked.set(false);
+                    continue;
+                }
+                queued.decrementAndGet();
+                writeRecord(event);
+            }
+            segment.force();
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            running = false;
+            System.out.println("Event journal stopped: " + e.getMessage());
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Appends one record for the event to the current segment, moving
+     * to a new segment when it does not fit. Events too large for an empty
+     * segment are dropped.
+     */
+    private void writeRecord(Event event) throws IOException {
+        byte[] category = event.getCategory().getBytes(StandardCharsets.UTF_8);
+        byte[] message = event.getDescription().getBytes(StandardCharsets.UTF_8);
+        int recordSize = RECORD_OVERHEAD + category.length + message.length;
+        if (recordSize > segmentSize - HEADER_SIZE || category.length > Short.MAX_VALUE) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (segment.remaining() < recordSize) {
+            rotate();
+        }
+        segment.putInt(recordSize - 4);
+        segment.putLong(event.getTimestamp());
+        segment.put((byte) event.getSeverity().ordinal());
+        segment.putShort((short) category.length);
+        segment.put(category);
+        segment.put(message);
+        written = written + 1; // Single writer, so no atomic increment is needed
+        dirty = true;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Flushes and closes the current segment, opens the next one and
+     * deletes the oldest segments beyond maxSegments.
+     */
+    private void rotate() throws IOException {
+        segment.force();
+        channel.close();
+        segmentNumber++;
+        openSegment();
+        pruneSegments(maxSegments);
+    }
+
+    /*
+     * MODIFIES: file system
+     * EFFECTS: Deletes the oldest segments until at most keep remain.
+     */
+    private void pruneSegments(int keep) throws IOException {
+        List<Path> segments = listSegments(directory);
+        for (int i = 0; i < segments.size() - keep; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Creates the segment file for segmentNumber, maps it and writes its
+     * header.
+     */
+    private void openSegment() throws IOException {
+        Path path = directory.resolve(segmentName(segmentNumber));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.putInt(MAGIC);
+        segment.putInt(VERSION);
+    }
+
+    /*
+     * MODIFIES: this, EventLog
+     * EFFECTS: Detaches the journal from the EventLog, writes every queued event
+     * and waits for the writer thread to finish.
+     */
+    @Override
+    public void close() {
+        EventLog log = EventLog.getInstance();
+        log.setListener(null);
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the number of events written so far. Only exact once the
+     * journal has been closed.
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+
+    /*
+     * EFFECTS: Returns the number of events dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /*
+     * EFFECTS: Returns the file name of the segment with the given number.
+     */
+    static String segmentName(int number) {
+        return String.format("%s%05d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    /*
+     * REQUIRES: path is named like a segment file
+     * EFFECTS: Returns the number of the given segment file.
+     */
+    static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /*
+     * EFFECTS: Returns the segment files in directory, oldest first; throws
+     * IOException if the directory cannot be listed.
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+        return segments;
+    }
+}
@@ -0,0 +1,221 @@
+package persistence;
+
+import model.Event;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Represents a reader for the binary journal written by EventJournal.
+ * Segments are memory-mapped and scanned in place: each record is presented
+ * through one reusable view, and its message is only decoded when asked for,
+ * so counting and filtering runs at millions of events per second.
+ *
+ * Usage: java persistence.EventJournalReader [directory] [category]
+ * prints a summary of the journal in directory (default ./data/journal),
+ * followed by every event in category when one is given.
+ */
+public class EventJournalReader {
+    public static final String DEFAULT_DIRECTORY = "./data/journal";
+    private static final Event.Severity[] SEVERITIES = Event.Severity.values();
+
+    private final Path directory; // Directory holding the segment files
+
+    /**
+     * Represents one journal record while it is being visited. The view is
+     * reused for every record and is only valid during the visit.
+     */
+    public static final class Record {
+        private ByteBuffer buffer; // Segment containing the record
+        private long timestamp; // Time the event was created, in milliseconds since the epoch
+        private Event.Severity severity; // Importance of the event
+        private int categoryStart; // Offset of the category bytes in buffer
+        private int categoryLength; // Number of category bytes
+        private int messageStart; // Offset of the message bytes in buffer
+        private int messageLength; // Number of message bytes
+
+        /*
+         * EFFECTS: Returns the time the event was created, in milliseconds since
+         * the epoch.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /*
+         * EFFECTS: Returns the severity of the event.
+         */
+        public Event.Severity getSeverity() {
+            return severity;
+        }
+
+        /*
+         * EFFECTS: Returns true if this record's category is the given ASCII
+         * category, without decoding it.
+         */
+        public boolean isCategory(String category) {
+            if (category.length() != categoryLength) {
+                return false;
+            }
+            for (int i = 0; i < categoryLength; i++) {
+                if (buffer.get(categoryStart + i) != category.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /*
+         * EFFECTS: Decodes and returns this record's category.
+         */
+        public String getCategory() {
+            return decode(categoryStart, categoryLength);
+        }
+
+        /*
+         * EFFECTS: Decodes and returns this record's message.
+         */
+        public String getMessage() {
+            return decode(messageStart, messageLength);
+        }
+
+        private String decode(int start, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Represents a consumer of journal records.
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(Record record);
+    }
+
+    /*
+     * REQUIRES: directory is not null
+     * EFFECTS: Constructs a reader for the journal in directory.
+     */
+    public EventJournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /*
+     * EFFECTS: Visits every record in the journal, oldest first, and returns the
+     * number of records visited; throws IOException if a segment cannot be read
+     * or does not start with the journal header.
+     */
+    public long scan(RecordVisitor visitor) throws IOException {
+        long count = 0;
+        Record record = new Record();
+        List<Path> segments = EventJournal.listSegments(directory);
+        for (Path path : segments) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                count += scanSegment(path, buffer, record, visitor);
+            }
+        }
+        return count;
+    }
+
+    /*
+     * EFFECTS: Visits every record in one mapped segment and returns how many
+     * there were; a zero length prefix, a truncated record or a malformed one
+     * (an unknown severity or a category running past the record) ends the
+     * segment.
+     */
+    private long scanSegment(Path path, ByteBuffer buffer, Record record, RecordVisitor visitor)
+            throws IOException {
+        if (buffer.remaining() < EventJournal.HEADER_SIZE || buffer.getInt() != EventJournal.MAGIC
+                || buffer.getInt() != EventJournal.VERSION) {
+            throw new IOException("Not an event journal segment: " + path);
+        }
+        long count = 0;
+        record.buffer = buffer;
+        while (buffer.remaining() >= EventJournal.RECORD_OVERHEAD) {
+            int bodyLength = buffer.getInt();
+            if (bodyLength <= 0 || bodyLength > buffer.remaining()) {
+                break; // End of written records
+            }
+            int end = buffer.position() + bodyLength;
+            if (bodyLength < EventJournal.RECORD_OVERHEAD - Integer.BYTES) {
+                break; // Too short for the fixed-size fields, malformed
+            }
+            record.timestamp = buffer.getLong();
+            int severity = buffer.get();
+            if (severity < 0 || severity >= SEVERITIES.length) {
+                break; // Unknown severity, malformed
+            }
+            record.severity = SEVERITIES[severity];
+            record.categoryLength = buffer.getShort();
+            if (record.categoryLength < 0 || record.categoryLength > end - buffer.position()) {
+                break; // Category runs past the record, malformed
+            }
+            record.categoryStart = buffer.position();
+            record.messageStart = record.categoryStart + record.categoryLength;
+            record.messageLength = end - record.messageStart;
+            visitor.visit(record);
+            buffer.position(end);
+            count++;
+        }
+        return count;
+    }
+
+    /*
+     * EFFECTS: Prints the number of events per category and severity in the
+     * journal and the scan rate, followed by the events of one category if given.
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : DEFAULT_DIRECTORY);
+        EventJournalReader reader = new EventJournalReader(directory);
+        Map<String, long[]> counts = new TreeMap<>();
+
+        long start = System.nanoTime();
+        long total = reader.scan(new RecordVisitor() {
+            private String lastCategory = ""; // Category of the previous record, to skip decoding repeats
+            private long[] lastCounts; // Counts of lastCategory
+
+            @Override
+            public void visit(Record record) {
+                if (lastCounts == null || !record.isCategory(lastCategory)) {
+                    lastCategory = record.getCategory();
+                    lastCounts = counts.computeIfAbsent(lastCategory, c -> new long[SEVERITIES.length]);
+                }
+                lastCounts[record.getSeverity().ordinal()]++;
+            }
+        });
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        System.out.printf("%d events in %.1f ms (%.1f million events/s)%n", total, elapsed / 1e6,
+                total * 1e3 / elapsed);
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            StringBuilder line = new StringBuilder("  ").append(entry.getKey()).append(':');
+            for (Event.Severity severity : SEVERITIES) {
+                line.append(' ').append(severity).append('=').append(entry.getValue()[severity.ordinal()]);
+            }
+            System.out.println(line);
+        }
+
+        if (args.length > 1) {
+            String category = args[1];
+            reader.scan(record -> {
+                if (record.isCategory(category)) {
+                    System.out.println(new Date(record.getTimestamp()) + " [" + record.getSeverity() + "] "
+                            + record.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package model;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Represents the log of game events. There is only one EventLog in the system
+ * and it is shared by all classes (singleton design pattern).
+ *
+ * The log keeps the most recent events in a fixed-capacity ring buffer, so a
+ * long session runs in constant memory. Writers claim a slot with a single
+ * atomic increment and never block each other. Events below the minimum
+ * severity, or skipped by their category's sample rate, are dropped before
+ * any Event is allocated.
+ */
+public class EventLog implements Iterable<Event> {
+    public static final int DEFAULT_CAPACITY = 4096; // Number of events retained, must be a power of two
+
+    private static EventLog theLog; // The only EventLog in the system
+
+    private final AtomicReferenceArray<Event> ring; // Most recent events, indexed by sequence & mask
+    private final int mask; // Capacity - 1, used to map a sequence number to a slot
+    private final AtomicLong nextSequence; // Sequence number of the next event to be logged
+    private volatile long firstSequence; // Sequence number of the oldest event not removed by clear()
+    private volatile Event.Severity minimumSeverity; // Events below this severity are dropped
+    private final Map<String, Sampler> samplers; // Sample rates, keyed by category
+    private volatile boolean hasSamplers; // True once any sample rate has been set
+    private volatile EventListener listener; // Receives every recorded event, or null
+
+    /**
+     * Represents a consumer of recorded events, such as a journal that streams
+     * them to disk. Listeners are called on the logging thread and must not block.
+     */
+    @FunctionalInterface
+    public interface EventListener {
+        void eventLogged(Event event);
+    }
+
+    /*
+     * Represents a sample rate for one category: keeps every n-th event.
+     */
+    private static final class Sampler {
+        private final int every; // Keep one event out of this many
+        private final AtomicLong seen = new AtomicLong(); // Events offered so far
+
+        Sampler(int every) {
+            this.every = every;
+        }
+
+        boolean keep() {
+            return seen.getAndIncrement() % every == 0;
+        }
+    }
+
+    /*
+     * REQUIRES: capacity is a power of two
+     * EFFECTS: Constructs an empty log that retains the given number of events.
+     * Prevents external construction (singleton design pattern).
+     */
+    private EventLog(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        ring = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+        nextSequence = new AtomicLong();
+        firstSequence = 0;
+        minimumSeverity = Event.Severity.INFO;
+        samplers = new ConcurrentHashMap<>();
+    }
+
+    /*
+     * EFFECTS: Returns the instance of EventLog, creating it if it doesn't
+     * already exist (singleton design pattern).
+     */
+    public static synchronized EventLog getInstance() {
+        if (theLog == null) {
+            theLog = new EventLog(DEFAULT_CAPACITY);
+        }
+        return theLog;
+    }
+
+    /*
+     * EFFECTS: Returns true if events of the given severity are currently
+     * recorded. Callers can use this to skip building expensive arguments.
+     */
+    public boolean isEnabled(Event.Severity severity) {
+        return severity.compareTo(minimumSeverity) >= 0;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Sets the minimum severity of events that are recorded.
+     */
+    public void setMinimumSeverity(Event.Severity severity) {
+        this.minimumSeverity = severity;
+    }
+
+    /*
+     * EFFECTS: Returns the minimum severity of events that are recorded.
+     */
+    public Event.Severity getMinimumSeverity() {
+        return minimumSeverity;
+    }
+
+    /*
+     * REQUIRES: every >= 1
+     * MODIFIES: this
+     * EFFECTS: Records only one out of every n events in the given category.
+     * A rate of 1 records every event.
+     */
+    public void setSampleRate(String category, int every) {
+        if (every <= 1) {
+            samplers.remove(category);
+        } else {
+            samplers.put(category, new Sampler(every));
+            hasSamplers = true;
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Sets the listener that receives every recorded event; null removes
+     * it.
+     */
+    public void setListener(EventListener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records the given event unless it is filtered out by severity or
+     * by the sample rate of its category.
+     */
+    public void logEvent(Event e) {
+        if (isEnabled(e.getSeverity()) && sampled(e.getCategory())) {
+            append(e);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records an event with the given fixed message, allocating nothing
+     * if it is filtered out.
+     */
+    public void log(Event.Severity severity, String category, String message) {
+        if (isEnabled(severity) && sampled(category)) {
+            append(new Event(severity, category, message, null, null));
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records an event whose description is template with "{}" replaced
+     * by arg; the description is only formatted when it is read.
+     */
+    public void log(Event.Severity severity, String category, String template, Object arg) {
+        if (isEnabled(severity) && sampled(category)) {
+            append(new Event(severity, category, template, arg, null));
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records an event whose description is template with the two "{}"
+     * replaced by arg0 and arg1; the description is only formatted when it is
+     * read.
+     */
+    public void log(Event.Severity severity, String category, String template, Object arg0, Object arg1) {
+        if (isEnabled(severity) && sampled(category)) {
+            append(new Event(severity, category, template, arg0, arg1));
+        }
+    }
+
+    /*
+     * EFFECTS: Returns true if the next event in category should be kept
+     * according to its sample rate.
+     */
+    private boolean sampled(String category) {
+        if (!hasSamplers) {
+            return true;
+        }
+        Sampler sampler = samplers.get(category);
+        return sampler == null || sampler.keep();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Stores the event in the next slot of the ring, overwriting the
+     * oldest event once the ring is full, and passes it to the listener.
+     */
+    private void append(Event e) {
+        long sequence = nextSequence.getAndIncrement();
+        ring.set((int) (sequence & mask), e);
+        EventListener current = listener;
+        if (current != null) {
+            current.eventLogged(e);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Removes all retained events and records that the log was cleared.
+     */
+    public void clear() {
+        firstSequence = nextSequence.get();
+        for (int i = 0; i < ring.length(); i++) {
+            ring.set(i, null);
+        }
+        logEvent(new Event("Event log cleared."));
+    }
+
+    /*
+     * EFFECTS: Returns the number of events currently retained.
+     */
+    public int size() {
+        long end = nextSequence.get();
+        return (int) (end - Math.max(firstSequence, end - ring.length()));
+    }
+
+    /*
+     * EFFECTS: Returns the fixed number of events this log can retain.
+     */
+    public int getCapacity() {
+        return ring.length();
+    }
+
+    /*
+     * EFFECTS: Returns an iterator over the retained events, oldest first. The
+     * iterator covers the events present when it was created; events logged
+     * concurrently may overwrite slots it has not reached yet.
+     */
+    @Override
+    public Iterator<Event> iterator() {
+        long end = nextSequence.get();
+        long start = Math.max(firstSequence, end - ring.length());
+        return new Iterator<Event>() {
+            private long sequence = start; // Sequence number of the next slot to read
+            private Event next = advance(); // Next event to return, or null at the end
+
+            private Event advance() {
+                while (sequence < end) {
+                    Event e = ring.get((int) (sequence++ & mask));
+                    if (e != null) {
+                        return e;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Event next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Event e = next;
+                next = advance();
+                return e;
+            }
+        };
+    }
+}
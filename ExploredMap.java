@@ -0,0 +1,216 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+
+// Remembers which cells of a maze the player has seen, as one bit per cell.
+// The map grows as the player looks around and is saved in a run-length, bit-packed form,
+// so a save stays small even when the maze is large.
+
+public class ExploredMap {
+    private final int width; // Number of columns in the maze
+    private final int height; // Number of rows in the maze
+    private final long[] bits; // One bit per cell, row by row; set once the cell has been seen
+    private FieldOfView.Visibility lastMarked; // Last visibility merged in, to skip repeats
+    private int changes; // Times cells were newly explored, so a saver can tell the map changed
+
+    /*
+     * REQUIRES: width > 0, height > 0
+     * EFFECTS: Constructs a map of a width x height maze with no cells explored.
+     */
+    public ExploredMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.bits = new long[(width * height + 63) / 64];
+    }
+
+    /*
+     * EFFECTS: Returns the number of columns covered by this map.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /*
+     * EFFECTS: Returns the number of rows covered by this map.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /*
+     * EFFECTS: Returns the number of times cells were newly explored; it only
+     * changes when the map does.
+     */
+    public int getChangeCount() {
+        return changes;
+    }
+
+    /*
+     * EFFECTS: Returns true if the cell at (x, y) has been seen; cells outside the
+     * maze are never explored.
+     */
+    public boolean isExplored(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        int index = y * width + x;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Marks the cell at (x, y) as explored; cells outside the maze are
+     * ignored.
+     */
+    public void markExplored(int x, int y) {
+        if (x >= 0 && y >= 0 && x < width && y < height && !isExplored(x, y)) {
+            int index = y * width + x;
+            bits[index >>> 6] |= 1L << index;
+            changes++;
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Marks every cell in the given visibility as explored. Only the
+     * cells around the visibility's origin are touched, and merging the same
+     * visibility twice in a row does nothing.
+     */
+    public void markVisible(FieldOfView.Visibility visibility) {
+        if (visibility == lastMarked) {
+            return;
+        }
+        int radius = visibility.getRadius();
+        int minX = Math.max(0, visibility.getOriginX() - radius);
+        int maxX = Math.min(width - 1, visibility.getOriginX() + radius);
+        int minY = Math.max(0, visibility.getOriginY() - radius);
+        int maxY = Math.min(height - 1, visibility.getOriginY() + radius);
+        boolean changed = false;
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                if (visibility.isVisible(x, y)) {
+                    int index = y * width + x;
+                    changed |= (bits[index >>> 6] & (1L << index)) == 0;
+                    bits[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+        if (changed) {
+            changes++;
+        }
+        lastMarked = visibility;
+    }
+
+    /*
+     * EFFECTS: Returns this map as a compact string: the lengths of alternating
+     * runs of unexplored and explored cells (starting with unexplored), each
+     * written as a variable-length integer, then Base64 encoded.
+     */
+    public String encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int total = width * height;
+        int index = 0;
+        boolean explored = false;
+        while (index < total) {
+            int next = nextChange(index, explored, total);
+            writeVarInt(out, next - index);
+            index = next;
+            explored = !explored;
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    /*
+     * EFFECTS: Returns the map described by encoded; throws
+     * IllegalArgumentException if it is not valid Base64, is truncated, or its
+     * runs do not cover exactly the cells of a width x height maze.
+     */
+    public static ExploredMap decode(String encoded, int width, int height) {
+        ExploredMap map = new ExploredMap(width, height);
+        byte[] data = Base64.getDecoder().decode(encoded);
+        int total = width * height;
+        int index = 0;
+        int[] position = { 0 };
+        boolean explored = false;
+        while (position[0] < data.length) {
+            int run = readVarInt(data, position);
+            if (run < 0 || run > total - index) {
+                throw new IllegalArgumentException("Explored map does not fit a " + width + "x" + height + " maze");
+            }
+            if (explored) {
+                map.setRange(index, index + run);
+            }
+            index += run;
+            explored = !explored;
+        }
+        if (index != total) {
+            throw new IllegalArgumentException("Explored map covers " + index + " of the " + total + " cells");
+        }
+        return map;
+    }
+
+    /*
+     * EFFECTS: Returns the first index at or after start whose bit differs from
+     * the given value, or total if there is none. Skips whole words at a time.
+     */
+    private int nextChange(int start, boolean value, int total) {
+        int word = start >>> 6;
+        long differing = (value ? ~bits[word] : bits[word]) & (-1L << start);
+        while (differing == 0) {
+            word++;
+            if (word >= bits.length) {
+                return total;
+            }
+            differing = value ? ~bits[word] : bits[word];
+        }
+        return Math.min(total, (word << 6) + Long.numberOfTrailingZeros(differing));
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Sets the bits of every index in [from, to).
+     */
+    private void setRange(int from, int to) {
+        for (int index = from; index < to; index++) {
+            bits[index >>> 6] |= 1L << index;
+        }
+    }
+
+    /*
+     * MODIFIES: out
+     * EFFECTS: Writes value as an unsigned variable-length integer, 7 bits per
+     * byte, low bits first.
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /*
+     * MODIFIES: position
+     * EFFECTS: Reads an unsigned variable-length integer from data starting at
+     * position[0] and advances position[0] past it; throws
+     * IllegalArgumentException if it is cut off or longer than five bytes.
+     */
+    private static int readVarInt(byte[] data, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 35) {
+                throw new IllegalArgumentException("Explored map run is longer than five bytes");
+            }
+            if (position[0] >= data.length) {
+                throw new IllegalArgumentException("Explored map ends in the middle of a run");
+            }
+            b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
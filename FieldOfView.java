@@ -0,0 +1,195 @@
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Computes which cells of a maze can be seen from a position, using recursive shadowcasting.
+// Walls are seen but block sight. Results are cached per (position, radius), so standing still
+// or walking back and forth re-uses earlier results instead of recomputing them.
+
+public class FieldOfView {
+    public static final int MAX_RADIUS = 64; // Largest supported sight radius
+    private static final int CACHE_SIZE = 256; // Number of results kept, least recently used dropped first
+
+    // Multipliers (xx, xy, yx, yy), one column per octant, that map the first octant onto each octant
+    private static final int[][] OCTANTS = {
+            { 1, 0, 0, -1, -1, 0, 0, 1 },
+            { 0, 1, -1, 0, 0, -1, 1, 0 },
+            { 0, 1, 1, 0, 0, -1, -1, 0 },
+            { 1, 0, 0, 1, -1, 0, 0, -1 }
+    };
+
+    private final int[][] grid; // Maze structure, 1 for walls and 0 for paths
+    private final Map<Long, Visibility> cache; // Computed results, keyed by position and radius
+
+    /**
+     * Represents the cells visible from one position: a bitmap covering the
+     * square of side 2 * radius + 1 centred on the origin. Instances are
+     * immutable once computed, so they can be shared through the cache.
+     */
+    public static final class Visibility {
+        private final int originX; // x-coordinate the cells are seen from
+        private final int originY; // y-coordinate the cells are seen from
+        private final int radius; // Sight radius
+        private final int size; // Side of the covered square, 2 * radius + 1
+        private final long[] bits; // One bit per covered cell, row by row
+
+        private Visibility(int originX, int originY, int radius) {
+            this.originX = originX;
+            this.originY = originY;
+            this.radius = radius;
+            this.size = 2 * radius + 1;
+            this.bits = new long[(size * size + 63) / 64];
+        }
+
+        /*
+         * EFFECTS: Returns true if the cell at (x, y) is visible from the origin.
+         */
+        public boolean isVisible(int x, int y) {
+            int col = x - originX + radius;
+            int row = y - originY + radius;
+            if (col < 0 || row < 0 || col >= size || row >= size) {
+                return false;
+            }
+            int index = row * size + col;
+            return (bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Marks the cell at (x, y) as visible.
+         */
+        private void set(int x, int y) {
+            int index = (y - originY + radius) * size + (x - originX + radius);
+            bits[index >>> 6] |= 1L << index;
+        }
+
+        /*
+         * EFFECTS: Returns the x-coordinate the cells are seen from.
+         */
+        public int getOriginX() {
+            return originX;
+        }
+
+        /*
+         * EFFECTS: Returns the y-coordinate the cells are seen from.
+         */
+        public int getOriginY() {
+            return originY;
+        }
+
+        /*
+         * EFFECTS: Returns the sight radius.
+         */
+        public int getRadius() {
+            return radius;
+        }
+    }
+
+    /*
+     * REQUIRES: grid is a non-empty rectangular array
+     * EFFECTS: Constructs a field-of-view calculator for the given maze structure.
+     * The structure must not change while this calculator is in use.
+     */
+    public FieldOfView(int[][] grid) {
+        this.grid = grid;
+        this.cache = new LinkedHashMap<>(CACHE_SIZE * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Visibility> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    /*
+     * EFFECTS: Returns the maze structure this calculator works on.
+     */
+    public int[][] getGrid() {
+        return grid;
+    }
+
+    /*
+     * REQUIRES: radius >= 0
+     * MODIFIES: this
+     * EFFECTS: Returns the cells visible from (x, y) within radius cells in each
+     * direction (radius is capped at MAX_RADIUS). Results are cached, so repeated
+     * calls for the same position and radius do not recompute anything.
+     */
+    public Visibility compute(int x, int y, int radius) {
+        int r = Math.min(radius, MAX_RADIUS);
+        Long key = ((long) r << 42) | ((long) (y & 0x1FFFFF) << 21) | (x & 0x1FFFFF);
+        Visibility visibility = cache.get(key);
+        if (visibility == null) {
+            visibility = new Visibility(x, y, r);
+            visibility.set(x, y);
+            for (int octant = 0; octant < 8; octant++) {
+                castLight(visibility, 1, 1.0, 0.0,
+                        OCTANTS[0][octant], OCTANTS[1][octant], OCTANTS[2][octant], OCTANTS[3][octant]);
+            }
+            cache.put(key, visibility);
+        }
+        return visibility;
+    }
+
+    /*
+     * MODIFIES: visibility
+     * EFFECTS: Lights the cells of one octant between the start and end slopes,
+     * starting at the given row, and recurses past each wall so that the cells
+     * behind it stay dark. (xx, xy, yx, yy) map octant coordinates onto the maze.
+     */
+    private void castLight(Visibility visibility, int row, double start, double end,
+            int xx, int xy, int yx, int yy) {
+        if (start < end) {
+            return;
+        }
+        int radius = visibility.radius;
+        double newStart = 0.0;
+        for (int j = row; j <= radius; j++) {
+            boolean blocked = false;
+            for (int dx = -j, dy = -j; dx <= 0; dx++) {
+                double leftSlope = (dx - 0.5) / (dy + 0.5);
+                double rightSlope = (dx + 0.5) / (dy - 0.5);
+                if (start < rightSlope) {
+                    continue;
+                } else if (end > leftSlope) {
+                    break;
+                }
+                int mapX = visibility.originX + dx * xx + dy * xy;
+                int mapY = visibility.originY + dx * yx + dy * yy;
+                boolean wall = isOpaque(mapX, mapY);
+                if (inBounds(mapX, mapY)) {
+                    visibility.set(mapX, mapY);
+                }
+                if (blocked) {
+                    if (wall) {
+                        newStart = rightSlope;
+                    } else {
+                        blocked = false;
+                        start = newStart;
+                    }
+                } else if (wall && j < radius) {
+                    blocked = true;
+                    castLight(visibility, j + 1, start, leftSlope, xx, xy, yx, yy);
+                    newStart = rightSlope;
+                }
+            }
+            if (blocked) {
+                break;
+            }
+        }
+    }
+
+    /*
+     * EFFECTS: Returns true if (x, y) lies inside the maze.
+     */
+    private boolean inBounds(int x, int y) {
+        return y >= 0 && y < grid.length && x >= 0 && x < grid[y].length;
+    }
+
+    /*
+     * EFFECTS: Returns true if (x, y) blocks sight: a wall or outside the maze.
+     */
+    private boolean isOpaque(int x, int y) {
+        return !inBounds(x, y) || grid[y][x] == 1;
+    }
+}
@@ -3,23 +3,39 @@ package persistence;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import model.Event;
+import model.EventLog;
 import model.Inventory;
 import model.Level;
 import ui.GamePanel;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.InflaterInputStream;
 
 // Referenced from the JsonSerialization Demo
 // https://github.students.cs.ubc.ca/CPSC210/JsonSerializationDemo
 /**
- * Represents a reader that reads the game state from JSON data stored in a
- * file.
+ * Represents a reader that reads the game state from a file holding either
+ * JSON or the binary format of BinaryGameCodec, telling them apart by the
+ * binary header. Games are read through a JsonSource, token by token, so the
+ * file is never held in memory as a whole. If the file has a DeltaLog, the
+ * changes logged since it was written are applied to the document read.
+ * Files GameWriter deflated are recognised by their zlib header and inflated
+ * as they are read.
  */
 public class GameReader {
+    private static final boolean[] NO_LEVELS_COMPLETED = { false, false, false }; // Progress of a new game
     private String source;
 
     /*
@@ -31,56 +47,216 @@ public class GameReader {
     }
 
     /*
-     * EFFECTS: reads the game state from the file and returns a GamePanel object;
-     * throws IOException if an error occurs reading data from file
+     * EFFECTS: reads the game state from the file and returns a GamePanel object,
+     * falling back on the previous saves GameWriter kept if the file cannot be
+     * read; throws IOException if none of them can be read
      */
     public GamePanel read() throws IOException {
-        String jsonData = readFile(source);
-        JSONObject jsonObject = new JSONObject(jsonData);
-        return parseGame(jsonObject);
+        return readLatest(this::readGame);
     }
 
     /*
-     * EFFECTS: reads the source file as a string and returns it
-     * throws IOException if an error occurs reading data from the file
+     * EFFECTS: reads the source file, in either format, applies the changes in
+     * its DeltaLog, and returns the game state document, falling back on the
+     * previous saves GameWriter kept if the file cannot be read; throws
+     * IOException if none of them can be read
      */
-    public String readFile(String source) throws IOException {
-        StringBuilder contentBuilder = new StringBuilder();
+    public JSONObject readJson() throws IOException {
+        return readLatest(GameReader::readDocument);
+    }
+
+    /*
+     * Reads one save file into a T.
+     */
+    private interface FileReader<T> {
+        T read(String path) throws IOException;
+    }
 
-        try (Stream<String> stream = Files.lines(Paths.get(source), StandardCharsets.UTF_8)) {
-            stream.forEach(contentBuilder::append);
+    /*
+     * EFFECTS: reads the source file with reader, or if that fails, the
+     * newest generation GameWriter kept that can be read; throws the
+     * exception from the source file if none of them can be read
+     */
+    private <T> T readLatest(FileReader<T> reader) throws IOException {
+        try {
+            return reader.read(source);
+        } catch (IOException e) {
+            for (int generation = 1; Files.exists(GameWriter.generationPath(source, generation)); generation++) {
+                try {
+                    T result = reader.read(GameWriter.generationPath(source, generation).toString());
+                    EventLog.getInstance().log(Event.Severity.WARN, "save",
+                            "Could not read {}; recovered the save from {} saves back", source, generation);
+                    return result;
+                } catch (IOException older) {
+                    e.addSuppressed(older);
+                }
+            }
+            throw e;
         }
+    }
 
-        return contentBuilder.toString();
+    /*
+     * EFFECTS: reads the game state from the file at path, streaming it unless
+     * its DeltaLog holds changes to apply to it
+     */
+    private GamePanel readGame(String path) throws IOException {
+        if (DeltaLog.hasChanges(path)) {
+            return parseGame(readDocument(path)); // The logged changes apply to the whole document
+        }
+        try (InputStream in = openFile(path, null); InputStream data = decode(in)) {
+            return parseGame(openSource(data));
+        }
+    }
+
+    /*
+     * EFFECTS: reads the file at path and applies its DeltaLog, if it has one
+     * for this snapshot
+     */
+    private static JSONObject readDocument(String path) throws IOException {
+        CRC32 checksum = new CRC32();
+        JSONObject document;
+        try (InputStream in = openFile(path, checksum); InputStream data = decode(in)) {
+            Object value = openSource(data).nextValue();
+            if (!(value instanceof JSONObject)) {
+                throw new IOException(path + " does not hold a saved game");
+            }
+            document = (JSONObject) value;
+            in.transferTo(OutputStream.nullOutputStream()); // The checksum covers the whole file
+        }
+        try {
+            DeltaLog.replay(path, checksum.getValue(), document);
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to apply the changes saved after " + path + ": " + e.getMessage(), e);
+        }
+        return document;
+    }
+
+    /*
+     * EFFECTS: opens the file at path for buffered reading, updating checksum
+     * with every byte read unless it is null; throws IOException if it cannot
+     * be opened
+     */
+    private static InputStream openFile(String path, CRC32 checksum) throws IOException {
+        InputStream file = Files.newInputStream(Paths.get(path));
+        return new BufferedInputStream(checksum == null ? file : new CheckedInputStream(file, checksum));
+    }
+
+    /*
+     * REQUIRES: in supports mark and reset
+     * EFFECTS: returns a buffered stream inflating in if it starts with a zlib
+     * header, otherwise in itself. Neither JSON text nor the binary format can
+     * start with one.
+     */
+    private static InputStream decode(InputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        boolean zlib = second >= 0 && (first & 0x0F) == 8 && (first >> 4) <= 7 && ((first << 8) | second) % 31 == 0;
+        return zlib ? new BufferedInputStream(new InflaterInputStream(in)) : in;
+    }
+
+    /*
+     * REQUIRES: in supports mark and reset
+     * EFFECTS: returns a source reading in as the binary format if it starts
+     * with the binary header, otherwise as JSON text
+     */
+    private static JsonSource openSource(InputStream in) throws IOException {
+        in.mark(4);
+        byte[] header = in.readNBytes(4);
+        in.reset();
+        if (BinaryGameCodec.isEncoded(header)) {
+            return new BinaryGameCodec.Source(in);
+        }
+        return new JsonTextSource(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /*
+     * EFFECTS: reads the source file as a string, line breaks included, and
+     * returns it; throws IOException if an error occurs reading data from the
+     * file
+     */
+    public String readFile(String source) throws IOException {
+        return Files.readString(Paths.get(source), StandardCharsets.UTF_8);
     }
 
     /*
      * EFFECTS: parses the game state from a JSON object and returns a GamePanel
-     * object
+     * object; the saved level, if any, is restored as it was, without
+     * generating one first. Throws IOException if jsonObject holds values of
+     * the wrong type or a level that cannot be restored.
      */
-    public GamePanel parseGame(JSONObject jsonObject) {
-        GamePanel game = new GamePanel();
+    public GamePanel parseGame(JSONObject jsonObject) throws IOException {
         try {
             // Load level completion status
-            game.setlevelCompleted(loadLevelCompleted(jsonObject));
+            boolean[] levelCompleted = jsonObject.has("levelCompleted") ? loadLevelCompleted(jsonObject)
+                    : NO_LEVELS_COMPLETED.clone();
 
             // Load current level
-            if (jsonObject.has("currentLevel")) {
-                Level currentLevel = loadLevel(jsonObject);
-                game.setCurrentLevel(currentLevel); //game.setCurrentLevel(currentLevel.getLevelNumber()); 
-                game.getCurrentLevel().setMaze(currentLevel.getMaze());
-                game.getCurrentLevel().setPlayer(currentLevel.getPlayer());
-                game.getCurrentLevel().setKey(currentLevel.getKey());
-                game.getCurrentLevel().setFlashlight(currentLevel.getFlashlight());
-                // Fix: Set the ghost for level 3
-                if (currentLevel.getLevelNumber() == 3 && currentLevel.getGhost() != null) {
-                    game.getCurrentLevel().setGhost(currentLevel.getGhost());
+            Level currentLevel = jsonObject.has("currentLevel") ? loadLevel(jsonObject) : null;
+            return new GamePanel(currentLevel, levelCompleted, jsonObject.optBoolean("isLevelInProgress"),
+                    jsonObject.optBoolean("resumedGame"));
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed save: " + e.getMessage(), e); // So readLatest tries older saves
+        }
+    }
+
+    /*
+     * MODIFIES: source
+     * EFFECTS: parses the game state from source and returns a GamePanel
+     * object; the current level is streamed rather than built as JSON first,
+     * and restored without generating one. Throws IOException if source is
+     * malformed or holds values of the wrong type.
+     */
+    public GamePanel parseGame(JsonSource source) throws IOException {
+        boolean[] levelCompleted = NO_LEVELS_COMPLETED.clone();
+        Level currentLevel = null;
+        boolean levelInProgress = false;
+        boolean resumedGame = false;
+        try {
+            source.beginObject();
+            while (source.hasNext()) {
+                switch (source.nextName()) {
+                    case "levelCompleted":
+                        levelCompleted = loadLevelCompleted(source);
+                        break;
+                    case "currentLevel":
+                        currentLevel = Level.readFrom(source);
+                        break;
+                    case "isLevelInProgress":
+                        levelInProgress = source.nextBoolean();
+                        break;
+                    case "resumedGame":
+                        resumedGame = source.nextBoolean();
+                        break;
+                    default:
+                        source.skipValue();
                 }
             }
-        } catch (Exception e) {
-            System.out.println("Error loading game state: " + e.getMessage());
+            source.endObject();
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed save: " + e.getMessage(), e); // So readLatest tries older saves
+        }
+        return new GamePanel(currentLevel, levelCompleted, levelInProgress, resumedGame);
+    }
+
+    /*
+     * MODIFIES: source
+     * EFFECTS: reads a "levelCompleted" array from source and returns it as a
+     * boolean array
+     */
+    private static boolean[] loadLevelCompleted(JsonSource source) throws IOException {
+        List<Boolean> completed = new ArrayList<>();
+        source.beginArray();
+        while (source.hasNext()) {
+            completed.add(source.nextBoolean());
+        }
+        source.endArray();
+        boolean[] levelCompleted = new boolean[completed.size()];
+        for (int i = 0; i < levelCompleted.length; i++) {
+            levelCompleted[i] = completed.get(i);
         }
-        return game;
+        return levelCompleted;
     }
 
     /*
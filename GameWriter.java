@@ -1,74 +1,357 @@
 package persistence;
 
+import model.Event;
+import model.EventLog;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import ui.GamePanel;
 
-import java.io.FileNotFoundException;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 // Referenced from the JsonSerialization Demo
 // https://github.students.cs.ubc.ca/CPSC210/JsonSerializationDemo
 /**
- * Represents a writer that writes JSON representation of the game state to a
- * file.
+ * Represents a writer that writes the game state to a file, either as
+ * indented JSON or in the compact binary format of BinaryGameCodec. GameReader
+ * tells the two apart, so either can be loaded. The state is streamed to the
+ * file through a JsonSink, so the whole document is never held in memory.
+ *
+ * Saves are crash-safe: the state is written to a temporary file beside the
+ * destination, forced to disk, and only then renamed over the destination in
+ * one atomic step, so the destination always holds a complete save. Before
+ * the rename the previous save is kept as destination.1, the one before it as
+ * destination.2, and so on for the last generationsKept saves, which
+ * GameReader falls back on if the destination cannot be read. The time spent
+ * forcing data to disk is logged to the EventLog.
+ *
+ * Either format can be deflated as it is streamed out. GameReader recognises
+ * the zlib header and inflates the file as it reads, so compressed and plain
+ * saves load alike. With DEFLATE_RLE, binary saves also write their grids as
+ * runs of equal cells, which deflate shrinks much further than packed bits.
  */
 public class GameWriter {
     private static final int TAB = 4; // Number of spaces for indentation in the JSON file
-    private PrintWriter writer;
+    private static final String FORMAT_PROPERTY = "maze.saveFormat"; // System property choosing the default format
+    private static final String COMPRESSION_PROPERTY = "maze.saveCompression"; // Property choosing the compression
+    private static final int DEFLATE_BUFFER = 8192; // Bytes deflated at a time
+    public static final String TEMP_SUFFIX = ".tmp"; // Suffix of the file a save is written to before the rename
+    public static final int DEFAULT_GENERATIONS = 3; // Previous saves kept for recovery
+    private PrintWriter writer; // Open text file, for the JSON format
+    private OutputStream output; // Open binary file, for the binary format
+    private JsonSink sink; // Writes documents to the open file, or null until the first one
+    private CheckedOutputStream checked; // Computes the CRC-32 of the bytes written to the file
+    private FileChannel channel; // Open temporary file
+    private Deflater deflater; // Compresses the file, or null if it is not compressed
+    private DeflaterOutputStream deflated; // Deflates what is written before it is checksummed
+    private int generationsKept = DEFAULT_GENERATIONS; // Previous saves kept as destination.1, .2, ...
+    private long syncNanos; // Time spent forcing the last save to disk
     private String destination;
+    private Format format; // How the game state is written
+    private Compression compression = defaultCompression(); // How the file is compressed
+
+    /**
+     * Represents the file formats the game state can be written in.
+     */
+    public enum Format {
+        JSON, // Indented JSON text, readable and editable by hand
+        BINARY // BinaryGameCodec, smaller and faster to write and read
+    }
+
+    /**
+     * Represents the ways the file can be compressed.
+     */
+    public enum Compression {
+        NONE, // Written as is
+        DEFLATE, // Deflated as it is written
+        DEFLATE_RLE // Deflated, with binary grids written as runs first
+    }
 
     /*
      * REQUIRES: destination is not null
-     * EFFECTS: constructs writer to write to the destination file
+     * EFFECTS: constructs writer to write to the destination file in the default
+     * format
      */
     public GameWriter(String destination) {
+        this(destination, defaultFormat());
+    }
+
+    /*
+     * REQUIRES: destination and format are not null
+     * EFFECTS: constructs writer to write to the destination file in format
+     */
+    public GameWriter(String destination, Format format) {
         this.destination = destination;
+        this.format = format;
     }
 
     /*
+     * EFFECTS: returns the format saves are written in: JSON, unless the
+     * system property maze.saveFormat is "binary"
+     */
+    public static Format defaultFormat() {
+        return "binary".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY)) ? Format.BINARY : Format.JSON;
+    }
+
+    /*
+     * EFFECTS: returns the compression saves are written with: NONE, unless
+     * the system property maze.saveCompression is "deflate" or "rle"
+     */
+    public static Compression defaultCompression() {
+        String compression = System.getProperty(COMPRESSION_PROPERTY, "");
+        if ("deflate".equalsIgnoreCase(compression)) {
+            return Compression.DEFLATE;
+        }
+        return "rle".equalsIgnoreCase(compression) ? Compression.DEFLATE_RLE : Compression.NONE;
+    }
+
+    /*
+     * REQUIRES: compression is not null; the writer has not been opened
      * MODIFIES: this
-     * EFFECTS: opens the writer; throws FileNotFoundException if the destination
-     * file cannot be opened for writing
+     * EFFECTS: sets how the file is compressed
      */
-    public void open() throws FileNotFoundException {
-        writer = new PrintWriter(new File(destination));
+    public void setCompression(Compression compression) {
+        this.compression = compression;
     }
 
     /*
+     * REQUIRES: generations >= 0
      * MODIFIES: this
-     * EFFECTS: writes the JSON representation of the game state to the file
+     * EFFECTS: sets the number of previous saves kept for recovery
      */
-    public void writeGameCompleteStatus(GamePanel gamePanel) {
-        JSONObject json = new JSONObject();
-        json.put("levelCompleted", gamePanel.getLevelCompleted());
-        saveToFile(json.toString(TAB)); // Save the JSON string to the file with indentation
+    public void setGenerationsKept(int generations) {
+        this.generationsKept = generations;
+    }
+
+    /*
+     * EFFECTS: returns the path of the previous save the given number of saves
+     * back, starting from 1
+     */
+    public static Path generationPath(String destination, int generation) {
+        return Paths.get(destination + "." + generation);
     }
 
     /*
      * MODIFIES: this
-     * EFFECTS: writes the full JSON representation of the game state to the file
+     * EFFECTS: opens the writer on a temporary file beside the destination;
+     * throws IOException if it cannot be opened for writing
      */
-    public void write(GamePanel gamePanel) {
-        // Serialize the entire GamePanel state
-        JSONObject json = gamePanel.toJson();
-        saveToFile(json.toString(TAB)); // Save the JSON string to the file with indentation
+    public void open() throws IOException {
+        channel = FileChannel.open(Paths.get(destination + TEMP_SUFFIX), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        checked = new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32());
+        OutputStream file = checked;
+        if (compression != Compression.NONE) {
+            deflater = new Deflater();
+            deflated = new DeflaterOutputStream(checked, deflater, DEFLATE_BUFFER);
+            file = deflated;
+        }
+        if (format == Format.BINARY) {
+            output = new BufferedOutputStream(file);
+        } else {
+            writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8)));
+        }
     }
 
     /*
      * MODIFIES: this
-     * EFFECTS: closes the writer
+     * EFFECTS: writes the level completion status of the game to the file;
+     * throws IOException if it cannot be written
      */
-    public void close() {
-        writer.close();
+    public void writeGameCompleteStatus(GamePanel gamePanel) throws IOException {
+        JsonSink sink = sink();
+        sink.beginObject().name("levelCompleted").beginArray();
+        for (boolean completed : gamePanel.getLevelCompleted()) {
+            sink.value(completed);
+        }
+        sink.endArray().endObject();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: writes the full game state to the file; throws IOException if it
+     * cannot be written
+     */
+    public void write(GamePanel gamePanel) throws IOException {
+        gamePanel.writeTo(sink()); // Stream the entire GamePanel state
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: writes a snapshot of the game state, taken earlier with
+     * GamePanel.toJson(), to the file; throws IOException if it cannot be
+     * written
+     */
+    public void write(JSONObject snapshot) throws IOException {
+        sink().json(snapshot);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: closes the writer and discards what was written, leaving the
+     * destination as it was
+     */
+    public void abort() throws IOException {
+        endDeflater();
+        if (channel != null) {
+            channel.close();
+        }
+        Files.deleteIfExists(Paths.get(destination + TEMP_SUFFIX));
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: forces what was written to disk and atomically replaces the
+     * destination with it, keeping the previous saves for recovery; throws
+     * IOException if data could not be written, in which case the
+     * destination is left as it was
+     */
+    public void close() throws IOException {
+        Path temp = Paths.get(destination + TEMP_SUFFIX);
+        try {
+            if (output != null) {
+                output.flush();
+            }
+            if (writer != null) {
+                writer.flush();
+                if (writer.checkError()) {
+                    throw new IOException("Unable to write " + destination);
+                }
+            }
+            if (deflated != null) {
+                deflated.finish();
+            }
+            long start = System.nanoTime();
+            channel.force(true);
+            syncNanos = System.nanoTime() - start;
+        } catch (IOException e) {
+            endDeflater();
+            channel.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        endDeflater();
+        channel.close();
+        Path target = Paths.get(destination);
+        keepGenerations(target);
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(target);
+        EventLog.getInstance().log(Event.Severity.INFO, "save", "Saved {} (fsync {} us)", destination,
+                syncNanos / 1000);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: releases the deflater's native memory, if the file is compressed
+     */
+    private void endDeflater() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    /*
+     * MODIFIES: file system
+     * EFFECTS: shifts the kept saves back one generation, dropping the oldest,
+     * and keeps the current save at target as generation 1. Generation 1
+     * shares target's data through a hard link where the file system allows,
+     * so no bytes are copied.
+     */
+    private void keepGenerations(Path target) throws IOException {
+        if (generationsKept == 0 || !Files.exists(target)) {
+            return;
+        }
+        Files.deleteIfExists(generationPath(destination, generationsKept));
+        for (int generation = generationsKept - 1; generation >= 1; generation--) {
+            Path older = generationPath(destination, generation);
+            if (Files.exists(older)) {
+                Files.move(older, generationPath(destination, generation + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Path first = generationPath(destination, 1);
+        try {
+            Files.createLink(first, target);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(target, first, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /*
+     * EFFECTS: forces the directory holding target to disk, so that the rename
+     * survives a crash; does nothing where directories cannot be opened
+     */
+    private static void forceDirectory(Path target) {
+        Path directory = target.toAbsolutePath().getParent();
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform; the rename itself is still atomic
+        }
     }
 
     /*
+     * REQUIRES: the writer has been closed
+     * EFFECTS: returns the time spent forcing the last save to disk, in
+     * nanoseconds
+     */
+    public long getSyncNanos() {
+        return syncNanos;
+    }
+
+    /*
+     * REQUIRES: the writer is open
      * MODIFIES: this
-     * EFFECTS: saves the given string to the file
+     * EFFECTS: returns the sink that writes to the file in the writer's format,
+     * creating it on first use
+     */
+    private JsonSink sink() throws IOException {
+        if (sink == null) {
+            sink = format == Format.BINARY
+                    ? new BinaryGameCodec.Sink(output, compression == Compression.DEFLATE_RLE)
+                    : new JsonTextSink(writer, TAB);
+        }
+        return sink;
+    }
+
+    /*
+     * REQUIRES: json is a JSON object
+     * MODIFIES: this
+     * EFFECTS: saves the given JSON string to the file in the writer's format
      */
     public void saveToFile(String json) {
-        writer.print(json);
+        if (format == Format.BINARY) {
+            try {
+                write(new JSONObject(json));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            writer.print(json);
+        }
     }
 
     /*
@@ -79,6 +362,29 @@ public class GameWriter {
         return destination;
     }
 
+    /*
+     * REQUIRES: the writer has been opened and closed
+     * EFFECTS: returns the CRC-32 of the bytes written to the file, which
+     * names this snapshot in its DeltaLog
+     */
+    public long getChecksum() {
+        return checked.getChecksum().getValue();
+    }
+
+    /*
+     * EFFECTS: returns the compression the file is written with
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /*
+     * EFFECTS: returns the format the file is written in
+     */
+    public Format getFormat() {
+        return format;
+    }
+
     /*
      * MODIFIES: this
      * EFFECTS: returns the tab size of the file
@@ -86,4 +392,77 @@ public class GameWriter {
     public static int getTabSize() {
         return TAB;
     }
+
+    /*
+     * EFFECTS: Benchmarks saving and loading a large maze in every format and
+     * compression, printing the file size and the time to write and read it.
+     * The maze side, default 401, may be given as the first argument.
+     */
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 401;
+        JSONObject snapshot = new JSONObject().put("maze", new JSONArray(benchmarkMaze(side, new Random(42))));
+        Path directory = Files.createTempDirectory("maze-save");
+        System.out.printf("%d x %d maze%n", side, side);
+        for (Format format : Format.values()) {
+            for (Compression compression : Compression.values()) {
+                String path = directory.resolve(format + "-" + compression).toString();
+                for (int i = 0; i < 20; i++) { // Warm up
+                    benchmarkSave(path, format, compression, snapshot);
+                }
+                int runs = 50;
+                long writeNanos = 0;
+                long readNanos = 0;
+                for (int i = 0; i < runs; i++) {
+                    writeNanos += benchmarkSave(path, format, compression, snapshot);
+                    long start = System.nanoTime();
+                    new GameReader(path).readJson();
+                    readNanos += System.nanoTime() - start;
+                }
+                long size = Files.size(Paths.get(path));
+                System.out.printf("%-6s %-11s %9d bytes  write %7.3f ms  read %7.3f ms%n", format, compression,
+                        size, writeNanos / 1e6 / runs, readNanos / 1e6 / runs);
+            }
+        }
+    }
+
+    /*
+     * EFFECTS: Saves snapshot to path in format with compression, keeping no
+     * generations, and returns the time taken less the time forcing it to disk.
+     */
+    private static long benchmarkSave(String path, Format format, Compression compression, JSONObject snapshot)
+            throws IOException {
+        GameWriter writer = new GameWriter(path, format);
+        writer.setCompression(compression);
+        writer.setGenerationsKept(0);
+        long start = System.nanoTime();
+        writer.open();
+        writer.write(snapshot);
+        writer.close();
+        return System.nanoTime() - start - writer.getSyncNanos();
+    }
+
+    /*
+     * REQUIRES: side is odd and at least 3
+     * EFFECTS: Returns a side x side maze laid out like Maze's: walls on the
+     * border and at every even row and column, each inner wall extended to a
+     * random neighbour.
+     */
+    private static int[][] benchmarkMaze(int side, Random random) {
+        int[][] maze = new int[side][side];
+        for (int i = 0; i < side; i++) {
+            maze[0][i] = 1;
+            maze[side - 1][i] = 1;
+            maze[i][0] = 1;
+            maze[i][side - 1] = 1;
+        }
+        int[][] directions = { {0, 1}, {1, 0}, {0, -1}, {-1, 0} };
+        for (int i = 2; i < side - 2; i += 2) {
+            for (int j = 2; j < side - 2; j += 2) {
+                maze[i][j] = 1;
+                int[] direction = directions[random.nextInt(directions.length)];
+                maze[i + direction[0]][j + direction[1]] = 1;
+            }
+        }
+        return maze;
+    }
 }
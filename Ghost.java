@@ -21,10 +21,21 @@ public class Ghost implements Writable {
      * EFFECTS: Constructs a ghost with the given position and maze structure.
      */
     public Ghost(int ghostX, int ghostY, int[][] mazeStructure) {
+        this(ghostX, ghostY, mazeStructure, new Random());
+    }
+
+    /*
+     * REQUIRES: ghostX and ghostY are valid coordinates within the mazeStructure,
+     * random is not null
+     * EFFECTS: Constructs a ghost with the given position and maze structure
+     * that draws its random moves from random, so that the same seed always
+     * moves it the same way.
+     */
+    public Ghost(int ghostX, int ghostY, int[][] mazeStructure, Random random) {
         this.ghostX = ghostX;
         this.ghostY = ghostY;
         this.mazeStructure = mazeStructure;
-        this.random = new Random();
+        this.random = random;
     }
 
     /*
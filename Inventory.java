@@ -1,13 +1,18 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import persistence.JsonSink;
+import persistence.JsonSource;
 import persistence.Writable;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * Represents the player's inventory, which stores collected items such as keys
  * and flashlights.
@@ -16,7 +21,9 @@ import org.json.JSONObject;
  */
 public class Inventory implements Writable {
 
-    private List<Item> items; // List to hold collected items
+    private List<Item> items; // List to hold collected items, one entry per stack for stackable kinds
+    private int[] counts; // Number of collected units of each kind, indexed by ItemType id
+    private Item[] stacks; // The stack holding each stackable kind, indexed by ItemType id
 
     /*
      * REQUIRES: none
@@ -25,32 +32,68 @@ public class Inventory implements Writable {
      */
     public Inventory() {
         items = new ArrayList<>();
+        counts = new int[ItemType.count()];
+        stacks = new Item[ItemType.count()];
     }
 
     /*
      * REQUIRES: item is not null
      * MODIFIES: this
-     * EFFECTS: Adds the specified item to the inventory.
+     * EFFECTS: Adds the specified item to the inventory. Items of a stackable
+     * kind are merged into the existing stack of that kind, if there is one.
      */
     public void addItem(Item item) {
-        items.add(item);
-        EventLog.getInstance().logEvent(new Event("Added item: " + item.getType() + " into inventory"));
+        ItemType kind = item.getKind();
+        ensureCapacity(kind.getId());
+        if (kind.isStackable() && stacks[kind.getId()] != null) {
+            stacks[kind.getId()].addQuantity(item.getQuantity());
+        } else {
+            items.add(item);
+            if (kind.isStackable()) {
+                stacks[kind.getId()] = item;
+            }
+        }
+        counts[kind.getId()] += item.getQuantity();
+        EventLog.getInstance().log(Event.Severity.INFO, "inventory", "Added item: {} into inventory", kind);
     }
 
     /*
      * REQUIRES: itemType is not null
      * EFFECTS: Returns true if an item of the specified type is in the inventory,
-     * false otherwise.
+     * false otherwise. Unknown item types are never in the inventory.
      */
     public boolean hasItem(String itemType) {
-        for (Item item : items) {
-            if (item.getType().equals(itemType)) {
-                EventLog.getInstance().logEvent(new Event("Checked for item: " + itemType + " - Found"));
-                return true;
-            }
+        ItemType kind = ItemType.lookup(itemType);
+        return kind != null && hasItem(kind);
+    }
+
+    /*
+     * REQUIRES: kind is not null
+     * EFFECTS: Returns true if an item of the specified kind is in the inventory,
+     * false otherwise.
+     */
+    public boolean hasItem(ItemType kind) {
+        return getCount(kind) > 0;
+    }
+
+    /*
+     * REQUIRES: kind is not null
+     * EFFECTS: Returns the number of units of the specified kind in the inventory.
+     */
+    public int getCount(ItemType kind) {
+        return kind.getId() < counts.length ? counts[kind.getId()] : 0;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Grows the per-kind tables so that they can hold the given kind id.
+     * Only needed for kinds registered after this inventory was created.
+     */
+    private void ensureCapacity(int id) {
+        if (id >= counts.length) {
+            counts = Arrays.copyOf(counts, ItemType.count());
+            stacks = Arrays.copyOf(stacks, ItemType.count());
         }
-        EventLog.getInstance().logEvent(new Event("Checked for item: " + itemType + " - Not found"));
-        return false;
     }
 
     /*
@@ -64,7 +107,8 @@ public class Inventory implements Writable {
         } else {
             System.out.println("Inventory contains:");
             for (Item item : items) {
-                System.out.println("- " + item.getType());
+                System.out.println("- " + item.getType()
+                        + (item.getQuantity() > 1 ? " x" + item.getQuantity() : ""));
             }
         }
     }
@@ -83,8 +127,10 @@ public class Inventory implements Writable {
      * EFFECTS: Clears all items from the inventory.
      */
     public void clearInventory() {
-        EventLog.getInstance().logEvent(new Event("Cleared inventory"));
+        EventLog.getInstance().log(Event.Severity.INFO, "inventory", "Cleared inventory");
         items.clear();
+        Arrays.fill(counts, 0);
+        Arrays.fill(stacks, null);
     }
 
     /*
@@ -102,6 +148,21 @@ public class Inventory implements Writable {
         return json;
     }
 
+    /*
+     * MODIFIES: sink
+     * EFFECTS: Writes the same object as toJson() straight to sink.
+     */
+    @Override
+    public void writeTo(JsonSink sink) throws IOException {
+        sink.beginObject();
+        sink.name("items").beginArray();
+        for (Item item : items) {
+            item.writeTo(sink);
+        }
+        sink.endArray();
+        sink.endObject();
+    }
+
     /*
      * REQUIRES: jsonObject is a valid JSON representation of an inventory.
      * EFFECTS: Parses the inventory from JSON and returns it as an Inventory
@@ -118,4 +179,33 @@ public class Inventory implements Writable {
         return inventory;
     }
 
+    /*
+     * REQUIRES: source is positioned at an object written by writeTo or
+     * toJson()
+     * MODIFIES: source
+     * EFFECTS: Reads an inventory from source, one item at a time; throws
+     * IOException if source is malformed.
+     */
+    public static Inventory readFrom(JsonSource source) throws IOException {
+        Inventory inventory = new Inventory();
+        source.beginObject();
+        while (source.hasNext()) {
+            if (!source.nextName().equals("items")) {
+                source.skipValue();
+                continue;
+            }
+            source.beginArray();
+            while (source.hasNext()) {
+                Object item = source.nextValue();
+                if (!(item instanceof JSONObject)) {
+                    throw new IOException("Saved inventory item is not an object");
+                }
+                inventory.addItem(Item.fromJson((JSONObject) item));
+            }
+            source.endArray();
+        }
+        source.endObject();
+        return inventory;
+    }
+
 }
@@ -7,10 +7,10 @@ import org.json.JSONObject;
 // Represents an item in the maze, such as a key or flashlight, with position and type attributes.
 
 public class Item implements Writable {
-    private String type; // The type of the item ("key" or "flashlight")
+    private ItemType type; // The kind of the item (key or flashlight)
     private int itemX; // The x-coordinate of the item's position
     private int itemY; // The y-coordinate of the item's position
-    private Random random; // Random instance for generating coordinates
+    private int quantity; // Number of units in this item (greater than 1 only for stacks)
     private boolean collected; // Tracks if the item has been collected
 
     /*
@@ -20,8 +20,26 @@ public class Item implements Writable {
      * the maze.
      */
     public Item(String type, int itemX, int itemY) {
+        this(ItemType.fromName(type), itemX, itemY);
+    }
+
+    /*
+     * REQUIRES: type is not null
+     * EFFECTS: Constructs an item of the given kind with a specified position
+     * within the maze.
+     */
+    public Item(ItemType type, int itemX, int itemY) {
+        this(type, itemX, itemY, 1);
+    }
+
+    /*
+     * REQUIRES: type is not null, quantity >= 1
+     * EFFECTS: Constructs a stack of quantity items of the given kind at a
+     * specified position within the maze.
+     */
+    public Item(ItemType type, int itemX, int itemY, int quantity) {
         this.type = type;
-        this.random = new Random();
+        this.quantity = quantity;
         setPosition(itemX, itemY);
         this.collected = false; // Default: not collected
     }
@@ -38,30 +56,17 @@ public class Item implements Writable {
      */
     public void setCollected(boolean collected) {
         this.collected = collected;
-        EventLog.getInstance().logEvent(new Event("Item collected: " + this.type));
+        EventLog.getInstance().log(Event.Severity.DEBUG, "item", "Item collected: {}", this.type);
     }
 
     /*
      * MODIFIES: this
-     * EFFECTS: Sets a random position for the item within the maze boundaries.
+     * EFFECTS: Sets a random position for the item within the maze boundaries,
+     * drawing coordinates from the given Random instance.
      */
-    public void setRandomPosition(int mazeWidth, int mazeHeight) {
-        this.itemX = generateRandomX(mazeWidth);
-        this.itemY = generateRandomY(mazeHeight);
-    }
-
-    /*
-     * EFFECTS: Randomly generates an x-coordinate within the maze boundaries.
-     */
-    public int generateRandomX(int mazeWidth) {
-        return random.nextInt(mazeWidth);
-    }
-
-    /*
-     * EFFECTS: Randomly generates a y-coordinate within the maze boundaries.
-     */
-    public int generateRandomY(int mazeHeight) {
-        return random.nextInt(mazeHeight);
+    public void setRandomPosition(int mazeWidth, int mazeHeight, Random random) {
+        this.itemX = random.nextInt(mazeWidth);
+        this.itemY = random.nextInt(mazeHeight);
     }
 
     /*
@@ -92,9 +97,32 @@ public class Item implements Writable {
      * EFFECTS: Returns the type of the item ("key" or "flashlight").
      */
     public String getType() {
+        return this.type.getName();
+    }
+
+    /*
+     * EFFECTS: Returns the kind of the item.
+     */
+    public ItemType getKind() {
         return this.type;
     }
 
+    /*
+     * EFFECTS: Returns the number of units in this item.
+     */
+    public int getQuantity() {
+        return this.quantity;
+    }
+
+    /*
+     * REQUIRES: amount >= 1
+     * MODIFIES: this
+     * EFFECTS: Adds amount units to this item's stack.
+     */
+    public void addQuantity(int amount) {
+        this.quantity += amount;
+    }
+
     /*
      * EFFECTS: Returns a JSONObject representing the item, including
      * the item's type and position in the maze.
@@ -102,10 +130,13 @@ public class Item implements Writable {
     @Override
     public JSONObject toJson() {
         JSONObject json = new JSONObject();
-        json.put("type", type);
+        json.put("type", type.getName());
         json.put("x", itemX);
         json.put("y", itemY);
         json.put("collected", collected);
+        if (quantity > 1) {
+            json.put("quantity", quantity); // Single items keep the original format
+        }
         return json;
     }
 
@@ -118,7 +149,8 @@ public class Item implements Writable {
         int x = jsonObject.getInt("x");
         int y = jsonObject.getInt("y");
         boolean collected = jsonObject.optBoolean("collected", false); // Default to false if missing
-        Item item = new Item(type, x, y);
+        int quantity = jsonObject.optInt("quantity", 1); // Saves without stacks hold single items
+        Item item = new Item(ItemType.fromName(type), x, y, quantity);
         item.setCollected(collected);
         return item;
     }
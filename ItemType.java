@@ -0,0 +1,153 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Represents a kind of item that can be placed in the maze and collected into the inventory.
+// Kinds are registered once and shared by every item of that kind, so items only hold a reference
+// to their kind. Each kind has a compact id used to index per-kind tables such as inventory counts.
+
+public final class ItemType {
+
+    /*
+     * Represents behaviour that runs when a player collects an item of a kind.
+     */
+    @FunctionalInterface
+    public interface CollectHook {
+        void onCollect(Player player, Item item);
+    }
+
+    private static final CollectHook NO_HOOK = (player, item) -> {
+    };
+
+    private static volatile ItemType[] byId = new ItemType[0]; // Registered kinds, indexed by id
+    private static final Map<String, ItemType> BY_NAME = new HashMap<>(); // Registered kinds, keyed by name
+
+    public static final ItemType KEY = register("key", false, (player, item) -> {
+        System.out.println("You can now unlock the door!");
+        EventLog.getInstance().log(Event.Severity.INFO, "item", "Key collected, door can now be unlocked");
+    });
+
+    public static final ItemType FLASHLIGHT = register("flashlight", false, (player, item) -> {
+        player.setVisibilityDiameter(11);
+        System.out.println("Vision expanded!");
+        EventLog.getInstance().log(Event.Severity.INFO, "item", "Flashlight collected, vision expanded");
+    });
+
+    private final int id; // Compact id of this kind, assigned in registration order from 0
+    private final String name; // The name used for this kind in saved JSON and in the UI
+    private final boolean stackable; // Whether collected items of this kind merge into one stack
+    private final CollectHook onCollect; // Behaviour run when an item of this kind is collected
+
+    /*
+     * EFFECTS: Constructs an item kind with the given id, name, stacking rule and
+     * collect hook.
+     */
+    private ItemType(int id, String name, boolean stackable, CollectHook onCollect) {
+        this.id = id;
+        this.name = name;
+        this.stackable = stackable;
+        this.onCollect = onCollect;
+    }
+
+    /*
+     * REQUIRES: name is not null and onCollect is not null
+     * MODIFIES: this class
+     * EFFECTS: Registers a new item kind with the next free id and returns it;
+     * throws IllegalArgumentException if a kind with the same name already exists.
+     */
+    public static synchronized ItemType register(String name, boolean stackable, CollectHook onCollect) {
+        if (BY_NAME.containsKey(name)) {
+            throw new IllegalArgumentException("Item type already registered: " + name);
+        }
+        ItemType type = new ItemType(byId.length, name.intern(), stackable, onCollect);
+        ItemType[] grown = Arrays.copyOf(byId, byId.length + 1);
+        grown[type.id] = type;
+        byId = grown;
+        BY_NAME.put(type.name, type);
+        return type;
+    }
+
+    /*
+     * REQUIRES: name is not null
+     * MODIFIES: this class
+     * EFFECTS: Registers a new non-stackable item kind with no collect behaviour
+     * and returns it.
+     */
+    public static ItemType register(String name) {
+        return register(name, false, NO_HOOK);
+    }
+
+    /*
+     * EFFECTS: Returns the compact id of this kind.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /*
+     * EFFECTS: Returns the name used for this kind in saved JSON ("key",
+     * "flashlight", ...).
+     */
+    public String getName() {
+        return name;
+    }
+
+    /*
+     * EFFECTS: Returns true if collected items of this kind merge into one stack.
+     */
+    public boolean isStackable() {
+        return stackable;
+    }
+
+    /*
+     * MODIFIES: player
+     * EFFECTS: Runs the collect behaviour of this kind for the given player and
+     * item.
+     */
+    public void onCollect(Player player, Item item) {
+        onCollect.onCollect(player, item);
+    }
+
+    /*
+     * EFFECTS: Returns the number of registered item kinds.
+     */
+    public static int count() {
+        return byId.length;
+    }
+
+    /*
+     * REQUIRES: 0 <= id < count()
+     * EFFECTS: Returns the kind with the given id.
+     */
+    public static ItemType byId(int id) {
+        return byId[id];
+    }
+
+    /*
+     * EFFECTS: Returns the kind with the given name (case-sensitive), or null if
+     * there is no such kind.
+     */
+    public static synchronized ItemType lookup(String name) {
+        return BY_NAME.get(name);
+    }
+
+    /*
+     * REQUIRES: name is the name of a registered kind
+     * EFFECTS: Returns the kind with the given name; throws
+     * IllegalArgumentException if there is no such kind.
+     */
+    public static ItemType fromName(String name) {
+        ItemType type = lookup(name);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown item type: " + name);
+        }
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,161 @@
+package persistence;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Represents a destination that a JSON document is written to one token at a
+ * time, so that a Writable can be saved without first building it as a
+ * JSONObject. Every method returns this sink so calls can be chained, as in
+ * sink.name("x").value(x).
+ */
+public interface JsonSink {
+    /*
+     * MODIFIES: this
+     * EFFECTS: Starts an object; its entries follow as name, value pairs.
+     */
+    JsonSink beginObject() throws IOException;
+
+    /*
+     * REQUIRES: an object is open
+     * MODIFIES: this
+     * EFFECTS: Ends the innermost open object.
+     */
+    JsonSink endObject() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Starts an array.
+     */
+    JsonSink beginArray() throws IOException;
+
+    /*
+     * REQUIRES: an array is open
+     * MODIFIES: this
+     * EFFECTS: Ends the innermost open array.
+     */
+    JsonSink endArray() throws IOException;
+
+    /*
+     * REQUIRES: an object is open and its previous entry has a value
+     * MODIFIES: this
+     * EFFECTS: Writes the name of the next entry of the open object.
+     */
+    JsonSink name(String name) throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes value, or null if value is null.
+     */
+    JsonSink value(String value) throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes value.
+     */
+    JsonSink value(long value) throws IOException;
+
+    /*
+     * REQUIRES: value is finite
+     * MODIFIES: this
+     * EFFECTS: Writes value.
+     */
+    JsonSink value(double value) throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes value.
+     */
+    JsonSink value(boolean value) throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes null.
+     */
+    JsonSink nullValue() throws IOException;
+
+    /*
+     * REQUIRES: grid is a non-empty rectangular array of non-negative numbers
+     * MODIFIES: this
+     * EFFECTS: Writes grid as an array of rows, which a sink may store more
+     * compactly than other arrays.
+     */
+    JsonSink grid(int[][] grid) throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Passes everything written so far on to the underlying output.
+     */
+    void flush() throws IOException;
+
+    /*
+     * REQUIRES: value holds only JSONObjects, JSONArrays, strings, numbers,
+     * booleans and JSONObject.NULL
+     * MODIFIES: this
+     * EFFECTS: Writes a value already built as a JSON tree, writing arrays of
+     * equal-length rows of non-negative ints as grids; throws
+     * IllegalArgumentException if value holds anything else.
+     */
+    default JsonSink json(Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            return nullValue();
+        } else if (value instanceof Boolean) {
+            return value((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            return value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            return value(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            return value((String) value);
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            beginObject();
+            for (String key : object.keySet()) {
+                name(key);
+                json(object.opt(key));
+            }
+            return endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            int[][] grid = toGrid(array);
+            if (grid != null) {
+                return grid(grid);
+            }
+            beginArray();
+            for (int i = 0; i < array.length(); i++) {
+                json(array.opt(i));
+            }
+            return endArray();
+        }
+        throw new IllegalArgumentException("Cannot write " + value.getClass().getName());
+    }
+
+    /*
+     * EFFECTS: Returns array as a grid if it is a non-empty array of
+     * equal-length, non-empty rows of non-negative ints, otherwise null.
+     */
+    private static int[][] toGrid(JSONArray array) {
+        if (array.isEmpty() || !(array.opt(0) instanceof JSONArray) || ((JSONArray) array.opt(0)).isEmpty()) {
+            return null;
+        }
+        int columns = ((JSONArray) array.opt(0)).length();
+        int[][] grid = new int[array.length()][columns];
+        for (int y = 0; y < grid.length; y++) {
+            Object row = array.opt(y);
+            if (!(row instanceof JSONArray) || ((JSONArray) row).length() != columns) {
+                return null;
+            }
+            for (int x = 0; x < columns; x++) {
+                Object cell = ((JSONArray) row).opt(x);
+                if (!(cell instanceof Integer) || (Integer) cell < 0) {
+                    return null;
+                }
+                grid[y][x] = (Integer) cell;
+            }
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,248 @@
+package persistence;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a JSON document read one token at a time, so that a saved game
+ * can be rebuilt without first parsing the whole file into a JSONObject.
+ * Methods that read a token throw IOException if the next token is not of the
+ * kind asked for or the document is malformed.
+ */
+public interface JsonSource {
+    /**
+     * Represents the kinds of token in a document.
+     */
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL,
+        GRID, // An array of rows stored compactly; read it with nextGrid()
+        END_DOCUMENT
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the kind of the next token without consuming it.
+     */
+    Token peek() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes the start of an object.
+     */
+    void beginObject() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes the end of the innermost open object.
+     */
+    void endObject() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes the start of an array.
+     */
+    void beginArray() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes the end of the innermost open array.
+     */
+    void endArray() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes and returns the name of the next entry of the open
+     * object.
+     */
+    String nextName() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes and returns a string.
+     */
+    String nextString() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes and returns a whole number.
+     */
+    long nextLong() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes and returns a number.
+     */
+    double nextDouble() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes and returns a boolean.
+     */
+    boolean nextBoolean() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes a null.
+     */
+    void nextNull() throws IOException;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns true if the open object or array has another entry.
+     */
+    default boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes and returns a whole number that fits an int.
+     */
+    default int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw new IOException("Number " + value + " does not fit an int");
+        }
+        return (int) value;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes an array of equal-length rows of numbers, or a GRID,
+     * and returns it.
+     */
+    default int[][] nextGrid() throws IOException {
+        List<int[]> rows = new ArrayList<>();
+        beginArray();
+        while (hasNext()) {
+            List<Integer> row = new ArrayList<>();
+            beginArray();
+            while (hasNext()) {
+                row.add(nextInt());
+            }
+            endArray();
+            if (!rows.isEmpty() && row.size() != rows.get(0).length) {
+                throw new IOException("Grid rows differ in length");
+            }
+            rows.add(row.stream().mapToInt(Integer::intValue).toArray());
+        }
+        endArray();
+        return rows.toArray(new int[0][]);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes and returns the null or the string at the next token.
+     */
+    default String nextStringOrNull() throws IOException {
+        if (peek() == Token.NULL) {
+            nextNull();
+            return null;
+        }
+        return nextString();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes the next value, with everything nested in it, without
+     * building it.
+     */
+    default void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    nextName();
+                    break;
+                case GRID:
+                    nextGrid();
+                    break;
+                case END_DOCUMENT:
+                    throw new IOException("Unexpected end of document");
+                default:
+                    nextValue();
+            }
+        } while (depth > 0);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes the next value and returns it built as a JSON tree:
+     * a JSONObject, JSONArray, String, Integer, Long, Double, Boolean or
+     * JSONObject.NULL. Meant for small values; large ones should be read token
+     * by token.
+     */
+    default Object nextValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    object.put(name, nextValue());
+                }
+                endObject();
+                return object;
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                beginArray();
+                while (hasNext()) {
+                    array.put(nextValue());
+                }
+                endArray();
+                return array;
+            case GRID:
+                JSONArray grid = new JSONArray();
+                for (int[] row : nextGrid()) {
+                    grid.put(new JSONArray(row));
+                }
+                return grid;
+            case STRING:
+                return nextString();
+            case NUMBER:
+                return nextNumber();
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Expected a value but was " + peek());
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes a number and returns it as an Integer or Long if it is
+     * whole, otherwise as a Double.
+     */
+    default Number nextNumber() throws IOException {
+        double value = nextDouble();
+        if (value == Math.rint(value) && Math.abs(value) < 0x1p53) {
+            long whole = (long) value;
+            return whole == (int) whole ? Integer.valueOf((int) whole) : Long.valueOf(whole);
+        }
+        return value;
+    }
+}
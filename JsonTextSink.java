@@ -0,0 +1,196 @@
+package persistence;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Represents a JsonSink that writes indented JSON text straight to a Writer.
+ * The layout matches JSONObject.toString(indent), except that each row of a
+ * grid is kept on a single line.
+ */
+public class JsonTextSink implements JsonSink {
+    private final Writer out; // Where the text is written
+    private final int indent; // Spaces per nesting level, or 0 for no line breaks
+    private boolean[] hasEntries = new boolean[16]; // Per open container, true once it has an entry
+    private int depth; // Number of open objects and arrays
+    private boolean afterName; // True if a name was written and its value is next
+
+    /*
+     * REQUIRES: out is not null, indent >= 0
+     * EFFECTS: Constructs a sink that writes to out, indenting each nesting
+     * level by indent spaces.
+     */
+    public JsonTextSink(Writer out, int indent) {
+        this.out = out;
+        this.indent = indent;
+    }
+
+    @Override
+    public JsonSink beginObject() throws IOException {
+        beforeValue();
+        out.write('{');
+        push();
+        return this;
+    }
+
+    @Override
+    public JsonSink endObject() throws IOException {
+        pop();
+        out.write('}');
+        return this;
+    }
+
+    @Override
+    public JsonSink beginArray() throws IOException {
+        beforeValue();
+        out.write('[');
+        push();
+        return this;
+    }
+
+    @Override
+    public JsonSink endArray() throws IOException {
+        pop();
+        out.write(']');
+        return this;
+    }
+
+    @Override
+    public JsonSink name(String name) throws IOException {
+        beforeValue();
+        out.write(JSONObject.quote(name));
+        out.write(indent > 0 ? ": " : ":");
+        afterName = true;
+        return this;
+    }
+
+    @Override
+    public JsonSink value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        out.write(JSONObject.quote(value));
+        return this;
+    }
+
+    @Override
+    public JsonSink value(long value) throws IOException {
+        beforeValue();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    @Override
+    public JsonSink value(double value) throws IOException {
+        if (value == Math.rint(value) && Math.abs(value) < 0x1p53) {
+            return value((long) value);
+        }
+        beforeValue();
+        out.write(Double.toString(value));
+        return this;
+    }
+
+    @Override
+    public JsonSink value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    @Override
+    public JsonSink nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes grid as an array with one row per line.
+     */
+    @Override
+    public JsonSink grid(int[][] grid) throws IOException {
+        beginArray();
+        StringBuilder line = new StringBuilder();
+        for (int[] row : grid) {
+            beforeValue();
+            line.setLength(0);
+            line.append('[');
+            for (int x = 0; x < row.length; x++) {
+                if (x > 0) {
+                    line.append(indent > 0 ? ", " : ",");
+                }
+                line.append(row[x]);
+            }
+            line.append(']');
+            out.append(line);
+        }
+        return endArray();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes what must come before a value or name: nothing after a
+     * name, otherwise a comma if the container has earlier entries and a line
+     * break with indentation.
+     */
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) {
+            return;
+        }
+        if (hasEntries[depth - 1]) {
+            out.write(',');
+        }
+        hasEntries[depth - 1] = true;
+        newLine(depth);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Opens a container with no entries yet.
+     */
+    private void push() {
+        if (depth == hasEntries.length) {
+            hasEntries = Arrays.copyOf(hasEntries, depth * 2);
+        }
+        hasEntries[depth++] = false;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Closes the innermost container, breaking the line before its
+     * closing bracket if it has entries.
+     */
+    private void pop() throws IOException {
+        depth--;
+        if (hasEntries[depth]) {
+            newLine(depth);
+        }
+    }
+
+    /*
+     * EFFECTS: Starts a new line indented for the given depth, if indenting.
+     */
+    private void newLine(int level) throws IOException {
+        if (indent == 0) {
+            return;
+        }
+        out.write('\n');
+        for (int i = level * indent; i > 0; i--) {
+            out.write(' ');
+        }
+    }
+}
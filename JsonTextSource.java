@@ -0,0 +1,409 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Represents a JsonSource that parses JSON text from a Reader as it is asked
+ * for tokens, holding only a small buffer of the text and the names of the
+ * containers it is inside.
+ */
+public class JsonTextSource implements JsonSource {
+    private static final int BUFFER_SIZE = 8192; // Characters read from the Reader at a time
+
+    // What the innermost container expects next
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3; // A name was read; a colon and value follow
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader in; // Where the text comes from
+    private final char[] buffer = new char[BUFFER_SIZE]; // Text read but not yet parsed
+    private int position; // Index in buffer of the next character
+    private int limit; // Number of valid characters in buffer
+    private long bufferStart; // Offset in the text of buffer[0], for error messages
+    private int[] scopes = new int[16]; // Per open container, what it expects next
+    private int depth; // Number of entries in scopes
+    private Token peeked; // Next token if already parsed, otherwise null
+    private String peekedText; // Text of a peeked NAME, STRING or NUMBER
+    private boolean peekedBoolean; // Value of a peeked BOOLEAN
+
+    /*
+     * REQUIRES: in is not null
+     * EFFECTS: Constructs a source that parses the document read from in.
+     */
+    public JsonTextSource(Reader in) {
+        this.in = in;
+        scopes[depth++] = EMPTY_DOCUMENT;
+    }
+
+    @Override
+    public Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = parseNext();
+        }
+        return peeked;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return peekedText;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        return peekedText;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        try {
+            return Long.parseLong(peekedText);
+        } catch (NumberFormatException e) {
+            double value = parseDouble(peekedText);
+            if (value != Math.rint(value) || Math.abs(value) >= 0x1p63) {
+                throw new IOException("Expected a whole number but was " + peekedText);
+            }
+            return (long) value;
+        }
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        expect(Token.NUMBER);
+        return parseDouble(peekedText);
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return peekedBoolean;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes a number, keeping whole numbers exact.
+     */
+    @Override
+    public Number nextNumber() throws IOException {
+        expect(Token.NUMBER);
+        try {
+            long value = Long.parseLong(peekedText);
+            return value == (int) value ? Integer.valueOf((int) value) : Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return parseDouble(peekedText);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Consumes the peeked token; throws IOException if it is not of
+     * the expected kind.
+     */
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Parses the next token, updating what the innermost container
+     * expects after it.
+     */
+    private Token parseNext() throws IOException {
+        int scope = scopes[depth - 1];
+        switch (scope) {
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY: {
+                scopes[depth - 1] = NONEMPTY_ARRAY;
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return Token.END_ARRAY;
+                }
+                if (scope == NONEMPTY_ARRAY) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or ']'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                return parseValue(c);
+            }
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT: {
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                peekedText = readString();
+                scopes[depth - 1] = DANGLING_NAME;
+                return Token.NAME;
+            }
+            case DANGLING_NAME:
+                scopes[depth - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                return parseValue(nextNonWhitespace());
+            case EMPTY_DOCUMENT:
+                scopes[depth - 1] = NONEMPTY_DOCUMENT;
+                return parseValue(nextNonWhitespace());
+            default:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("Expected the end of the document");
+                }
+                return Token.END_DOCUMENT;
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Parses the value starting with character c.
+     */
+    private Token parseValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                peekedText = readString();
+                return Token.STRING;
+            case 't':
+                readLiteral("rue");
+                peekedBoolean = true;
+                return Token.BOOLEAN;
+            case 'f':
+                readLiteral("alse");
+                peekedBoolean = false;
+                return Token.BOOLEAN;
+            case 'n':
+                readLiteral("ull");
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    peekedText = readNumber((char) c);
+                    return Token.NUMBER;
+                }
+                throw syntaxError(c == -1 ? "Unexpected end of document" : "Unexpected character");
+        }
+    }
+
+    /*
+     * REQUIRES: the opening quote has been read
+     * MODIFIES: this
+     * EFFECTS: Reads the rest of a string, decoding escapes.
+     */
+    private String readString() throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                position++;
+            }
+            text.append(buffer, start, position - start);
+            if (position == limit) {
+                if (!fill()) {
+                    throw syntaxError("Unterminated string");
+                }
+                continue;
+            }
+            if (buffer[position++] == '"') {
+                return text.toString();
+            }
+            text.append(readEscape());
+        }
+    }
+
+    /*
+     * REQUIRES: a backslash has been read
+     * MODIFIES: this
+     * EFFECTS: Reads the rest of an escape sequence and returns its character.
+     */
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            default:
+                throw syntaxError("Invalid escape");
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Reads the rest of a number starting with first.
+     */
+    private String readNumber(char first) throws IOException {
+        StringBuilder text = new StringBuilder().append(first);
+        while (true) {
+            if (position == limit && !fill()) {
+                return text.toString();
+            }
+            char c = buffer[position];
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                text.append(c);
+                position++;
+            } else {
+                return text.toString();
+            }
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Reads rest and throws IOException unless it comes next.
+     */
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+    }
+
+    /*
+     * EFFECTS: Returns text as a double; throws IOException if it is not a
+     * number.
+     */
+    private double parseDouble(String text) throws IOException {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Invalid number " + text);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the next character that is not whitespace, or -1 at the
+     * end of the text.
+     */
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the next character, or -1 at the end of the text.
+     */
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Refills the buffer from the Reader; returns false at the end of
+     * the text.
+     */
+    private boolean fill() throws IOException {
+        bufferStart += limit;
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Opens a container expecting scope next.
+     */
+    private void push(int scope) {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth++] = scope;
+    }
+
+    /*
+     * EFFECTS: Returns an exception describing a syntax error at the current
+     * position.
+     */
+    private IOException syntaxError(String message) {
+        return new IOException(message + " near character " + (bufferStart + position));
+    }
+}
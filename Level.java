@@ -1,9 +1,15 @@
 package model;
 
+import java.util.EnumSet;
 import java.util.Random;
+import java.util.Set;
 
+import persistence.JsonSink;
+import persistence.JsonSource;
 import persistence.Writable;
 import org.json.JSONObject;
+
+import java.io.IOException;
 // Represents a level in the maze game, managing the maze, player, items (key, flashlight), and ghost entities.
 
 public class Level implements Writable {
@@ -14,19 +20,37 @@ public class Level implements Writable {
     private boolean completed; // Indicates if the level is completed
     private Item flashlight; // The flashlight item in the level
     private Ghost ghost; // The ghost entity in the level
+    private FieldOfView fieldOfView; // Line-of-sight calculator for the current maze, created on first use
+    private ExploredMap explored; // Cells of the current maze the player has seen, created on first use
+    private Random random; // Source of the level's random choices: maze, item and ghost placement, ghost moves
+
+    /**
+     * Represents something that a step can lead to; see resolveStep and
+     * moveGhost.
+     */
+    public enum Outcome {
+        KEY_FOUND, // The player collected the key
+        FLASHLIGHT_FOUND, // The player collected the flashlight
+        CAUGHT, // The ghost caught the player, who was sent back to the entrance
+        EXIT_LOCKED, // The player reached the exit without the key
+        COMPLETED // The player reached the exit with the key and the level is completed
+    }
 
     /*
      * REQUIRES: levelNumber >= 1 and <= 3
      * EFFECTS: Constructs a new Level with the given number, creates a maze for
      * this level, initializes the player at the entrance of the maze,
-     * places a key in the maze, and sets completed to false.
+     * places a key in the maze, and sets completed to false. Every random
+     * choice, the ghost's moves included, is drawn from random, so a level
+     * built from a Random with the same seed plays out the same way.
      */
     public Level(int levelNumber, Random random) {
         if (levelNumber < 1 || levelNumber > 3) {
             throw new IllegalArgumentException("Invalid level number");
         }
         this.levelNumber = levelNumber;
-        this.maze = new Maze(); // Create a new maze for the level
+        this.random = random;
+        this.maze = new Maze(random); // Create a new maze for the level
         this.player = new Player(levelNumber); // Initialize the player at the maze entrance
         this.player.setPosition(9, 18); // Set player position to entrance
         this.completed = false;
@@ -48,6 +72,27 @@ public class Level implements Writable {
         this(levelNumber, new Random());
     }
 
+    /*
+     * REQUIRES: maze and player are not null; key, flashlight and ghost are
+     * null if the level has none
+     * EFFECTS: Constructs a level from the parts of a saved one, as it was when
+     * saved. No maze is generated and nothing is placed at random.
+     */
+    public Level(int levelNumber, Maze maze, Player player, Item key, Item flashlight, Ghost ghost,
+            boolean completed) {
+        if (levelNumber < 1 || levelNumber > 3) {
+            throw new IllegalArgumentException("Invalid level number");
+        }
+        this.levelNumber = levelNumber;
+        this.maze = maze;
+        this.player = player;
+        this.key = key;
+        this.flashlight = flashlight;
+        this.ghost = ghost;
+        this.completed = completed;
+        this.random = new Random();
+    }
+
     /*
      * MODIFIES: this
      * EFFECTS: Places a key item randomly in the maze. Ensures the key is not
@@ -131,7 +176,8 @@ public class Level implements Writable {
                 || (ghostX == this.key.getItemX() && ghostY == this.key.getItemY())
                 || (ghostX == this.flashlight.getItemX() && ghostY == this.flashlight.getItemY()));
 
-        this.ghost = new Ghost(ghostX, ghostY, this.getMaze().getMaze()); // Create a ghost at the chosen position
+        // Create a ghost at the chosen position, moving at random as the level does
+        this.ghost = new Ghost(ghostX, ghostY, this.getMaze().getMaze(), random);
     }
 
     /*
@@ -183,6 +229,153 @@ public class Level implements Writable {
         return maze;
     }
 
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the cells the player can currently see: those within half
+     * the player's visibility diameter in each direction that are not hidden
+     * behind walls. Results are cached per position and radius.
+     */
+    public FieldOfView.Visibility getVisibility() {
+        if (fieldOfView == null || fieldOfView.getGrid() != maze.getMaze()) {
+            fieldOfView = new FieldOfView(maze.getMaze()); // The maze was replaced, earlier results are stale
+        }
+        return fieldOfView.compute(player.getPlayerX(), player.getPlayerY(), player.getVisibilityDiameter() / 2);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the cells the player can currently see (as getVisibility)
+     * and remembers them as explored.
+     */
+    public FieldOfView.Visibility updateVisibility() {
+        FieldOfView.Visibility visibility = getVisibility();
+        getExplored().markVisible(visibility);
+        return visibility;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the map of cells the player has seen in the current maze.
+     */
+    public ExploredMap getExplored() {
+        int[][] grid = maze.getMaze();
+        if (explored == null || explored.getHeight() != grid.length || explored.getWidth() != grid[0].length) {
+            explored = new ExploredMap(grid[0].length, grid.length);
+        }
+        return explored;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Sets the map of cells the player has seen in the current maze.
+     */
+    public void setExplored(ExploredMap explored) {
+        this.explored = explored;
+    }
+
+    /*
+     * REQUIRES: direction is not null
+     * MODIFIES: this
+     * EFFECTS: Moves the player one step in the given direction and returns true
+     * if the target cell is a path inside the maze; otherwise leaves the player
+     * where they are and returns false.
+     */
+    public boolean tryMove(Direction direction) {
+        int[][] grid = maze.getMaze();
+        int targetX = player.getPlayerX() + direction.getDx();
+        int targetY = player.getPlayerY() + direction.getDy();
+        if (targetY < 0 || targetY >= grid.length || targetX < 0 || targetX >= grid[targetY].length
+                || grid[targetY][targetX] == 1) {
+            return false;
+        }
+        player.move(direction);
+        return true;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Resolves the player's step onto their cell with the rules that
+     * live play and replays share: if ghostFollows, the ghost (from level 3)
+     * first takes a step; then an uncollected key, and from level 2 an
+     * uncollected flashlight, on the cell is collected; a ghost on the cell
+     * sends the player back to the entrance; and the exit completes the level
+     * if the player has the key. Returns what happened.
+     */
+    public Set<Outcome> resolveStep(boolean ghostFollows) {
+        Set<Outcome> outcomes = EnumSet.noneOf(Outcome.class);
+        if (ghostFollows && hasGhost()) {
+            ghost.moveToNeighbor();
+        }
+        if (collect(key)) {
+            outcomes.add(Outcome.KEY_FOUND);
+        }
+        if (levelNumber > 1 && collect(flashlight)) {
+            outcomes.add(Outcome.FLASHLIGHT_FOUND);
+        }
+        if (catchPlayer()) {
+            outcomes.add(Outcome.CAUGHT);
+        }
+        int[] exit = maze.getExit();
+        if (player.getPlayerX() == exit[0] && player.getPlayerY() == exit[1]) {
+            if (player.hasKey()) {
+                setCompleted();
+                outcomes.add(Outcome.COMPLETED);
+            } else {
+                outcomes.add(Outcome.EXIT_LOCKED);
+            }
+        }
+        return outcomes;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: From level 3, moves the ghost one step on its own clock and
+     * sends the player back to the entrance if it caught them; returns true if
+     * it did.
+     */
+    public boolean moveGhost() {
+        if (!hasGhost()) {
+            return false;
+        }
+        ghost.moveToNeighbor();
+        return catchPlayer();
+    }
+
+    /*
+     * EFFECTS: Returns true if this level has a ghost that moves: from level 3.
+     */
+    public boolean hasGhost() {
+        return levelNumber > 2 && ghost != null;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Collects item if it has not been collected and the player stands
+     * on it; returns true if it was collected.
+     */
+    private boolean collect(Item item) {
+        if (item == null || item.isCollected() || item.getItemX() != player.getPlayerX()
+                || item.getItemY() != player.getPlayerY()) {
+            return false;
+        }
+        player.collectItem(item);
+        return true;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Sends the player back to the entrance if the ghost is on their
+     * cell; returns true if it was.
+     */
+    private boolean catchPlayer() {
+        if (!hasGhost() || ghost.getGhostX() != player.getPlayerX() || ghost.getGhostY() != player.getPlayerY()) {
+            return false;
+        }
+        int[] entrance = maze.getEntrance();
+        player.setPosition(entrance[0], entrance[1]);
+        return true;
+    }
+
     /*
      * EFFECTS: Returns the player navigating the maze in this level.
      */
@@ -203,7 +396,7 @@ public class Level implements Writable {
      */
     public void setCompleted() {
         this.completed = true;
-        EventLog.getInstance().logEvent(new Event("Level completed"));
+        EventLog.getInstance().log(Event.Severity.INFO, "level", "Level completed");
     }
 
     /*
@@ -212,6 +405,7 @@ public class Level implements Writable {
      */
     public void setMaze(Maze maze) {
         this.maze = maze;
+        this.explored = null; // Nothing of a new maze has been seen yet
     }
 
     /**
@@ -236,12 +430,13 @@ public class Level implements Writable {
      * regenerating the maze, and placing a new key.
      */
     public void resetLevel() {
-        this.maze = new Maze(); // Regenerate the maze
+        this.maze = new Maze(random); // Regenerate the maze
+        this.explored = null;
         int[] entrance = maze.getEntrance();
         this.player = new Player(); // Reset player to the entrance
         this.player.setPosition(entrance[0], entrance[1]);
         this.completed = false; // Reset completion status
-        placeKey(new Random()); // Place a new key in the maze with a new random instance
+        placeKey(random); // Place a new key in the maze
     }
 
     /*
@@ -269,54 +464,164 @@ public class Level implements Writable {
         if (ghost != null) {
             json.put("ghost", ghost.toJson());
         }
+        if (explored != null) {
+            json.put("explored", explored.encode()); // Run-length encoded, see ExploredMap
+        }
         return json;
     }
 
-    @SuppressWarnings("methodlength")
-    public static Level fromJson(JSONObject jsonObject) {
-        int levelNumber = jsonObject.getInt("levelNumber");
-        Maze maze = Maze.fromJson(jsonObject.getJSONObject("maze"));
-        Player player = Player.fromJson(jsonObject.getJSONObject("player"));
-
-        Level level = new Level(levelNumber);
-        level.setMaze(maze);
-        level.setPlayer(player);
-        level.setCompleted(); // new line
-
-        // Restore the key only if it exists and is not collected
-        if (jsonObject.has("key") && !jsonObject.isNull("key")) {
-            Item restoredKey = Item.fromJson(jsonObject.getJSONObject("key"));
-            if (!restoredKey.isCollected()) {
-                level.setKey(restoredKey);
-            } else {
-                level.setKey(null); // Key is collected and shouldn't appear in the maze
-            }
+    /*
+     * MODIFIES: sink
+     * EFFECTS: Writes the same object as toJson() straight to sink.
+     */
+    @Override
+    public void writeTo(JsonSink sink) throws IOException {
+        sink.beginObject();
+        sink.name("levelNumber").value(levelNumber);
+        sink.name("maze");
+        maze.writeTo(sink);
+        sink.name("player");
+        player.writeTo(sink);
+        sink.name("completed").value(completed);
+        sink.name("key");
+        writeItem(sink, key);
+        sink.name("flashlight");
+        writeItem(sink, flashlight);
+        if (ghost != null) {
+            sink.name("ghost");
+            ghost.writeTo(sink);
+        }
+        if (explored != null) {
+            sink.name("explored").value(explored.encode());
+        }
+        sink.endObject();
+    }
+
+    /*
+     * MODIFIES: sink
+     * EFFECTS: Writes item, or null if it is absent or collected.
+     */
+    private static void writeItem(JsonSink sink, Item item) throws IOException {
+        if (item != null && !item.isCollected()) {
+            item.writeTo(sink);
         } else {
-            level.setKey(null); // No key exists in the JSON
+            sink.nullValue();
         }
+    }
 
-        // Restore flashlight and ghost if applicable
-        if (jsonObject.has("flashlight") && !jsonObject.isNull("flashlight")) {
-            Item restoredFlashlight = Item.fromJson(jsonObject.getJSONObject("flashlight"));
-            if (!restoredFlashlight.isCollected()) {
-                level.setFlashlight(restoredFlashlight);
-            } else {
-                level.setFlashlight(null); // flashlight is collected and shouldn't appear in the maze
+    /*
+     * REQUIRES: jsonObject is a valid JSON object representing a level.
+     * EFFECTS: Reconstructs a Level from its JSON representation.
+     */
+    public static Level fromJson(JSONObject jsonObject) {
+        return restore(jsonObject.getInt("levelNumber"),
+                Maze.fromJson(jsonObject.getJSONObject("maze")),
+                Player.fromJson(jsonObject.getJSONObject("player")),
+                jsonObject.optJSONObject("key"),
+                jsonObject.optJSONObject("flashlight"),
+                jsonObject.optJSONObject("ghost"),
+                jsonObject.has("explored") ? jsonObject.getString("explored") : null,
+                jsonObject.optBoolean("completed", false));
+    }
+
+    /*
+     * REQUIRES: source is positioned at an object written by writeTo or
+     * toJson()
+     * MODIFIES: source
+     * EFFECTS: Reads a Level from source, streaming the maze and player and
+     * building only the small item and ghost objects; throws IOException if
+     * source is malformed.
+     */
+    public static Level readFrom(JsonSource source) throws IOException {
+        int levelNumber = 0;
+        Maze maze = null;
+        Player player = null;
+        JSONObject keyJson = null;
+        JSONObject flashlightJson = null;
+        JSONObject ghostJson = null;
+        String exploredCode = null;
+        boolean completed = false;
+        source.beginObject();
+        while (source.hasNext()) {
+            switch (source.nextName()) {
+                case "levelNumber":
+                    levelNumber = source.nextInt();
+                    break;
+                case "maze":
+                    maze = Maze.readFrom(source);
+                    break;
+                case "player":
+                    player = Player.readFrom(source);
+                    break;
+                case "key":
+                    keyJson = nextObjectOrNull(source);
+                    break;
+                case "flashlight":
+                    flashlightJson = nextObjectOrNull(source);
+                    break;
+                case "ghost":
+                    ghostJson = nextObjectOrNull(source);
+                    break;
+                case "explored":
+                    exploredCode = source.nextStringOrNull();
+                    break;
+                case "completed":
+                    completed = source.nextBoolean();
+                    break;
+                default:
+                    source.skipValue();
             }
-        } else {
-            level.setFlashlight(null); // No key exists in the JSON
         }
-        // Restore the ghost for level 3 or higher
-        if (levelNumber > 2 && jsonObject.has("ghost") && !jsonObject.isNull("ghost")) {
-            Ghost restoredGhost = Ghost.fromJson(jsonObject.getJSONObject("ghost"), level.getMaze().getMaze());
-            level.setGhost(restoredGhost);
-        } else {
-            level.setGhost(null); // No ghost exists in the JSON
+        source.endObject();
+        if (maze == null || player == null) {
+            throw new IOException("Saved level is missing its maze or player");
         }
+        return restore(levelNumber, maze, player, keyJson, flashlightJson, ghostJson, exploredCode, completed);
+    }
 
-        // Restore completed status
-        level.completed = jsonObject.optBoolean("completed", false);
+    /*
+     * MODIFIES: source
+     * EFFECTS: Reads the next value as a small JSON object, or returns null if
+     * it is null.
+     */
+    private static JSONObject nextObjectOrNull(JsonSource source) throws IOException {
+        Object value = source.nextValue();
+        return value instanceof JSONObject ? (JSONObject) value : null;
+    }
+
+    /*
+     * REQUIRES: levelNumber >= 1 and <= 3
+     * EFFECTS: Returns the level made of the given parts, as read from a save;
+     * keyJson, flashlightJson, ghostJson and exploredCode are null if absent.
+     * Only the saved parts are built, so the cost follows the size of the save.
+     */
+    private static Level restore(int levelNumber, Maze maze, Player player, JSONObject keyJson,
+            JSONObject flashlightJson, JSONObject ghostJson, String exploredCode, boolean completed) {
+        // Items already collected are in the inventory and no longer in the maze
+        Item key = restoreItem(keyJson);
+        Item flashlight = restoreItem(flashlightJson);
+        // Only level 3 has a ghost
+        Ghost ghost = levelNumber > 2 && ghostJson != null ? Ghost.fromJson(ghostJson, maze.getMaze()) : null;
+        Level level = new Level(levelNumber, maze, player, key, flashlight, ghost, completed);
+
+        // Restore the explored cells, if the save has them
+        if (exploredCode != null) {
+            int[][] grid = maze.getMaze();
+            level.setExplored(ExploredMap.decode(exploredCode, grid[0].length, grid.length));
+        }
         return level;
     }
 
+    /*
+     * EFFECTS: Returns the item saved as itemJson if it is still in the maze,
+     * or null if it is absent or was collected.
+     */
+    private static Item restoreItem(JSONObject itemJson) {
+        if (itemJson == null) {
+            return null;
+        }
+        Item item = Item.fromJson(itemJson);
+        return item.isCollected() ? null : item;
+    }
+
 }
@@ -0,0 +1,726 @@
+package persistence;
+
+import model.Level;
+import model.Maze;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import ui.GamePanel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Represents an embedded store of game states, one per player id, in a single
+ * memory-mapped file, for hosting many players without a save file each.
+ * The file is a header followed by fixed-size records, one per player:
+ *
+ * header: int MAGIC | int VERSION | int RECORD_SIZE | int record count
+ * record: copy A | copy B, COPY_SIZE bytes each
+ * copy:   long sequence | int crc | long savedAt | byte idLength | id |
+ *         byte rows | byte columns | grid | int entityLength | entities
+ *
+ * The maze grid is kept in a fixed area of one byte per cell, and everything
+ * else (player, items, ghost, progress) in a variable-length section in the
+ * binary format of BinaryGameCodec, with the maze's grid left out. A save is
+ * streamed straight into the mapping, with no file opened and no buffer in
+ * between, into the copy not holding the player's current state; its
+ * sequence number is written last, so a save torn by a crash fails its CRC
+ * and the other copy is read instead.
+ *
+ * Player ids are looked up in memory; the index is rebuilt when the store is
+ * opened by scanning the records in place. The file doubles when it is full.
+ * Changes reach the disk when the operating system writes the mapping back,
+ * or at once with force(). Methods are synchronized.
+ */
+public class MappedGameStore implements AutoCloseable {
+    public static final int MAGIC = 0x4D5A4731; // "MZG1"
+    public static final int VERSION = 1;
+    public static final int COPY_SIZE = 4096; // Bytes per copy of a record
+    public static final int RECORD_SIZE = 2 * COPY_SIZE; // Bytes per record
+    public static final int MAX_ID_BYTES = 64; // Longest player id, in UTF-8 bytes
+    public static final int GRID_CAPACITY = Maze.MAZE_SIZE * Maze.MAZE_SIZE; // Cells in the fixed grid area
+    private static final int HEADER_SIZE = 16;
+    private static final int INITIAL_RECORDS = 64;
+    private static final int MAX_RECORDS = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE; // One mapping's worth
+    private static final int SEQUENCE = 0; // Offsets within a copy
+    private static final int CRC = 8;
+    private static final int SAVED_AT = 12;
+    private static final int ID_LENGTH = 20;
+    private static final int ID = 21;
+    private static final int GRID_ROWS = ID + MAX_ID_BYTES;
+    private static final int GRID_COLUMNS = GRID_ROWS + 1;
+    private static final int GRID = GRID_COLUMNS + 1;
+    private static final int ENTITY_LENGTH = GRID + GRID_CAPACITY;
+    private static final int ENTITIES = ENTITY_LENGTH + 4;
+    public static final int ENTITY_CAPACITY = COPY_SIZE - ENTITIES; // Bytes for everything but the grid
+
+    private final Path path; // File holding the store
+    private final FileChannel channel; // Open file
+    private MappedByteBuffer map; // Mapping of the whole file
+    private int capacity; // Number of records in the file
+    private final Map<String, Integer> records = new HashMap<>(); // Record of each player id
+    private final Deque<Integer> free = new ArrayDeque<>(); // Records holding no player
+    private byte[] current; // Per record, the copy holding its state, or -1 if none
+    private final CRC32 crc = new CRC32(); // Checksums copies, reused
+
+    /*
+     * REQUIRES: path is not null
+     * EFFECTS: Opens the store in the file at path, creating it if it does not
+     * exist, and indexes the players in it; throws IOException if it cannot
+     * be opened or is not a store.
+     */
+    public MappedGameStore(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                map(INITIAL_RECORDS);
+                map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(12, INITIAL_RECORDS);
+            } else {
+                readHeader();
+            }
+            index();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Maps an existing store after checking its header; throws
+     * IOException if the file is not a store this version can read.
+     */
+    private void readHeader() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException(path + " is not a game store");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_SIZE) {
+            throw new IOException(path + " is not a game store");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported game store version " + header.getInt(4));
+        }
+        int records = header.getInt(12);
+        if (records < 1 || records > MAX_RECORDS
+                || channel.size() < HEADER_SIZE + (long) records * RECORD_SIZE) {
+            throw new IOException(path + " is truncated");
+        }
+        map(records);
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Maps the header and the given number of records, growing the
+     * file if it is shorter.
+     */
+    private void map(int records) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) records * RECORD_SIZE);
+        capacity = records;
+        current = current == null ? new byte[records] : Arrays.copyOf(current, records);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Indexes every record by the player id of its newest valid copy,
+     * and lists the records holding no player as free.
+     */
+    private void index() {
+        records.clear();
+        free.clear();
+        for (int record = 0; record < capacity; record++) {
+            int copy = newestCopy(record);
+            current[record] = (byte) copy;
+            if (copy < 0) {
+                free.add(record);
+            } else {
+                records.put(readId(offset(record, copy)), record);
+            }
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the copy of record holding the newest valid state, or -1
+     * if neither does.
+     */
+    private int newestCopy(int record) {
+        int newest = -1;
+        long newestSequence = 0;
+        for (int copy = 0; copy < 2; copy++) {
+            int offset = offset(record, copy);
+            long sequence = map.getLong(offset + SEQUENCE);
+            if (sequence > newestSequence && isValid(offset)) {
+                newest = copy;
+                newestSequence = sequence;
+            }
+        }
+        return newest;
+    }
+
+    /*
+     * EFFECTS: Returns true if the copy at offset is complete and its CRC
+     * matches.
+     */
+    private boolean isValid(int offset) {
+        int entityLength = map.getInt(offset + ENTITY_LENGTH);
+        int idLength = map.get(offset + ID_LENGTH) & 0xFF;
+        if (entityLength < 0 || entityLength > ENTITY_CAPACITY || idLength == 0 || idLength > MAX_ID_BYTES) {
+            return false;
+        }
+        return map.getInt(offset + CRC) == checksum(offset, entityLength);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the CRC-32 of the copy at offset, from its save time to
+     * the end of its entities, read in place.
+     */
+    private int checksum(int offset, int entityLength) {
+        crc.reset();
+        crc.update(map.slice(offset + SAVED_AT, ENTITIES + entityLength - SAVED_AT));
+        return (int) crc.getValue();
+    }
+
+    /*
+     * EFFECTS: Returns the offset in the file of the given copy of record.
+     */
+    private static int offset(int record, int copy) {
+        return HEADER_SIZE + record * RECORD_SIZE + copy * COPY_SIZE;
+    }
+
+    /*
+     * EFFECTS: Returns the player id stored in the copy at offset.
+     */
+    private String readId(int offset) {
+        byte[] id = new byte[map.get(offset + ID_LENGTH) & 0xFF];
+        map.get(offset + ID, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * EFFECTS: Returns true if playerId is 1 to MAX_ID_BYTES bytes long in
+     * UTF-8.
+     */
+    public static boolean isValidId(String playerId) {
+        int length = playerId.getBytes(StandardCharsets.UTF_8).length;
+        return length >= 1 && length <= MAX_ID_BYTES;
+    }
+
+    /*
+     * Writes one game state to a sink.
+     */
+    private interface StateWriter {
+        void writeTo(JsonSink sink) throws IOException;
+    }
+
+    /*
+     * REQUIRES: game is not null
+     * MODIFIES: this, file system
+     * EFFECTS: Saves the state of game as playerId's, streaming it into the
+     * store; throws IOException if playerId is not valid or the state does
+     * not fit in a record, in which case the player's previous state is kept.
+     */
+    public synchronized void save(String playerId, GamePanel game) throws IOException {
+        write(playerId, game::writeTo);
+    }
+
+    /*
+     * REQUIRES: snapshot is a game state as written by GamePanel.toJson()
+     * MODIFIES: this, file system
+     * EFFECTS: Saves snapshot as playerId's state, as save(playerId, game) does.
+     */
+    public synchronized void save(String playerId, JSONObject snapshot) throws IOException {
+        write(playerId, sink -> sink.json(snapshot));
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Writes the state written by state into the copy of playerId's
+     * record not holding their current state, then makes it current. If state
+     * fails, the current state is kept, and a new player's record is freed.
+     */
+    private void write(String playerId, StateWriter state) throws IOException {
+        if (!isValidId(playerId)) {
+            throw new IOException("Invalid player id: " + playerId);
+        }
+        int record = recordFor(playerId);
+        int copy = current[record] == 1 ? 0 : 1;
+        int offset = offset(record, copy);
+        try {
+            GridSplitter sink = begin(offset, playerId);
+            state.writeTo(sink);
+            commit(record, copy, offset, sink);
+        } catch (IOException | RuntimeException e) {
+            if (current[record] < 0) {
+                records.remove(playerId);
+                free.addFirst(record);
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Clears the copy at offset and returns a sink that writes the
+     * state of playerId into it.
+     */
+    private GridSplitter begin(int offset, String playerId) throws IOException {
+        byte[] id = playerId.getBytes(StandardCharsets.UTF_8);
+        map.putLong(offset + SEQUENCE, 0); // Invalid until committed
+        map.putLong(offset + SAVED_AT, System.currentTimeMillis());
+        map.put(offset + ID_LENGTH, (byte) id.length);
+        map.put(offset + ID, id);
+        map.put(offset + GRID_ROWS, (byte) 0);
+        map.put(offset + GRID_COLUMNS, (byte) 0);
+        return new GridSplitter(offset, new BufferOutput(map.slice(offset + ENTITIES, ENTITY_CAPACITY)));
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Completes the copy written through sink and makes it the
+     * record's current state: the CRC, then the sequence number, are written
+     * last.
+     */
+    private void commit(int record, int copy, int offset, GridSplitter sink) {
+        int entityLength = sink.getEntityLength();
+        map.putInt(offset + ENTITY_LENGTH, entityLength);
+        map.putInt(offset + CRC, checksum(offset, entityLength));
+        long sequence = current[record] < 0 ? 1 : map.getLong(offset(record, 1 - copy) + SEQUENCE) + 1;
+        map.putLong(offset + SEQUENCE, sequence);
+        current[record] = (byte) copy;
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Returns the record of playerId, taking a free one, and growing
+     * the file if there is none, for a new player.
+     */
+    private int recordFor(String playerId) throws IOException {
+        Integer record = records.get(playerId);
+        if (record != null) {
+            return record;
+        }
+        if (free.isEmpty()) {
+            grow();
+        }
+        record = free.poll();
+        records.put(playerId, record);
+        current[record] = -1;
+        return record;
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Doubles the number of records in the file; throws IOException
+     * if it is already as large as one mapping can be.
+     */
+    private void grow() throws IOException {
+        if (capacity == MAX_RECORDS) {
+            throw new IOException(path + " is full");
+        }
+        int grown = (int) Math.min(MAX_RECORDS, 2L * capacity);
+        int old = capacity;
+        map(grown);
+        for (int record = old; record < grown; record++) {
+            current[record] = -1;
+            free.add(record);
+        }
+        map.putInt(12, grown);
+    }
+
+    /*
+     * EFFECTS: Returns the state saved for playerId, or null if there is none;
+     * throws IOException if it cannot be decoded.
+     */
+    public synchronized JSONObject loadJson(String playerId) throws IOException {
+        Integer record = records.get(playerId);
+        if (record == null || current[record] < 0) {
+            return null;
+        }
+        int offset = offset(record, current[record]);
+        int entityLength = map.getInt(offset + ENTITY_LENGTH);
+        InputStream entities = new BufferInput(map.slice(offset + ENTITIES, entityLength));
+        Object value = new BinaryGameCodec.Source(entities).nextValue();
+        if (!(value instanceof JSONObject)) {
+            throw new IOException("Stored state of " + playerId + " is not a game");
+        }
+        JSONObject state = (JSONObject) value;
+        JSONObject maze = state.has("currentLevel")
+                ? state.getJSONObject("currentLevel").optJSONObject("maze") : null;
+        if (maze != null && maze.isNull("maze") && (map.get(offset + GRID_ROWS) & 0xFF) > 0) {
+            maze.put("maze", readGrid(offset)); // The grid was stored in its fixed area
+        }
+        return state;
+    }
+
+    /*
+     * EFFECTS: Returns the game saved for playerId, or null if there is none;
+     * throws IOException if it cannot be decoded.
+     */
+    public GamePanel load(String playerId) throws IOException {
+        JSONObject state = loadJson(playerId);
+        return state == null ? null : GamePanel.fromJson(state);
+    }
+
+    /*
+     * EFFECTS: Returns the grid stored in the fixed area of the copy at offset
+     * as a JSON array of rows.
+     */
+    private JSONArray readGrid(int offset) {
+        int rows = map.get(offset + GRID_ROWS) & 0xFF;
+        int columns = map.get(offset + GRID_COLUMNS) & 0xFF;
+        JSONArray grid = new JSONArray();
+        for (int y = 0; y < rows; y++) {
+            int[] row = new int[columns];
+            for (int x = 0; x < columns; x++) {
+                row[x] = map.get(offset + GRID + y * columns + x) & 0xFF;
+            }
+            grid.put(new JSONArray(row));
+        }
+        return grid;
+    }
+
+    /*
+     * EFFECTS: Returns when playerId was last saved, in milliseconds since the
+     * epoch, or -1 if there is no state for them.
+     */
+    public synchronized long getSavedAt(String playerId) {
+        Integer record = records.get(playerId);
+        if (record == null || current[record] < 0) {
+            return -1;
+        }
+        return map.getLong(offset(record, current[record]) + SAVED_AT);
+    }
+
+    /*
+     * EFFECTS: Returns true if a state is saved for playerId.
+     */
+    public synchronized boolean contains(String playerId) {
+        Integer record = records.get(playerId);
+        return record != null && current[record] >= 0;
+    }
+
+    /*
+     * EFFECTS: Returns the ids of the players with a saved state.
+     */
+    public synchronized List<String> ids() {
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : records.entrySet()) {
+            if (current[entry.getValue()] >= 0) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids;
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Deletes the state of playerId, if any, freeing its record.
+     */
+    public synchronized void delete(String playerId) {
+        Integer record = records.remove(playerId);
+        if (record == null) {
+            return;
+        }
+        map.putLong(offset(record, 0) + SEQUENCE, 0);
+        map.putLong(offset(record, 1) + SEQUENCE, 0);
+        current[record] = -1;
+        free.add(record);
+    }
+
+    /*
+     * MODIFIES: file system
+     * EFFECTS: Forces every change made so far to disk.
+     */
+    public synchronized void force() {
+        map.force();
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Forces the changes to disk and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    /*
+     * EFFECTS: Benchmarks saving and loading the games of many players, each
+     * part way through level 3, in its own file with GameWriter and
+     * GameReader, then in one mapped store, and prints the time per save and
+     * per load. The number of players, default 2000, may be given as the
+     * first argument. Each file save is forced to disk, so that time is
+     * reported apart; the store is forced once at the end, and that is
+     * included.
+     */
+    public static void main(String[] args) throws IOException {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        JSONObject snapshot = new GamePanel(new Level(3), new boolean[] { true, true, false }, true, false).toJson();
+        Path directory = Files.createTempDirectory("maze-store");
+        for (int round = 0; round < 2; round++) { // The first round warms up
+            long syncNanos = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < players; i++) {
+                GameWriter writer = new GameWriter(directory.resolve("player" + i).toString(),
+                        GameWriter.Format.BINARY);
+                writer.setGenerationsKept(0);
+                writer.open();
+                writer.write(snapshot);
+                writer.close();
+                syncNanos += writer.getSyncNanos();
+            }
+            long fileSaves = System.nanoTime() - start - syncNanos;
+            start = System.nanoTime();
+            for (int i = 0; i < players; i++) {
+                new GameReader(directory.resolve("player" + i).toString()).readJson();
+            }
+            long fileLoads = System.nanoTime() - start;
+
+            Path file = directory.resolve("games" + round + ".dat");
+            long storeSaves;
+            long storeLoads;
+            try (MappedGameStore store = new MappedGameStore(file)) {
+                start = System.nanoTime();
+                for (int i = 0; i < players; i++) {
+                    store.save("player" + i, snapshot);
+                }
+                store.force();
+                storeSaves = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < players; i++) {
+                    store.loadJson("player" + i);
+                }
+                storeLoads = System.nanoTime() - start;
+            }
+            if (round == 1) {
+                System.out.printf("%d players%n", players);
+                System.out.printf("files:  save %7.1f us (+ fsync %7.1f us)  load %7.1f us%n",
+                        fileSaves / 1e3 / players, syncNanos / 1e3 / players, fileLoads / 1e3 / players);
+                System.out.printf("mapped: save %7.1f us                     load %7.1f us%n",
+                        storeSaves / 1e3 / players, storeLoads / 1e3 / players);
+            }
+        }
+    }
+
+    /**
+     * Represents a sink that writes a game state to a copy of a record: the
+     * first grid that fits the fixed area goes there, with null written in its
+     * place, and everything else goes to the wrapped sink.
+     */
+    private final class GridSplitter implements JsonSink {
+        private final int offset; // Copy being written
+        private final BufferOutput section; // Entity section of the copy
+        private final BinaryGameCodec.Sink entities; // Writes the entity section
+        private boolean gridStored; // True once the fixed grid area is used
+
+        /*
+         * EFFECTS: Constructs a sink writing to the copy at offset, with its
+         * entities written to section.
+         */
+        GridSplitter(int offset, BufferOutput section) throws IOException {
+            this.offset = offset;
+            this.section = section;
+            this.entities = new BinaryGameCodec.Sink(section);
+        }
+
+        /*
+         * EFFECTS: Returns the number of bytes written to the entity section.
+         */
+        int getEntityLength() {
+            return section.position();
+        }
+
+        /*
+         * MODIFIES: this, the store
+         * EFFECTS: Stores grid in the fixed area if it is still free and grid
+         * fits, one byte per cell, writing null to the entity section in its
+         * place; otherwise writes it to the entity section.
+         */
+        @Override
+        public JsonSink grid(int[][] grid) throws IOException {
+            if (gridStored || grid.length > 255 || grid[0].length > 255
+                    || grid.length * grid[0].length > GRID_CAPACITY || !fitsInBytes(grid)) {
+                entities.grid(grid);
+                return this;
+            }
+            int columns = grid[0].length;
+            map.put(offset + GRID_ROWS, (byte) grid.length);
+            map.put(offset + GRID_COLUMNS, (byte) columns);
+            for (int y = 0; y < grid.length; y++) {
+                for (int x = 0; x < columns; x++) {
+                    map.put(offset + GRID + y * columns + x, (byte) grid[y][x]);
+                }
+            }
+            gridStored = true;
+            entities.nullValue();
+            return this;
+        }
+
+        /*
+         * EFFECTS: Returns true if every cell of grid is between 0 and 255.
+         */
+        private boolean fitsInBytes(int[][] grid) {
+            for (int[] row : grid) {
+                for (int cell : row) {
+                    if (cell < 0 || cell > 255) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public JsonSink beginObject() throws IOException {
+            entities.beginObject();
+            return this;
+        }
+
+        @Override
+        public JsonSink endObject() throws IOException {
+            entities.endObject();
+            return this;
+        }
+
+        @Override
+        public JsonSink beginArray() throws IOException {
+            entities.beginArray();
+            return this;
+        }
+
+        @Override
+        public JsonSink endArray() throws IOException {
+            entities.endArray();
+            return this;
+        }
+
+        @Override
+        public JsonSink name(String name) throws IOException {
+            entities.name(name);
+            return this;
+        }
+
+        @Override
+        public JsonSink value(String value) throws IOException {
+            entities.value(value);
+            return this;
+        }
+
+        @Override
+        public JsonSink value(long value) throws IOException {
+            entities.value(value);
+            return this;
+        }
+
+        @Override
+        public JsonSink value(double value) throws IOException {
+            entities.value(value);
+            return this;
+        }
+
+        @Override
+        public JsonSink value(boolean value) throws IOException {
+            entities.value(value);
+            return this;
+        }
+
+        @Override
+        public JsonSink nullValue() throws IOException {
+            entities.nullValue();
+            return this;
+        }
+
+        @Override
+        public void flush() {
+            // Written straight to the mapping
+        }
+    }
+
+    /**
+     * Represents an OutputStream that writes into a buffer, failing once it is
+     * full.
+     */
+    private static final class BufferOutput extends OutputStream {
+        private final ByteBuffer buffer; // Where the bytes go
+
+        /*
+         * EFFECTS: Constructs a stream writing into buffer from its position.
+         */
+        BufferOutput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /*
+         * EFFECTS: Returns the number of bytes written.
+         */
+        int position() {
+            return buffer.position();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Game state is larger than a record");
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (buffer.remaining() < length) {
+                throw new IOException("Game state is larger than a record");
+            }
+            buffer.put(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Represents an InputStream that reads a buffer in place.
+     */
+    private static final class BufferInput extends InputStream {
+        private final ByteBuffer buffer; // Where the bytes come from
+
+        /*
+         * EFFECTS: Constructs a stream reading buffer from its position.
+         */
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return length == 0 ? 0 : -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
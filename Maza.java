@@ -2,10 +2,14 @@ package model;
 
 import java.util.Random;
 
+import persistence.JsonSink;
+import persistence.JsonSource;
 import persistence.Writable;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+
+import java.io.IOException;
 // Represents a maze generated using the stick flip algorithm.
 // The maze contains an entrance, exit, and paths created using a recursive stick flip process.
 // The class also checks if the exit is accessible from the entrance.
@@ -24,8 +28,17 @@ public class Maze implements Writable {
      * and sets entrance and exit points. Verifies if the exit is accessible.
      */
     public Maze() {
+        this(new Random());
+    }
+
+    /*
+     * REQUIRES: random is not null
+     * EFFECTS: Constructs a new Maze as Maze() does, drawing every random choice
+     * from random, so that the same seed always generates the same maze.
+     */
+    public Maze(Random random) {
         maze = new int[MAZE_SIZE][MAZE_SIZE];
-        random = new Random();
+        this.random = random;
         initialize();
         mazeCreate();
         setEntranceAndExit();
@@ -256,6 +269,21 @@ public class Maze implements Writable {
         return json;
     }
 
+    /*
+     * MODIFIES: sink
+     * EFFECTS: Writes the same object as toJson() straight to sink, with the
+     * maze structure as a grid.
+     */
+    @Override
+    public void writeTo(JsonSink sink) throws IOException {
+        sink.beginObject();
+        sink.name("maze").grid(maze);
+        sink.name("entrance").beginArray().value(entrance[0]).value(entrance[1]).endArray();
+        sink.name("exit").beginArray().value(exit[0]).value(exit[1]).endArray();
+        sink.name("exitAccessible").value(exitAccessible);
+        sink.endObject();
+    }
+
     // Helper method to convert 2D maze array into JSON
     private JSONArray mazeToJson() {
         JSONArray jsonArray = new JSONArray();
@@ -301,4 +329,74 @@ public class Maze implements Writable {
         return maze;
     }
 
+    /*
+     * REQUIRES: source is positioned at an object written by writeTo or
+     * toJson()
+     * MODIFIES: source
+     * EFFECTS: Reads a Maze from source, using the grid read as its structure;
+     * throws IOException if source is malformed or the grid is not
+     * MAZE_SIZE x MAZE_SIZE.
+     */
+    public static Maze readFrom(JsonSource source) throws IOException {
+        int[][] mazeStructure = null;
+        int[] entrance = null;
+        int[] exit = null;
+        boolean exitAccessible = false;
+        source.beginObject();
+        while (source.hasNext()) {
+            switch (source.nextName()) {
+                case "maze":
+                    mazeStructure = source.nextGrid();
+                    checkSize(mazeStructure);
+                    break;
+                case "entrance":
+                    entrance = readPoint(source);
+                    break;
+                case "exit":
+                    exit = readPoint(source);
+                    break;
+                case "exitAccessible":
+                    exitAccessible = source.nextBoolean();
+                    break;
+                default:
+                    source.skipValue();
+            }
+        }
+        source.endObject();
+        if (mazeStructure == null || entrance == null || exit == null) {
+            throw new IOException("Saved maze is missing its structure, entrance or exit");
+        }
+        Maze maze = new Maze(mazeStructure);
+        maze.entrance = entrance;
+        maze.exit = exit;
+        maze.exitAccessible = exitAccessible;
+        return maze;
+    }
+
+    /*
+     * EFFECTS: Throws IOException unless grid has MAZE_SIZE rows of MAZE_SIZE
+     * cells.
+     */
+    private static void checkSize(int[][] grid) throws IOException {
+        if (grid.length != MAZE_SIZE) {
+            throw new IOException("Saved maze has " + grid.length + " rows, expected " + MAZE_SIZE);
+        }
+        for (int[] row : grid) {
+            if (row.length != MAZE_SIZE) {
+                throw new IOException("Saved maze has a row of " + row.length + " cells, expected " + MAZE_SIZE);
+            }
+        }
+    }
+
+    /*
+     * MODIFIES: source
+     * EFFECTS: Reads an [x, y] pair from source.
+     */
+    private static int[] readPoint(JsonSource source) throws IOException {
+        source.beginArray();
+        int[] point = { source.nextInt(), source.nextInt() };
+        source.endArray();
+        return point;
+    }
+
 }
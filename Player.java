@@ -1,8 +1,12 @@
 package model;
 
+import persistence.JsonSink;
+import persistence.JsonSource;
 import persistence.Writable;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 // Represents the player in the maze game, tracking their position, items collected (key, flashlight), 
 // and visibility range based on level.
 
@@ -44,41 +48,43 @@ public class Player implements Writable {
         }
     }
 
+    /*
+     * REQUIRES: inventory is not null
+     * EFFECTS: initializes a player restored from a save, at (playerX,
+     * playerY) with the saved visibility diameter and inventory
+     */
+    public Player(int playerX, int playerY, int visibilityDiameter, Inventory inventory) {
+        this.playerX = playerX;
+        this.playerY = playerY;
+        this.visibilityDiameter = visibilityDiameter;
+        this.inventory = inventory;
+    }
+
     /*
      * REQUIRES: direction is one of "up", "down", "left", "right", "w", "a", "s",
      * or "d"
      * MODIFIES: this
      * EFFECTS: Moves the player one unit in the specified direction. Direction
-     * input is case-insensitive.
+     * input is case-insensitive; anything else leaves the player where they are.
      */
-    @SuppressWarnings("methodlength")
     public void move(String direction) {
-        switch (direction.toLowerCase()) {
-            case "down":
-            case "s":
-                playerY += 1;
-                EventLog.getInstance().logEvent(new Event("Player moved down"));
-                break;
-            case "up":
-            case "w":
-                playerY -= 1;
-                EventLog.getInstance().logEvent(new Event("Player moved up"));
-                break;
-            case "left":
-            case "a":
-                playerX -= 1;
-                EventLog.getInstance().logEvent(new Event("Player moved left"));
-                break;
-            case "right":
-            case "d":
-                playerX += 1;
-                EventLog.getInstance().logEvent(new Event("Player moved right"));
-                break;
-            default:
-                break;
+        Direction d = Direction.fromString(direction);
+        if (d != null) {
+            move(d);
         }
     }
 
+    /*
+     * REQUIRES: direction is not null
+     * MODIFIES: this
+     * EFFECTS: Moves the player one unit in the specified direction.
+     */
+    public void move(Direction direction) {
+        playerX += direction.getDx();
+        playerY += direction.getDy();
+        EventLog.getInstance().log(Event.Severity.DEBUG, "movement", direction.getMoveMessage());
+    }
+
     /*
      * MODIFIES: this
      * EFFECTS: sets the x-coordinate of the player's position
@@ -106,29 +112,19 @@ public class Player implements Writable {
 
     /*
      * MODIFIES: this
-     * EFFECTS: Adds the given item to the player's inventory.
-     * If the item is a flashlight, expands the player's vision.
-     * If the item is a key, acknowledges its collection.
+     * EFFECTS: Adds the given item to the player's inventory and runs the collect
+     * behaviour of its kind: a flashlight expands the player's vision and a key
+     * acknowledges its collection.
      */
     public void collectItem(Item item) {
         inventory.addItem(item);
         item.setCollected(true);
         System.out.println("Collected " + item.getType());
         // Log the event for collecting an item
-        EventLog.getInstance().logEvent(new Event("Collected " + item.getType()));
+        EventLog.getInstance().log(Event.Severity.INFO, "item", "Collected {}", item.getType());
 
-        // If the item is a flashlight, expand the player's vision
-        if (item.getType().equals("flashlight")) {
-            this.visibilityDiameter = 11;
-            System.out.println("Vision expanded!");
-            EventLog.getInstance().logEvent(new Event("Flashlight collected, vision expanded"));
-        }
-
-        // If the item is a key, display key collection message
-        if (item.getType().equals("key")) {
-            System.out.println("You can now unlock the door!");
-            EventLog.getInstance().logEvent(new Event("Key collected, door can now be unlocked"));
-        }
+        // Run the kind-specific behaviour (e.g. a flashlight expands the player's vision)
+        item.getKind().onCollect(this, item);
     }
 
     /*
@@ -149,14 +145,14 @@ public class Player implements Writable {
      * EFFECTS: Returns whether the player has collected the key
      */
     public boolean hasKey() {
-        return inventory.hasItem("key");
+        return inventory.hasItem(ItemType.KEY);
     }
 
     /*
      * EFFECTS: Returns true if the player has collected a flashlight.
      */
     public boolean hasFlashlight() {
-        return inventory.hasItem("flashlight");
+        return inventory.hasItem(ItemType.FLASHLIGHT);
     }
 
     /*
@@ -223,6 +219,21 @@ public class Player implements Writable {
         return json;
     }
 
+    /*
+     * MODIFIES: sink
+     * EFFECTS: Writes the same object as toJson() straight to sink.
+     */
+    @Override
+    public void writeTo(JsonSink sink) throws IOException {
+        sink.beginObject();
+        sink.name("playerX").value(playerX);
+        sink.name("playerY").value(playerY);
+        sink.name("visibilityDiameter").value(visibilityDiameter);
+        sink.name("inventory");
+        inventory.writeTo(sink);
+        sink.endObject();
+    }
+
     /*
      * REQUIRES: jsonObject is a valid JSON object representing a Player.
      * EFFECTS: Reconstructs a Player object from its JSON representation.
@@ -231,15 +242,43 @@ public class Player implements Writable {
         int playerX = jsonObject.getInt("playerX");
         int playerY = jsonObject.getInt("playerY");
         int visibilityDiameter = jsonObject.getInt("visibilityDiameter");
-        Inventory inventory = Inventory.fromJson(jsonObject.getJSONObject("inventory")); // Assuming Inventory has a
-                                                                                         // fromJson method
-
-        Player player = new Player(); // Create a new Player object
-        player.setPosition(playerX, playerY); // Set the player's position
-        player.setVisibilityDiameter(visibilityDiameter); // Set the player's visibility diameter
-        player.setInventory(inventory); // Set the player's inventory
+        Inventory inventory = Inventory.fromJson(jsonObject.getJSONObject("inventory"));
+        return new Player(playerX, playerY, visibilityDiameter, inventory);
+    }
 
-        return player;
+    /*
+     * REQUIRES: source is positioned at an object written by writeTo or
+     * toJson()
+     * MODIFIES: source
+     * EFFECTS: Reads a Player from source; throws IOException if source is
+     * malformed.
+     */
+    public static Player readFrom(JsonSource source) throws IOException {
+        int playerX = 0;
+        int playerY = 0;
+        int visibilityDiameter = new Player().getVisibilityDiameter(); // As for a new player, if not saved
+        Inventory inventory = null;
+        source.beginObject();
+        while (source.hasNext()) {
+            switch (source.nextName()) {
+                case "playerX":
+                    playerX = source.nextInt();
+                    break;
+                case "playerY":
+                    playerY = source.nextInt();
+                    break;
+                case "visibilityDiameter":
+                    visibilityDiameter = source.nextInt();
+                    break;
+                case "inventory":
+                    inventory = Inventory.readFrom(source);
+                    break;
+                default:
+                    source.skipValue();
+            }
+        }
+        source.endObject();
+        return new Player(playerX, playerY, visibilityDiameter, inventory == null ? new Inventory() : inventory);
     }
 
 }
@@ -0,0 +1,126 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Represents a recorded play session of one level: the level number, the seed
+ * the level was generated from, and the inputs that changed the game, each
+ * with the time it was made. Because every random choice of a Level is drawn
+ * from its seeded Random, replaying the inputs in order reproduces the session
+ * exactly (see ReplayEngine).
+ *
+ * Inputs are small ints: MOVE + direction ordinal for a player move that the
+ * ghost does not follow (single-key play), STEP + direction ordinal for a move
+ * the ghost follows (typed commands), and GHOST for a step of the ghost on its
+ * own clock. Only moves the maze allowed are recorded.
+ */
+public class Replay {
+    public static final int MOVE = 0; // Player move, plus Direction.ordinal()
+    public static final int STEP = 4; // Player move followed by the ghost, plus Direction.ordinal()
+    public static final int GHOST = 8; // Ghost step on its own clock
+    public static final int INPUT_COUNT = 9; // Number of distinct inputs
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int levelNumber; // Level the session played
+    private final long seed; // Seed of the Random the level was generated from
+    private long[] times = new long[INITIAL_CAPACITY]; // Nanoseconds from the start of the session to each input
+    private byte[] inputs = new byte[INITIAL_CAPACITY]; // The inputs, in the order they were made
+    private int size; // Number of inputs recorded
+
+    /*
+     * REQUIRES: levelNumber >= 1 and <= 3
+     * EFFECTS: Constructs an empty replay of the level generated from seed.
+     */
+    public Replay(int levelNumber, long seed) {
+        this.levelNumber = levelNumber;
+        this.seed = seed;
+    }
+
+    /*
+     * REQUIRES: direction is not null
+     * EFFECTS: Returns the input for a player move in direction that the ghost
+     * does not follow.
+     */
+    public static int move(Direction direction) {
+        return MOVE + direction.ordinal();
+    }
+
+    /*
+     * REQUIRES: direction is not null
+     * EFFECTS: Returns the input for a player move in direction that the ghost
+     * follows.
+     */
+    public static int step(Direction direction) {
+        return STEP + direction.ordinal();
+    }
+
+    /*
+     * REQUIRES: input is MOVE or STEP plus a direction ordinal
+     * EFFECTS: Returns the direction input moves the player in.
+     */
+    public static Direction directionOf(int input) {
+        return Direction.values()[input % STEP];
+    }
+
+    /*
+     * REQUIRES: 0 <= input < INPUT_COUNT; timeNanos is not earlier than the
+     * time of the last input
+     * MODIFIES: this
+     * EFFECTS: Appends input, made timeNanos after the start of the session.
+     */
+    public void add(long timeNanos, int input) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            inputs = Arrays.copyOf(inputs, size * 2);
+        }
+        times[size] = timeNanos;
+        inputs[size] = (byte) input;
+        size++;
+    }
+
+    /*
+     * EFFECTS: Returns the number of the level the session played.
+     */
+    public int getLevelNumber() {
+        return levelNumber;
+    }
+
+    /*
+     * EFFECTS: Returns the seed the level was generated from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /*
+     * EFFECTS: Returns the number of inputs recorded.
+     */
+    public int size() {
+        return size;
+    }
+
+    /*
+     * REQUIRES: 0 <= index < size()
+     * EFFECTS: Returns the time of the input at index, in nanoseconds from the
+     * start of the session.
+     */
+    public long timeAt(int index) {
+        return times[index];
+    }
+
+    /*
+     * REQUIRES: 0 <= index < size()
+     * EFFECTS: Returns the input at index.
+     */
+    public int inputAt(int index) {
+        return inputs[index];
+    }
+
+    /*
+     * EFFECTS: Returns the length of the session up to its last input, in
+     * nanoseconds.
+     */
+    public long getDuration() {
+        return size == 0 ? 0 : times[size - 1];
+    }
+}
@@ -0,0 +1,258 @@
+package model;
+
+import persistence.ReplayFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Represents a headless engine that plays a Replay back through Level, Player
+ * and Ghost, without drawing anything. The level is regenerated from the
+ * replay's seed and each input is applied with the same rules as the console
+ * game, so the session plays out exactly as it was recorded.
+ *
+ * Playback can jump straight to a point in the session (fastForward), run as
+ * fast as the machine allows, or run at a multiple of real time, reporting
+ * only every few frames to a Listener (play). If a recorded move runs into a
+ * wall, the replay no longer matches the level it claims to be from and is
+ * marked as out of sync; a speedrun is only verified if the replay completes
+ * the level without ever getting out of sync.
+ */
+public class ReplayEngine {
+    public static final long DEFAULT_FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60; // Replay time per frame
+
+    private final Replay replay; // Session being played back
+    private final Level level; // Level the session is replayed in
+    private int next; // Index of the next input to apply
+    private long clock; // Replay time reached, in nanoseconds from the start of the session
+    private long completedAt = -1; // Replay time the level was completed, or -1 if it has not been
+    private int collisions; // Times the ghost caught the player
+    private boolean outOfSync; // True once a recorded move could not be made
+
+    /**
+     * Represents something that is shown the level as the replay plays.
+     */
+    public interface Listener {
+        /*
+         * EFFECTS: Called after each shown frame with the level as it stands
+         * timeNanos into the session.
+         */
+        void frame(Level level, long timeNanos);
+    }
+
+    /*
+     * REQUIRES: replay is not null
+     * EFFECTS: Constructs an engine at the start of replay, with its level
+     * regenerated from the recorded seed.
+     */
+    public ReplayEngine(Replay replay) {
+        this.replay = replay;
+        this.level = new Level(replay.getLevelNumber(), new Random(replay.getSeed()));
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Applies the next input, advancing the clock to its time, and
+     * returns true; returns false if every input has been applied or the level
+     * is completed.
+     */
+    public boolean step() {
+        if (isFinished()) {
+            return false;
+        }
+        clock = Math.max(clock, replay.timeAt(next));
+        apply(replay.inputAt(next));
+        next++;
+        return true;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Applies every input made up to timeNanos into the session and
+     * moves the clock there.
+     */
+    public void fastForward(long timeNanos) {
+        while (!isFinished() && replay.timeAt(next) <= timeNanos) {
+            step();
+        }
+        clock = Math.max(clock, timeNanos);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Plays the rest of the replay as fast as possible and returns
+     * whether the level was completed.
+     */
+    public boolean run() {
+        while (step()) {
+            // Every input is applied in turn
+        }
+        return isCompleted();
+    }
+
+    /*
+     * REQUIRES: frameNanos > 0, frameSkip >= 0, listener is not null
+     * MODIFIES: this
+     * EFFECTS: Plays the rest of the replay in frames of frameNanos of replay
+     * time, showing listener one frame and then skipping frameSkip. With speed
+     * > 0 playback is paced at speed times real time; otherwise it runs as
+     * fast as possible. The last frame is always shown.
+     */
+    public void play(double speed, long frameNanos, int frameSkip, Listener listener) {
+        long start = System.nanoTime();
+        long startClock = clock;
+        int frame = 0;
+        while (!isFinished()) {
+            fastForward(clock + frameNanos);
+            if (frame++ % (frameSkip + 1) == 0 || isFinished()) {
+                if (speed > 0) {
+                    long due = start + (long) ((clock - startClock) / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                listener.frame(level, clock);
+            }
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Applies input with the rules of live play, shared through
+     * Level: a GHOST step moves the ghost with Level.moveGhost, and a move is
+     * made and resolved with Level.resolveStep, the ghost following a STEP.
+     */
+    private void apply(int input) {
+        if (input == Replay.GHOST) {
+            if (level.moveGhost()) {
+                collisions++;
+            }
+            return;
+        }
+        if (!level.tryMove(Replay.directionOf(input))) {
+            outOfSync = true;
+            return;
+        }
+        Set<Level.Outcome> outcomes = level.resolveStep(input >= Replay.STEP);
+        if (outcomes.contains(Level.Outcome.CAUGHT)) {
+            collisions++;
+        }
+        if (outcomes.contains(Level.Outcome.COMPLETED)) {
+            completedAt = clock;
+        }
+    }
+
+    /*
+     * EFFECTS: Returns true if every input has been applied or the level is
+     * completed.
+     */
+    public boolean isFinished() {
+        return next >= replay.size() || isCompleted();
+    }
+
+    /*
+     * EFFECTS: Returns true if the replay completed the level.
+     */
+    public boolean isCompleted() {
+        return completedAt >= 0;
+    }
+
+    /*
+     * EFFECTS: Returns true if the replay completed the level without a
+     * recorded move ever running into a wall.
+     */
+    public boolean isVerified() {
+        return isCompleted() && !outOfSync;
+    }
+
+    /*
+     * EFFECTS: Returns true if a recorded move could not be made in the
+     * regenerated level.
+     */
+    public boolean isOutOfSync() {
+        return outOfSync;
+    }
+
+    /*
+     * EFFECTS: Returns the replay time the level was completed at, in
+     * nanoseconds, or -1 if it has not been.
+     */
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    /*
+     * EFFECTS: Returns the number of inputs applied so far.
+     */
+    public int getApplied() {
+        return next;
+    }
+
+    /*
+     * EFFECTS: Returns the number of times the ghost caught the player.
+     */
+    public int getCollisions() {
+        return collisions;
+    }
+
+    /*
+     * EFFECTS: Returns the replay time reached, in nanoseconds.
+     */
+    public long getClock() {
+        return clock;
+    }
+
+    /*
+     * EFFECTS: Returns the level the replay is played in.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /*
+     * EFFECTS: Plays back the replay file named by the first argument and
+     * prints whether it completes its level, then replays it repeatedly and
+     * prints how many times faster than real time the engine runs.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: ReplayEngine <replay file>");
+            return;
+        }
+        Path path = Paths.get(args[0]);
+        Replay replay = ReplayFile.read(path);
+        ReplayEngine engine = new ReplayEngine(replay);
+        engine.run();
+        System.out.printf("Level %d, seed %d: %d of %d inputs, %s, %d ghost collisions, %s%n",
+                replay.getLevelNumber(), replay.getSeed(), engine.getApplied(), replay.size(),
+                engine.isCompleted() ? String.format("completed at %.3f s", engine.getCompletedAt() / 1e9)
+                        : "not completed",
+                engine.getCollisions(), engine.isVerified() ? "verified" : "not verified");
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Player reports collections on the console
+        try {
+            for (int i = 0; i < 200; i++) { // Warm up
+                new ReplayEngine(replay).run();
+            }
+            int runs = 1000;
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                new ReplayEngine(replay).run();
+            }
+            long elapsed = System.nanoTime() - start;
+            console.printf("%.3f ms per replay, %.0fx real time%n", elapsed / 1e6 / runs,
+                    (double) replay.getDuration() * runs / elapsed);
+        } finally {
+            System.setOut(console);
+        }
+    }
+}
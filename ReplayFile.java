@@ -0,0 +1,217 @@
+package persistence;
+
+import model.Event;
+import model.EventLog;
+import model.Replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the compact binary file a Replay is stored in:
+ *
+ * int MAGIC | byte VERSION | byte levelNumber | long seed | input*
+ *
+ * where each input is a varint of the microseconds since the previous input
+ * (or the start of the session), then a byte holding the input itself. A
+ * move typically takes three bytes. The file ends after the last input, so a
+ * recording cut short by a crash still reads up to its last whole input.
+ */
+public final class ReplayFile {
+    public static final int MAGIC = 0x4D5A5231; // "MZR1"
+    public static final int VERSION = 1;
+    public static final String SUFFIX = ".replay";
+
+    /*
+     * EFFECTS: Not instantiable; see Recorder and read.
+     */
+    private ReplayFile() {
+    }
+
+    /**
+     * Represents a recorder that writes each input of a session through to a
+     * replay file as it is made, timing them from when it was opened. If the file
+     * cannot be written the recording is dropped with a warning, so a failing
+     * disk never interrupts play.
+     */
+    public static final class Recorder implements AutoCloseable {
+        private final Path path; // File being recorded to
+        private final long start; // System.nanoTime the session started
+        private DataOutputStream out; // Open file, or null once closed or failed
+        private long lastMicros; // Time of the last input, in microseconds from the start
+
+        /*
+         * REQUIRES: levelNumber >= 1 and <= 3
+         * EFFECTS: Opens a recording of the level generated from seed at path,
+         * writing the header; throws IOException if it cannot be created.
+         */
+        public Recorder(Path path, int levelNumber, long seed) throws IOException {
+            this.path = path;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(levelNumber);
+            out.writeLong(seed);
+            out.flush();
+            this.start = System.nanoTime();
+        }
+
+        /*
+         * REQUIRES: 0 <= input < Replay.INPUT_COUNT
+         * MODIFIES: this
+         * EFFECTS: Records input as made now and writes it through to the
+         * file, so a crash loses at most the input being recorded.
+         */
+        public void record(int input) {
+            if (out == null) {
+                return;
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            try {
+                writeVarLong(out, micros - lastMicros);
+                out.writeByte(input);
+                out.flush();
+                lastMicros = micros;
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Writes the inputs recorded so far to the file.
+         */
+        public void flush() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.flush();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Writes the inputs recorded so far and closes the file; does
+         * nothing if it is already closed.
+         */
+        @Override
+        public void close() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                EventLog.getInstance().log(Event.Severity.WARN, "replay", "Unable to finish replay {}: {}", path,
+                        e.getMessage());
+            }
+            out = null;
+        }
+
+        /*
+         * EFFECTS: Returns the file being recorded to.
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Stops recording after an error, closing the file.
+         */
+        private void fail(IOException e) {
+            EventLog.getInstance().log(Event.Severity.WARN, "replay", "Replay {} dropped: {}", path, e.getMessage());
+            try {
+                out.close();
+            } catch (IOException closing) {
+                e.addSuppressed(closing);
+            }
+            out = null;
+        }
+    }
+
+    /*
+     * EFFECTS: Reads the replay at path; throws IOException if it cannot be
+     * read or is not a replay file. A truncated last input is ignored.
+     */
+    public static Replay read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a replay file");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported replay version " + version);
+            }
+            int levelNumber = in.readUnsignedByte();
+            if (levelNumber < 1 || levelNumber > 3) {
+                throw new IOException("Invalid level " + levelNumber + " in " + path);
+            }
+            Replay replay = new Replay(levelNumber, in.readLong());
+            long micros = 0;
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    return replay; // End of the recording
+                }
+                int input;
+                try {
+                    micros += readVarLong(in, first);
+                    input = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    return replay; // Cut short while the last input was written
+                }
+                if (input >= Replay.INPUT_COUNT) {
+                    throw new IOException("Invalid input " + input + " in " + path);
+                }
+                replay.add(TimeUnit.MICROSECONDS.toNanos(micros), input);
+            }
+        }
+    }
+
+    /*
+     * MODIFIES: out
+     * EFFECTS: Writes value as an unsigned varint, seven bits per byte, least
+     * significant first.
+     */
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /*
+     * MODIFIES: in
+     * EFFECTS: Reads the rest of a varint whose first byte was first; throws
+     * EOFException if it is cut short and IOException if it is too long.
+     */
+    private static long readVarLong(InputStream in, int first) throws IOException {
+        long value = first & 0x7F;
+        int b = first;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            if (shift >= 64) {
+                throw new IOException("Varint too long in replay");
+            }
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+        }
+        return value;
+    }
+}
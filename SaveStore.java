@@ -0,0 +1,500 @@
+package persistence;
+
+import model.Event;
+import model.EventLog;
+import model.Level;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import ui.GamePanel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Represents a store of named save slots in one directory. Each slot is a
+ * save file, slot.json, written by a DeltaSaver, with its backups and
+ * checkpoints beside it. A small index file, saves.idx, records the level,
+ * save time and progress of every slot, one tab-separated line each:
+ *
+ * slot | level | savedAt | completed
+ *
+ * where level is 0 if no level is in progress, savedAt is in milliseconds
+ * since the epoch, and completed has a 1 or 0 per level. Listing the slots
+ * reads only the index; a save is read when its slot is loaded. If the
+ * index is missing it is rebuilt once from the save files.
+ *
+ * A save appends its slot's line to the index rather than rewriting it, a
+ * later line for a slot replacing the earlier ones, so a save costs the same
+ * however many slots there are. Once superseded lines make up half the file
+ * it is compacted: rewritten with one line per slot. Deleting a slot, or
+ * finding a line torn by a crash, also compacts it.
+ *
+ * The slot "gamePanelState" is the default, so the save file the game has
+ * always used is a slot. Methods are synchronized, so the store may be used
+ * from the Swing event dispatch thread and the I/O thread of AsyncGameStore.
+ */
+public class SaveStore {
+    public static final String DEFAULT_DIRECTORY = "./data"; // Where the game keeps its saves
+    public static final String DEFAULT_SLOT = "gamePanelState"; // Slot used unless another is chosen
+    public static final String EXTENSION = ".json"; // Suffix of a slot's save file
+    public static final String INDEX_FILE = "saves.idx"; // Name of the index in the directory
+    private static final String INDEX_HEADER = "# slot\tlevel\tsavedAt\tcompleted";
+    private static final int COMPACT_MIN_LINES = 64; // Index lines kept before compacting is considered
+    private static final Pattern SLOT_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}"); // Safe as a file name
+    private static final DateTimeFormatter SAVED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+            .withZone(ZoneId.systemDefault()); // How save times are shown
+
+    private static SaveStore theStore; // Store of the default directory
+
+    private final Path directory; // Directory holding the saves and the index
+    private final Map<String, DeltaSaver> savers = new ConcurrentHashMap<>(); // Per slot, its incremental saver
+    private Map<String, Entry> entries; // Index by slot, or null until first read
+    private int indexLines; // Entry lines in the index file, superseded ones included
+
+    /**
+     * Represents a save of one slot captured on the game thread and waiting
+     * to be written by commit.
+     */
+    public static final class Pending {
+        private final String slot; // Slot saved to
+        private final DeltaSaver.Change change; // What is written
+        private final Entry entry; // Index entry once it is written
+
+        /*
+         * EFFECTS: Constructs a pending save of change to slot.
+         */
+        private Pending(String slot, DeltaSaver.Change change, Entry entry) {
+            this.slot = slot;
+            this.change = change;
+            this.entry = entry;
+        }
+
+        public String getSlot() {
+            return slot;
+        }
+    }
+
+    /**
+     * Represents what the index records about one slot.
+     */
+    public static class Entry {
+        private final String slot; // Name of the slot
+        private final int level; // Level in progress, or 0 if none
+        private final long savedAt; // When the slot was last saved, in milliseconds since the epoch
+        private final boolean[] completed; // Per level, whether it has been completed
+
+        /*
+         * REQUIRES: slot and completed are not null
+         * EFFECTS: Constructs an entry for slot.
+         */
+        public Entry(String slot, int level, long savedAt, boolean[] completed) {
+            this.slot = slot;
+            this.level = level;
+            this.savedAt = savedAt;
+            this.completed = completed.clone();
+        }
+
+        public String getSlot() {
+            return slot;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public long getSavedAt() {
+            return savedAt;
+        }
+
+        /*
+         * EFFECTS: Returns the number of levels completed.
+         */
+        public int getLevelsCompleted() {
+            int count = 0;
+            for (boolean done : completed) {
+                if (done) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /*
+         * EFFECTS: Returns whether each level has been completed.
+         */
+        public boolean[] getCompleted() {
+            return completed.clone();
+        }
+
+        /*
+         * EFFECTS: Returns a one-line description of the slot for a menu.
+         */
+        @Override
+        public String toString() {
+            String progress = level == 0 ? "no level in progress" : "level " + level + " in progress";
+            return slot + ": " + progress + ", " + getLevelsCompleted() + " of " + completed.length
+                    + " levels completed, saved " + SAVED_AT.format(Instant.ofEpochMilli(savedAt));
+        }
+
+        /*
+         * EFFECTS: Returns the entry as one line of the index file.
+         */
+        private String toLine() {
+            StringBuilder line = new StringBuilder(slot).append('\t').append(level).append('\t')
+                    .append(savedAt).append('\t');
+            for (boolean done : completed) {
+                line.append(done ? '1' : '0');
+            }
+            return line.toString();
+        }
+
+        /*
+         * EFFECTS: Returns the entry on a line of the index file, or null if the
+         * line is not one.
+         */
+        private static Entry fromLine(String line) {
+            String[] fields = line.split("\t");
+            if (fields.length != 4 || !SLOT_NAME.matcher(fields[0]).matches()) {
+                return null;
+            }
+            boolean[] completed = new boolean[fields[3].length()];
+            for (int i = 0; i < completed.length; i++) {
+                completed[i] = fields[3].charAt(i) == '1';
+            }
+            try {
+                return new Entry(fields[0], Integer.parseInt(fields[1]), Long.parseLong(fields[2]), completed);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /*
+     * REQUIRES: directory is not null
+     * EFFECTS: Constructs a store of the slots in directory.
+     */
+    public SaveStore(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the store of the slots in DEFAULT_DIRECTORY.
+     */
+    public static synchronized SaveStore getInstance() {
+        if (theStore == null) {
+            theStore = new SaveStore(DEFAULT_DIRECTORY);
+        }
+        return theStore;
+    }
+
+    /*
+     * EFFECTS: Returns true if slot may name a slot: 1 to 64 letters, digits,
+     * '_' or '-'.
+     */
+    public static boolean isValidSlot(String slot) {
+        return slot != null && SLOT_NAME.matcher(slot).matches();
+    }
+
+    /*
+     * EFFECTS: Returns the path of the save file of slot; throws
+     * IllegalArgumentException if slot is not a valid slot name.
+     */
+    public String pathOf(String slot) {
+        if (!isValidSlot(slot)) {
+            throw new IllegalArgumentException("Invalid save slot name: " + slot);
+        }
+        return directory.resolve(slot + EXTENSION).toString();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the slots in the index, most recently saved first,
+     * reading the index the first time; throws IOException if it cannot be
+     * read.
+     */
+    public synchronized List<Entry> list() throws IOException {
+        List<Entry> list = new ArrayList<>(index().values());
+        list.sort(Comparator.comparingLong(Entry::getSavedAt).reversed());
+        return list;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the index entry of slot, or null if it has none.
+     */
+    public synchronized Entry get(String slot) throws IOException {
+        return index().get(slot);
+    }
+
+    /*
+     * REQUIRES: game is not changed during this call
+     * MODIFIES: this, file system
+     * EFFECTS: Saves game to slot, as the changes since the last save when
+     * that is cheaper and otherwise streamed in full, and records it in the
+     * index; throws IOException if it cannot be written.
+     */
+    public synchronized void save(String slot, GamePanel game) throws IOException {
+        Files.createDirectories(directory);
+        index(); // Read, or rebuilt, before this save is on disk
+        saver(slot).save(game);
+        record(entryFor(slot, game, System.currentTimeMillis()));
+    }
+
+    /*
+     * REQUIRES: snapshot is a game state, such as from GamePanel.toJson(), and
+     * is not changed after this call
+     * MODIFIES: this, file system
+     * EFFECTS: Saves snapshot to slot in full and records it in the index;
+     * throws IOException if it cannot be written.
+     */
+    public synchronized void save(String slot, JSONObject snapshot) throws IOException {
+        Files.createDirectories(directory);
+        index(); // Read, or rebuilt, before this save is on disk
+        saver(slot).save(snapshot);
+        record(entryFor(slot, snapshot, System.currentTimeMillis()));
+    }
+
+    /*
+     * REQUIRES: called on the thread that changes game
+     * MODIFIES: this
+     * EFFECTS: Returns a save of game to slot, holding only what changed since
+     * the last one captured for slot unless a snapshot is due, to be written
+     * later by commit; throws IllegalArgumentException if slot is not a valid
+     * slot name.
+     */
+    public Pending capture(String slot, GamePanel game) {
+        DeltaSaver.Change change = saver(slot).capture(game);
+        return new Pending(slot, change, entryFor(slot, game, System.currentTimeMillis()));
+    }
+
+    /*
+     * REQUIRES: every save captured for the slot before pending has been
+     * committed
+     * MODIFIES: this, file system
+     * EFFECTS: Writes pending and records it in the index; throws IOException
+     * if it cannot be written.
+     */
+    public synchronized void commit(Pending pending) throws IOException {
+        Files.createDirectories(directory);
+        index(); // Read, or rebuilt, before this save is on disk
+        saver(pending.slot).commit(pending.change);
+        record(pending.entry);
+    }
+
+    /*
+     * EFFECTS: Returns the incremental saver of slot, made the first time;
+     * throws IllegalArgumentException if slot is not a valid slot name.
+     */
+    private DeltaSaver saver(String slot) {
+        String path = pathOf(slot);
+        return savers.computeIfAbsent(slot, s -> new DeltaSaver(path));
+    }
+
+    /*
+     * EFFECTS: Reads the game in slot, or its newest autosave checkpoint if
+     * that is more recent, and returns it set to save to slot; throws
+     * IOException if it cannot be read.
+     */
+    public GamePanel load(String slot) throws IOException {
+        GamePanel game = new GameReader(Autosaver.newest(pathOf(slot))).read();
+        game.setSlot(slot);
+        return game;
+    }
+
+    /*
+     * EFFECTS: Reads the game state document in slot, or its newest autosave
+     * checkpoint if that is more recent; throws IOException if it cannot be
+     * read.
+     */
+    public JSONObject loadJson(String slot) throws IOException {
+        return new GameReader(Autosaver.newest(pathOf(slot))).readJson();
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Deletes slot: its save file, change log, backups and
+     * checkpoints, and its index entry; throws IOException if they cannot be
+     * deleted.
+     */
+    public synchronized void delete(String slot) throws IOException {
+        String path = pathOf(slot);
+        Files.deleteIfExists(Paths.get(path));
+        Files.deleteIfExists(DeltaLog.pathFor(path));
+        for (int generation = 1; Files.deleteIfExists(GameWriter.generationPath(path, generation)); generation++) {
+            // Deleted one more backup
+        }
+        for (int ring = 0; ring < Autosaver.DEFAULT_RING_SIZE; ring++) {
+            Files.deleteIfExists(Autosaver.checkpointPath(path, ring));
+        }
+        savers.remove(slot);
+        if (index().remove(slot) != null) {
+            writeIndex();
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the index entry for a slot holding game, saved at
+     * savedAt.
+     */
+    private static Entry entryFor(String slot, GamePanel game, long savedAt) {
+        Level level = game.getCurrentLevel();
+        return new Entry(slot, level == null ? 0 : level.getLevelNumber(), savedAt, game.getLevelCompleted());
+    }
+
+    /*
+     * EFFECTS: Returns the index entry for a slot holding snapshot, saved at
+     * savedAt.
+     */
+    private static Entry entryFor(String slot, JSONObject snapshot, long savedAt) {
+        JSONObject level = snapshot.optJSONObject("currentLevel");
+        JSONArray completedArray = snapshot.optJSONArray("levelCompleted");
+        boolean[] completed = new boolean[completedArray == null ? 0 : completedArray.length()];
+        for (int i = 0; i < completed.length; i++) {
+            completed[i] = completedArray.optBoolean(i);
+        }
+        return new Entry(slot, level == null ? 0 : level.optInt("levelNumber"), savedAt, completed);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the index, reading it the first time, or rebuilding it
+     * from the save files if there is no index file.
+     */
+    private Map<String, Entry> index() throws IOException {
+        if (entries == null) {
+            Map<String, Entry> read = new LinkedHashMap<>();
+            int lines = 0;
+            boolean torn = false;
+            try (BufferedReader in = Files.newBufferedReader(directory.resolve(INDEX_FILE), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("#")) {
+                        continue;
+                    }
+                    Entry entry = Entry.fromLine(line);
+                    if (entry != null) {
+                        read.put(entry.getSlot(), entry); // A later line replaces an earlier one
+                        lines++;
+                    } else {
+                        torn = true;
+                    }
+                }
+                entries = read;
+                indexLines = lines;
+            } catch (NoSuchFileException e) {
+                entries = rebuild();
+            }
+            if (torn) {
+                writeIndex(); // So the next line appended does not run on from the torn one
+            }
+        }
+        return entries;
+    }
+
+    /*
+     * MODIFIES: file system
+     * EFFECTS: Returns the index of the save files in the directory, reading
+     * each of them, and writes it to the index file. Save files that cannot
+     * be read are left out.
+     */
+    private Map<String, Entry> rebuild() throws IOException {
+        Map<String, Entry> rebuilt = new LinkedHashMap<>();
+        if (!Files.isDirectory(directory)) {
+            return rebuilt;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String slot = name.substring(0, name.length() - EXTENSION.length());
+                if (!isValidSlot(slot)) {
+                    continue;
+                }
+                try {
+                    JSONObject snapshot = loadJson(slot);
+                    long savedAt = Files.getLastModifiedTime(Paths.get(Autosaver.newest(pathOf(slot)))).toMillis();
+                    rebuilt.put(slot, entryFor(slot, snapshot, savedAt));
+                } catch (IOException | RuntimeException e) {
+                    EventLog.getInstance().log(Event.Severity.WARN, "save", "Left {} out of the save index: {}",
+                            file, e.getMessage());
+                }
+            }
+        }
+        entries = rebuilt;
+        writeIndex();
+        return rebuilt;
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Records entry in the index, appending its line to the index
+     * file, or compacting the file if superseded lines make up half of it;
+     * throws IOException if it cannot be written.
+     */
+    private void record(Entry entry) throws IOException {
+        index().put(entry.getSlot(), entry);
+        Path index = directory.resolve(INDEX_FILE);
+        if (!Files.exists(index) || indexLines >= COMPACT_MIN_LINES && indexLines >= 2 * entries.size()) {
+            writeIndex();
+            return;
+        }
+        ByteBuffer line = ByteBuffer.wrap((entry.toLine() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+            channel.force(false);
+        }
+        indexLines++;
+    }
+
+    /*
+     * MODIFIES: this, file system
+     * EFFECTS: Replaces the index file with the entries in memory, atomically
+     * and forced to disk, so a crash leaves the old index or the new one.
+     */
+    private void writeIndex() throws IOException {
+        Files.createDirectories(directory);
+        Path index = directory.resolve(INDEX_FILE);
+        Path temp = directory.resolve(INDEX_FILE + GameWriter.TEMP_SUFFIX);
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(INDEX_HEADER);
+            out.newLine();
+            for (Entry entry : entries.values()) {
+                out.write(entry.toLine());
+                out.newLine();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING);
+        }
+        indexLines = entries.size();
+    }
+}
@@ -1,5 +1,8 @@
 package ui;
 
+import persistence.SaveStore;
+
+import java.util.List;
 import java.util.Scanner;
 // Represents the console-based menu for the Maze Game, allowing the player to start a game, view instructions, or exit.
 
@@ -21,6 +24,54 @@ public class ConsoleMenu {
         Scanner in = new Scanner(System.in);
         return in.nextInt();
     }
+    /*
+     * REQUIRES: entries is not empty
+     * EFFECTS: Lists the saved slots and prompts the user to pick one by
+     * number. Returns the chosen slot; Enter picks the first.
+     */
+    public static String chooseSlot(List<SaveStore.Entry> entries) {
+        System.out.println("Saved games:");
+        for (int i = 0; i < entries.size(); i++) {
+            System.out.println((i + 1) + ". " + entries.get(i));
+        }
+        Scanner in = new Scanner(System.in);
+        while (true) {
+            System.out.print("Choose a saved game (1-" + entries.size() + "): ");
+            String input = in.nextLine().trim();
+            if (input.isEmpty()) {
+                return entries.get(0).getSlot();
+            }
+            try {
+                int choice = Integer.parseInt(input);
+                if (choice >= 1 && choice <= entries.size()) {
+                    return entries.get(choice - 1).getSlot();
+                }
+            } catch (NumberFormatException e) {
+                // Not a number; ask again
+            }
+            System.out.println("Invalid choice. Please enter a number from the list.");
+        }
+    }
+
+    /*
+     * EFFECTS: Prompts the user for a save slot name. Returns the name typed,
+     * or current if Enter is pressed.
+     */
+    public static String askSlot(String current) {
+        Scanner in = new Scanner(System.in);
+        while (true) {
+            System.out.print("Save to slot [" + current + "]: ");
+            String input = in.nextLine().trim();
+            if (input.isEmpty()) {
+                return current;
+            }
+            if (SaveStore.isValidSlot(input)) {
+                return input;
+            }
+            System.out.println("A slot name is 1 to 64 letters, digits, '_' or '-'.");
+        }
+    }
+
     /*
      * EFFECTS: Displays the instructions on how to play the Maze Game.
      */
@@ -0,0 +1,170 @@
+package ui;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Represents a renderer that draws the maze on the console one frame at a time.
+ * Each frame is built in a reusable character buffer, one glyph and a space per
+ * cell, and written with a single call.
+ *
+ * On ANSI terminals the board is drawn once at the top of the screen, the lines
+ * below it are set up as a scrolling region for prompts and messages, and
+ * later frames only rewrite the cells that changed since the previous frame.
+ * Elsewhere every frame is printed in full.
+ */
+public class ConsoleRenderer {
+    private static final String CSI = "\u001b["; // Starts an ANSI control sequence
+    private static final String SAVE_CURSOR = "\u001b7";
+    private static final String RESTORE_CURSOR = "\u001b8";
+
+    private final PrintStream out; // Where frames are written
+    private final boolean ansi; // True if out understands ANSI cursor control
+    private final StringBuilder changes; // Reused buffer for the control sequences of a diff frame
+    private int width; // Number of columns in the frame
+    private int height; // Number of rows in the frame
+    private char[] frame; // Frame being built: per row, a glyph and a space per cell, then a newline
+    private char[] shown; // Frame currently on screen (ANSI only), or null if the board must be redrawn
+
+    /*
+     * REQUIRES: out is not null
+     * EFFECTS: Constructs a renderer that writes to out, using ANSI cursor
+     * control only if ansi is true.
+     */
+    public ConsoleRenderer(PrintStream out, boolean ansi) {
+        this.out = out;
+        this.ansi = ansi;
+        this.changes = new StringBuilder();
+    }
+
+    /*
+     * EFFECTS: Returns a renderer for System.out that uses ANSI cursor control
+     * when running in an interactive terminal that supports it. The system
+     * property "maze.ansi" (true/false) overrides the detection.
+     */
+    public static ConsoleRenderer forSystemOut() {
+        String override = System.getProperty("maze.ansi");
+        boolean ansi;
+        if (override != null) {
+            ansi = Boolean.parseBoolean(override);
+        } else {
+            String term = System.getenv("TERM");
+            ansi = System.console() != null && term != null && !term.equals("dumb");
+        }
+        return new ConsoleRenderer(System.out, ansi);
+    }
+
+    /*
+     * REQUIRES: width > 0, height > 0
+     * MODIFIES: this
+     * EFFECTS: Starts a frame of the given size. The buffer from the previous
+     * frame is reused when the size is unchanged; otherwise the next frame is
+     * drawn in full.
+     */
+    public void beginFrame(int width, int height) {
+        if (frame == null || width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            int rowLength = 2 * width + 1;
+            frame = new char[rowLength * height];
+            Arrays.fill(frame, ' ');
+            for (int y = 0; y < height; y++) {
+                frame[y * rowLength + rowLength - 1] = '\n';
+            }
+            shown = null;
+        }
+    }
+
+    /*
+     * REQUIRES: 0 <= x < width, 0 <= y < height of the current frame
+     * MODIFIES: this
+     * EFFECTS: Sets the glyph drawn for the cell at (x, y) in the current frame.
+     */
+    public void setCell(int x, int y, char glyph) {
+        frame[y * (2 * width + 1) + 2 * x] = glyph;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes the current frame: in full the first time (or always
+     * without ANSI support), otherwise only the cells that changed.
+     */
+    public void endFrame() {
+        if (!ansi) {
+            out.print(frame);
+        } else if (shown == null) {
+            drawBoard();
+        } else {
+            drawChanges();
+        }
+        out.flush();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Clears the screen, draws the whole frame at the top and makes the
+     * lines below it a scrolling region, leaving the cursor there.
+     */
+    private void drawBoard() {
+        changes.setLength(0);
+        changes.append(CSI).append("r"); // Reset any previous scrolling region
+        changes.append(CSI).append("2J").append(CSI).append("H");
+        out.print(changes);
+        out.print(frame);
+        changes.setLength(0);
+        changes.append(CSI).append(height + 2).append("r"); // Scroll only the lines below the board
+        changes.append(CSI).append(height + 2).append(";1H");
+        out.print(changes);
+        shown = frame.clone();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Rewrites only the cells whose glyph differs from the frame on
+     * screen, then puts the cursor back where the prompt left it.
+     */
+    private void drawChanges() {
+        changes.setLength(0);
+        int rowLength = 2 * width + 1;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * rowLength;
+            for (int x = 0; x < width; x++) {
+                int i = rowStart + 2 * x;
+                if (frame[i] != shown[i]) {
+                    if (changes.length() == 0) {
+                        changes.append(SAVE_CURSOR);
+                    }
+                    changes.append(CSI).append(y + 1).append(';').append(2 * x + 1).append('H').append(frame[i]);
+                    shown[i] = frame[i];
+                }
+            }
+        }
+        if (changes.length() > 0) {
+            changes.append(RESTORE_CURSOR);
+            out.print(changes);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Forces the next frame to be drawn in full.
+     */
+    public void invalidate() {
+        shown = null;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Hands the whole screen back to normal output: removes the
+     * scrolling region set up for the board, and draws the next frame in full.
+     */
+    public void release() {
+        if (ansi && shown != null) {
+            out.print(CSI + "r");
+            out.print(CSI + "999;1H");
+            out.println();
+            out.flush();
+        }
+        shown = null;
+    }
+}
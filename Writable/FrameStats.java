@@ -0,0 +1,174 @@
+package ui;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents live rendering statistics for the performance overlay: frame
+ * rate, percentiles of the time between frames and of the time spent painting,
+ * and garbage collection pauses reported by the JVM. Frame and paint times are
+ * recorded on the event dispatch thread; GC pauses arrive on a JMX thread.
+ */
+public class FrameStats {
+    private static final int HISTORY = 240; // Number of recent frames kept, about 4 seconds at 60 FPS
+    private static final long GC_WINDOW_MILLIS = 10_000; // GC pauses older than this are forgotten
+
+    private final long[] frameNanos; // Recent times between frames, as a ring
+    private final long[] paintNanos; // Recent paint durations, as a ring
+    private int frames; // Number of frame times recorded, up to HISTORY
+    private int nextFrame; // Ring index for the next frame time
+    private int paints; // Number of paint durations recorded, up to HISTORY
+    private int nextPaint; // Ring index for the next paint duration
+    private final ArrayDeque<long[]> gcPauses; // {end time in ms, duration in ms} of recent GCs, oldest first
+    private final NotificationListener gcListener; // Receives GC notifications from the JVM
+    private final List<NotificationEmitter> gcEmitters; // Collectors gcListener is registered with
+
+    /*
+     * EFFECTS: Constructs empty statistics.
+     */
+    public FrameStats() {
+        frameNanos = new long[HISTORY];
+        paintNanos = new long[HISTORY];
+        gcPauses = new ArrayDeque<>();
+        gcEmitters = new ArrayList<>();
+        gcListener = this::gcNotification;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Starts listening for garbage collections, if not already.
+     */
+    public void open() {
+        if (!gcEmitters.isEmpty()) {
+            return;
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) collector;
+                emitter.addNotificationListener(gcListener, null, null);
+                gcEmitters.add(emitter);
+            }
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records the time between two frames.
+     */
+    public void recordFrame(long nanos) {
+        frameNanos[nextFrame] = nanos;
+        nextFrame = (nextFrame + 1) % HISTORY;
+        frames = Math.min(frames + 1, HISTORY);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records how long one paint took.
+     */
+    public void recordPaint(long nanos) {
+        paintNanos[nextPaint] = nanos;
+        nextPaint = (nextPaint + 1) % HISTORY;
+        paints = Math.min(paints + 1, HISTORY);
+    }
+
+    /*
+     * EFFECTS: Returns the number of frames per second over the most recent
+     * second of recorded frames, or 0 if none were recorded.
+     */
+    public double getFps() {
+        long total = 0;
+        int counted = 0;
+        for (int i = 1; i <= frames && total < TimeUnit.SECONDS.toNanos(1); i++) {
+            total += frameNanos[(nextFrame - i + HISTORY) % HISTORY];
+            counted++;
+        }
+        return total == 0 ? 0 : counted * 1e9 / total;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Handles a notification from a garbage collector, remembering the
+     * pause it reports.
+     */
+    private void gcNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        synchronized (gcPauses) {
+            gcPauses.addLast(new long[] { System.currentTimeMillis(), info.getGcInfo().getDuration() });
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the lines shown by the performance overlay.
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("FPS %.1f", getFps()));
+        lines.add(String.format("frame  p50 %.1f  p95 %.1f  p99 %.1f ms", percentile(frameNanos, frames, 50),
+                percentile(frameNanos, frames, 95), percentile(frameNanos, frames, 99)));
+        lines.add(String.format("paint  p50 %.2f  p95 %.2f  p99 %.2f ms", percentile(paintNanos, paints, 50),
+                percentile(paintNanos, paints, 95), percentile(paintNanos, paints, 99)));
+
+        long count = 0;
+        long total = 0;
+        long max = 0;
+        synchronized (gcPauses) {
+            long cutoff = System.currentTimeMillis() - GC_WINDOW_MILLIS;
+            while (!gcPauses.isEmpty() && gcPauses.peekFirst()[0] < cutoff) {
+                gcPauses.removeFirst();
+            }
+            for (long[] pause : gcPauses) {
+                count++;
+                total += pause[1];
+                max = Math.max(max, pause[1]);
+            }
+        }
+        lines.add(String.format("GC %ds  %d pauses  max %d ms  total %d ms", GC_WINDOW_MILLIS / 1000, count, max,
+                total));
+        return lines;
+    }
+
+    /*
+     * EFFECTS: Returns the p-th percentile of the first count values in ring,
+     * in milliseconds, or 0 if there are none.
+     */
+    private static double percentile(long[] ring, int count, double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(ring, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100 * count) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Stops listening for garbage collections.
+     */
+    public void close() {
+        for (NotificationEmitter emitter : gcEmitters) {
+            try {
+                emitter.removeNotificationListener(gcListener);
+            } catch (ListenerNotFoundException e) {
+                // Already removed
+            }
+        }
+        gcEmitters.clear();
+    }
+}
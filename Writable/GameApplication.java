@@ -1,21 +1,32 @@
 package ui;
 
-import persistence.GameWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import persistence.EventJournal;
+import persistence.SaveStore;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
 
 // Represents the main application for the Maze Game, handling the game loop and user interaction through the console.
 public class GameApplication {
     private GamePanel gamePanel;
-    private static final String SAVE_FILE = "./data/gamePanelState.json"; // Path for saving/loading the game
+    private static final String JOURNAL_DIR = "./data/journal"; // Directory of the binary event journal
 
     public GameApplication() {
         gamePanel = new GamePanel();
     }
     /*
-     * EFFECTS: Initializes the GameApplication and starts the game loop.
+     * EFFECTS: Initializes the GameApplication, streams events to the journal in
+     * JOURNAL_DIR when it can be opened, and starts the game loop.
      */
 
     public static void main(String[] args) {
+        try {
+            EventJournal.attach(Paths.get(JOURNAL_DIR));
+        } catch (IOException e) {
+            System.out.println("Event journal disabled: " + e.getMessage());
+        }
         GameApplication app = new GameApplication();
         app.run();
     }
@@ -44,7 +55,7 @@ public class GameApplication {
                     break;
 
                 case 3: // Load Game
-                    if (gamePanel.loadGameState()) { // Use the renamed method
+                    if (chooseSlot() && gamePanel.loadGameState()) { // Use the renamed method
                         if (gamePanel.isLevelInProgress()) {
                             System.out.println("Resuming previous level...");
                             gamePanel.playLevel(); // Resume the loaded game
@@ -67,14 +78,36 @@ public class GameApplication {
     }
 
     /*
-     * EFFECTS: Saves the current game state to a file using GameWriter.
+     * MODIFIES: this
+     * EFFECTS: Lists the saved slots from the save index and asks which to
+     * load, setting it as the game's slot. Returns false if there is nothing
+     * to load or the index cannot be read.
+     */
+    private boolean chooseSlot() {
+        try {
+            List<SaveStore.Entry> entries = SaveStore.getInstance().list();
+            if (entries.isEmpty()) {
+                System.out.println("No saved game found!");
+                return false;
+            }
+            gamePanel.setSlot(ConsoleMenu.chooseSlot(entries));
+            return true;
+        } catch (IOException e) {
+            System.out.println("Unable to list the saved games: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Asks for the save slot, offering the game's current one, and
+     * saves the level completion status to it.
      */
     private void saveGame() {
-        GameWriter writer = new GameWriter(SAVE_FILE);
+        gamePanel.setSlot(ConsoleMenu.askSlot(gamePanel.getSlot()));
+        JSONObject status = new JSONObject().put("levelCompleted", new JSONArray(gamePanel.getLevelCompleted()));
         try {
-            writer.open();
-            writer.writeGameCompleteStatus(gamePanel);
-            writer.close();
+            SaveStore.getInstance().save(gamePanel.getSlot(), status);
             System.out.println("Game saved successfully.");
         } catch (IOException e) {
             System.out.println("Unable to save the game: " + e.getMessage());
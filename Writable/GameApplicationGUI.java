@@ -3,12 +3,15 @@ package ui;
 import javax.swing.*;
 import java.awt.*;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
 
 import model.Event;
 import model.EventLog;
 import model.Level;
-import persistence.GameReader;
-import persistence.GameWriter;
+import persistence.AsyncGameStore;
+import persistence.EventJournal;
+import persistence.SaveStore;
 
 // Represents the main GUI application for the Maze Game. 
 // It manages different views such as the main menu, level selection, 
@@ -17,7 +20,7 @@ import persistence.GameWriter;
 public class GameApplicationGUI extends JFrame {
     private CardLayout cardLayout; // Manages different panels in the GUI
     private JPanel mainPanel; // Main container for all panels
-    private static final String SAVE_FILE = "./data/gamePanelState.json"; // File path for saving/loading game state
+    private static final String JOURNAL_DIR = "./data/journal"; // Directory of the binary event journal
     private GamePanel gamePanel; // GamePanel instance to manage game state
     private LevelSelectionPanel levelSelectionPanel; // For selecting difficulty level
 
@@ -75,39 +78,80 @@ public class GameApplicationGUI extends JFrame {
                 JOptionPane.WARNING_MESSAGE);
 
         if (choice == JOptionPane.YES_OPTION) {
-            saveGame(); // Save the game state
-            for (Event event : EventLog.getInstance()) {
-                System.out.println(event);
-            }
-            System.exit(0); // Exit the application
+            saveGame("Game saved successfully!", this::exit); // Save, then exit
         } else if (choice == JOptionPane.NO_OPTION) {
-            gamePanel.clearGameState(); // Clear the game state
-            for (Event event : EventLog.getInstance()) {
-                System.out.println(event);
-            }
-            System.exit(0); // Exit without saving
+            // No checkpoint may outlive the cleared save, so they go first, without blocking the window
+            gamePanel.getAutosaver().clear(new AsyncGameStore.Callback<>() {
+                @Override
+                public void onSuccess(Void result) {
+                    SwingUtilities.invokeLater(() -> clearSave());
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    SwingUtilities.invokeLater(() -> clearSave()); // Logged; the save is cleared regardless
+                }
+            });
         }
         // If cancel, do nothing
     }
 
     /**
-     * REQUIRES: None
-     * MODIFIES: SAVE_FILE
-     * EFFECTS: Saves the current game state to a JSON file. Displays a message
-     * indicating success or failure.
+     * MODIFIES: the game's save slot
+     * EFFECTS: Deletes the game's save slot in the background, keeping the
+     * window responsive. Once deleted, displays a message indicating success
+     * or failure and then exits.
      */
-    private void saveGame() {
-        GameWriter writer = new GameWriter(SAVE_FILE);
-        try {
-            writer.open();
-            writer.write(gamePanel); // Save the current game state
-            writer.close();
-            JOptionPane.showMessageDialog(this, "Game saved successfully!", "Save Game",
-                    JOptionPane.INFORMATION_MESSAGE);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Failed to save game: " + e.getMessage(), "Save Game",
-                    JOptionPane.ERROR_MESSAGE);
+    private void clearSave() {
+        AsyncGameStore.getInstance().delete(gamePanel.getSlot(), new AsyncGameStore.Callback<>() {
+            @Override
+            public void onSuccess(Void result) {
+                JOptionPane.showMessageDialog(GameApplicationGUI.this, "Game state cleared successfully.",
+                        "Save Game", JOptionPane.INFORMATION_MESSAGE);
+                exit();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                JOptionPane.showMessageDialog(GameApplicationGUI.this, "Failed to clear game: " + e.getMessage(),
+                        "Save Game", JOptionPane.ERROR_MESSAGE);
+                exit();
+            }
+        });
+    }
+
+    /**
+     * EFFECTS: Prints the event log and exits the application.
+     */
+    private void exit() {
+        for (Event event : EventLog.getInstance()) {
+            System.out.println(event);
         }
+        System.exit(0);
+    }
+
+    /**
+     * MODIFIES: the game's save slot
+     * EFFECTS: Writes the game to its save slot in the background, keeping the
+     * window responsive. Once written, displays a message indicating success or
+     * failure and then runs after.
+     */
+    private void saveGame(String successMessage, Runnable after) {
+        AsyncGameStore.getInstance().save(gamePanel, gamePanel.getSlot(), new AsyncGameStore.Callback<>() {
+            @Override
+            public void onSuccess(Void result) {
+                JOptionPane.showMessageDialog(GameApplicationGUI.this, successMessage, "Save Game",
+                        JOptionPane.INFORMATION_MESSAGE);
+                after.run();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                JOptionPane.showMessageDialog(GameApplicationGUI.this, "Failed to save game: " + e.getMessage(),
+                        "Save Game", JOptionPane.ERROR_MESSAGE);
+                after.run();
+            }
+        });
     }
 
     /**
@@ -139,30 +183,83 @@ public class GameApplicationGUI extends JFrame {
     }
 
     /**
-     * REQUIRES: SAVE_FILE exists and contains a valid game state
      * MODIFIES: this, gamePanel
-     * EFFECTS: Loads the game state from a JSON file. Displays an error message
-     * if the file does not exist or cannot be loaded.
+     * EFFECTS: Lists the saved slots from the save index in the background and
+     * lets the user pick one, then loads it. Only the index is read until a
+     * slot is picked. Displays an error message if there are no saves or the
+     * index cannot be read.
      */
     private void loadGame() {
-        try {
-            GameReader reader = new GameReader(SAVE_FILE);
-            gamePanel = reader.read(); // Load GamePanel from save
-            Level loadedLevel = gamePanel.getCurrentLevel();
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        AsyncGameStore.getInstance().list(new AsyncGameStore.Callback<>() {
+            @Override
+            public void onSuccess(List<SaveStore.Entry> entries) {
+                setCursor(Cursor.getDefaultCursor());
+                if (entries.isEmpty()) {
+                    JOptionPane.showMessageDialog(GameApplicationGUI.this, "No saved game found!", "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                } else if (entries.size() == 1) {
+                    loadSlot(entries.get(0).getSlot());
+                } else {
+                    Object choice = JOptionPane.showInputDialog(GameApplicationGUI.this, "Choose a saved game:",
+                            "Load Game", JOptionPane.QUESTION_MESSAGE, null, entries.toArray(), entries.get(0));
+                    if (choice != null) {
+                        loadSlot(((SaveStore.Entry) choice).getSlot());
+                    }
+                }
+            }
 
-            if (loadedLevel == null) {
-                JOptionPane.showMessageDialog(this, "No saved game found!", "Error", JOptionPane.ERROR_MESSAGE);
-                return;
+            @Override
+            public void onFailure(Exception e) {
+                setCursor(Cursor.getDefaultCursor());
+                JOptionPane.showMessageDialog(GameApplicationGUI.this, "Failed to list saved games: "
+                        + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
+        });
+    }
 
-            GamePanelGUI gamePanelGUI = new GamePanelGUI(gamePanel, loadedLevel); // Create GamePanelGUI
-            gamePanelGUI.loadGame(loadedLevel); // Sync the GUI with loaded data
-            mainPanel.add(gamePanelGUI, "Game");
-            cardLayout.show(mainPanel, "Game"); // Display the game panel
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Failed to load game: " + e.getMessage(), "Error",
-                    JOptionPane.ERROR_MESSAGE);
+    /**
+     * MODIFIES: this, gamePanel
+     * EFFECTS: Loads the game saved in slot, or its newest autosave checkpoint
+     * if that is more recent, in the background, then shows the loaded game.
+     * Displays an error message if it cannot be loaded.
+     */
+    private void loadSlot(String slot) {
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        AsyncGameStore.getInstance().load(slot, new AsyncGameStore.Callback<>() {
+            @Override
+            public void onSuccess(GamePanel loaded) {
+                setCursor(Cursor.getDefaultCursor());
+                showLoadedGame(loaded);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                setCursor(Cursor.getDefaultCursor());
+                JOptionPane.showMessageDialog(GameApplicationGUI.this, "Failed to load game: " + e.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    /**
+     * MODIFIES: this, gamePanel
+     * EFFECTS: Makes loaded the current game and displays it, or displays an
+     * error message if it has no level in progress.
+     */
+    private void showLoadedGame(GamePanel loaded) {
+        gamePanel = loaded;
+        Level loadedLevel = gamePanel.getCurrentLevel();
+
+        if (loadedLevel == null) {
+            JOptionPane.showMessageDialog(this, "No saved game found!", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+
+        GamePanelGUI gamePanelGUI = new GamePanelGUI(gamePanel, loadedLevel); // Create GamePanelGUI
+        gamePanelGUI.loadGame(loadedLevel); // Sync the GUI with loaded data
+        mainPanel.add(gamePanelGUI, "Game");
+        cardLayout.show(mainPanel, "Game"); // Display the game panel
     }
 
     /**
@@ -186,9 +283,15 @@ public class GameApplicationGUI extends JFrame {
     /**
      * REQUIRES: None
      * MODIFIES: None
-     * EFFECTS: Launches the Maze Game application GUI.
+     * EFFECTS: Launches the Maze Game application GUI, streaming events to the
+     * journal in JOURNAL_DIR when it can be opened.
      */
     public static void main(String[] args) {
+        try {
+            EventJournal.attach(Paths.get(JOURNAL_DIR));
+        } catch (IOException e) {
+            System.out.println("Event journal disabled: " + e.getMessage());
+        }
         new GameApplicationGUI();
     }
 }
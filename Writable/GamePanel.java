@@ -1,19 +1,30 @@
 package ui;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import model.Direction;
+import model.ExploredMap;
+import model.FieldOfView;
 import model.Player;
-import persistence.GameReader;
-import persistence.GameWriter;
+import model.Replay;
+import persistence.Autosaver;
+import persistence.JsonSink;
+import persistence.ReplayFile;
+import persistence.SaveStore;
 import persistence.Writable;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 import model.Item;
 import model.Level;
-import java.util.Set;
 
 /**
  * Represents the game panel responsible for handling the game logic, including
@@ -22,11 +33,19 @@ import java.util.Set;
  */
 public class GamePanel implements Writable {
     private GamePanel gamePanel;
+    private String slot = SaveStore.DEFAULT_SLOT; // Save slot the game is saved to
+    private Autosaver autosaver = newAutosaver(slot); // Checkpoints the game during play
     private Level currentLevel; // The current level being played
     private boolean[] levelCompleted = new boolean[] { false, false, false }; // Tracks completion of each level
-    private static final String SAVE_FILE = "./data/gamePanelState.json";
+    private static final String MOVE_FILE_PREFIX = "file "; // Move command that plays the moves in a file
+    private static final char SAVE_KEY = 'p'; // Key that saves the game when playing with single keys
+    private static final String REPLAY_DIR_PROPERTY = "maze.replayDir"; // System property enabling replays
+    private static final String CAUGHT_MESSAGE = "You have collided with a ghost! Sent back to the entrance.";
+    static final long GHOST_STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(400); // Ghost pace when it moves on a clock
     private boolean resumedGame; // Indicates if the game is being resumed
     private boolean isLevelInProgress; // Tracks if a level is in progress
+    private ReplayFile.Recorder recorder; // Records the level being played, or null if it is not recorded
+    private final ConsoleRenderer renderer = ConsoleRenderer.forSystemOut(); // Draws the maze on the console
     Scanner in = new Scanner(System.in); // Scanner for user input
 
     /**
@@ -52,7 +71,7 @@ public class GamePanel implements Writable {
                 levelNumber = askLevel();
             }
             in.nextLine(); // Consume the line break
-            currentLevel = new Level(levelNumber);
+            currentLevel = newLevel(levelNumber);
         }
 
         playLevel();
@@ -68,7 +87,7 @@ public class GamePanel implements Writable {
                     levelNumber = askLevel();
                 }
                 in.nextLine(); // Consume the line break
-                currentLevel = new Level(levelNumber);
+                currentLevel = newLevel(levelNumber);
                 playLevel();
                 currentLevel = null;
             }
@@ -81,6 +100,19 @@ public class GamePanel implements Writable {
         this.gamePanel = this; // Point to itself for CUI logic
     }
 
+    /**
+     * REQUIRES: levelCompleted is not null
+     * EFFECTS: Constructs a game restored from a save, with currentLevel in
+     * play (null if none) and the given progress. No level is generated.
+     */
+    public GamePanel(Level currentLevel, boolean[] levelCompleted, boolean levelInProgress, boolean resumedGame) {
+        this.currentLevel = currentLevel;
+        this.levelCompleted = levelCompleted;
+        this.isLevelInProgress = levelInProgress;
+        this.resumedGame = resumedGame;
+        this.gamePanel = this; // Point to itself for CUI logic
+    }
+
     /**
      * EFFECTS: Returns true if the selected level is available to play. Level 1 is
      * always available,
@@ -150,195 +182,333 @@ public class GamePanel implements Writable {
     /**
      * MODIFIES: this
      * EFFECTS: Plays the current level, allowing the player to move and interact
-     * with items in the maze.
+     * with items in the maze. In an interactive terminal each WASD key moves the
+     * player at once; otherwise moves are typed as commands.
      * Ends the level when the player finds the key and reaches the exit.
      */
-    @SuppressWarnings("methodlength")
     public void playLevel() {
         this.setLevelInProgress(true); // Mark the game as in progress
-        int[] exit = currentLevel.getMaze().getExit();
-        while (!currentLevel.isCompleted()) {
-            displayMaze();
+        RawKeyInput keys = RawKeyInput.open();
+        if (keys != null) {
+            try {
+                playWithKeys(keys);
+            } finally {
+                keys.close();
+            }
+        }
+        playWithCommands(); // Also finishes the level if the terminal stops delivering keys
+        renderer.release(); // Give the whole screen back to the menus
+        closeReplay(); // The level is over
+    }
 
-            while (true) {
-                String move = askMove();
-                if (move.equals("save")) {
-                    resumedGame = true;
-                    saveGame(); // Save the game state
-                    continue;
-                }
-                if (!processMove(move)) {
-                    System.out.println("Invalid move or ran into a wall. Try again.");
+    /**
+     * MODIFIES: this, file system
+     * EFFECTS: Returns a new level generated from a fresh seed. If the system
+     * property maze.replayDir names a directory, the level is recorded there
+     * as a replay file that ReplayEngine can play back; if the file cannot be
+     * created, the level is played without recording.
+     */
+    private Level newLevel(int levelNumber) {
+        closeReplay();
+        long seed = new Random().nextLong();
+        String directory = System.getProperty(REPLAY_DIR_PROPERTY);
+        if (directory != null) {
+            Path path = Paths.get(directory,
+                    "level" + levelNumber + "-" + System.currentTimeMillis() + ReplayFile.SUFFIX);
+            try {
+                Files.createDirectories(path.getParent());
+                recorder = new ReplayFile.Recorder(path, levelNumber, seed);
+            } catch (IOException e) {
+                System.out.println("Unable to record a replay: " + e.getMessage());
+            }
+        }
+        return new Level(levelNumber, new Random(seed));
+    }
+
+    /**
+     * MODIFIES: this
+     * EFFECTS: Records input in the replay of the current level, if it is
+     * being recorded.
+     */
+    private void record(int input) {
+        if (recorder != null) {
+            recorder.record(input);
+        }
+    }
+
+    /**
+     * MODIFIES: this, file system
+     * EFFECTS: Finishes the replay being recorded, if any.
+     */
+    private void closeReplay() {
+        if (recorder != null) {
+            recorder.close();
+            recorder = null;
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * EFFECTS: Plays the current level one key at a time: WASD moves the player
+     * as soon as it is pressed and SAVE_KEY saves the game. The ghost keeps
+     * moving on its own clock while the game waits for keys, parked until the
+     * next key or the ghost's next step. Returns when the level is completed or
+     * the terminal stops delivering keys.
+     */
+    private void playWithKeys(RawKeyInput keys) {
+        System.out.println("Move with W/A/S/D, save with " + Character.toUpperCase(SAVE_KEY) + ".");
+        long nextGhostStep = System.nanoTime() + GHOST_STEP_NANOS;
+        displayMaze();
+        while (currentLevel != null && !currentLevel.isCompleted() && keys.isOpen()) {
+            boolean hasGhost = currentLevel.getLevelNumber() > 2 && currentLevel.getGhost() != null;
+            // Wake for the ghost's next step and for a checkpoint falling due while the player waits
+            int key = keys.nextKey(Math.min(hasGhost ? nextGhostStep : Long.MAX_VALUE, autosaver.nextDue()));
+            if (key < 0) {
+                autosaver.tick(); // Checkpoints moves left unsaved while the player waits
+                if (hasGhost && System.nanoTime() - nextGhostStep >= 0) {
+                    record(Replay.GHOST);
+                    if (currentLevel.moveGhost()) {
+                        System.out.println(CAUGHT_MESSAGE);
+                    }
+                    nextGhostStep += GHOST_STEP_NANOS;
                     displayMaze();
-                } else {
-                    if (currentLevel.getLevelNumber() > 2) {
-                        currentLevel.getGhost().moveToNeighbor();
+                }
+                continue;
+            }
+            Direction direction = Direction.fromKey((char) key);
+            if (direction != null) {
+                if (currentLevel.tryMove(direction)) {
+                    record(Replay.move(direction));
+                    if (!resolveStep(false)) {
+                        displayMaze();
                     }
-                    break;
+                    autosaver.moved(1);
                 }
+            } else if (Character.toLowerCase((char) key) == SAVE_KEY) {
+                resumedGame = true;
+                saveGame();
             }
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * EFFECTS: Plays the current level from typed commands. Each prompt accepts
+     * a single move, a string of moves such as "wwwddsa", or "file <path>" to
+     * play the moves in a file; the maze is only redrawn once all of them have
+     * been applied.
+     */
+    private void playWithCommands() {
+        while (currentLevel != null && !currentLevel.isCompleted()) {
+            displayMaze();
 
-            checkForItem(currentLevel.getKey(), "key");
-            if (currentLevel.getLevelNumber() != 1) {
-                checkForItem(currentLevel.getFlashlight(), "flashlight");
+            autosaver.idle(); // Checkpoints moves left unsaved while the player types
+            String input = askMove();
+            if (input.equals("save")) {
+                resumedGame = true;
+                saveGame(); // Save the game state
+                continue;
             }
-            if (currentLevel.getLevelNumber() > 2) {
-                checkForGhostCollision();
+            List<Direction> moves = readMoves(input);
+            if (moves.isEmpty()) {
+                continue;
             }
-
-            if (exit[0] == currentLevel.getPlayer().getPlayerX()
-                    && exit[1] == currentLevel.getPlayer().getPlayerY()) {
-                if (currentLevel.getPlayer().hasKey()) {
-                    System.out.println("Congratulations! You have completed the level!");
-                    this.levelCompleted[currentLevel.getLevelNumber() - 1] = true;
-                    currentLevel.setCompleted();
-                    currentLevel.getPlayer().clearInventory();
-                    currentLevel = null;
-                    break; // Exit level
+            int applied = processMoves(moves);
+            autosaver.moved(applied);
+            if (currentLevel != null && applied < moves.size()) {
+                if (moves.size() == 1) {
+                    System.out.println("Invalid move or ran into a wall. Try again.");
                 } else {
-                    System.out.println("You need the key to exit. Find it first!");
+                    System.out.println("Ran into a wall after " + applied + " of " + moves.size() + " moves.");
                 }
             }
+        }
+    }
 
+    /**
+     * EFFECTS: Returns the moves described by input: the moves in the named file
+     * for "file <path>", otherwise the WASD keys in input. Prints a message and
+     * returns no moves if the file cannot be read or contains anything else.
+     */
+    private List<Direction> readMoves(String input) {
+        try {
+            if (input.startsWith(MOVE_FILE_PREFIX)) {
+                String path = input.substring(MOVE_FILE_PREFIX.length()).trim();
+                return Direction.parseMoves(Files.readString(Paths.get(path)));
+            }
+            return Direction.parseMoves(input);
+        } catch (IOException e) {
+            System.out.println("Unable to read moves: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid moves: " + e.getMessage());
         }
+        return List.of();
     }
 
     /**
      * MODIFIES: this
-     * EFFECTS: Checks if the player is at the same position as the specified item.
-     * If so, the player collects the item and a message is displayed.
+     * EFFECTS: Applies the moves in order without drawing anything, checking each
+     * one against the maze's walls. After every step the cells the player can see
+     * are remembered as explored, then the ghost moves and items, ghost
+     * collisions and the exit are checked, as for a single move. Stops at
+     * the first move into a wall or when the level is completed, and returns the
+     * number of moves applied.
      */
-    public void checkForItem(Item item, String itemType) {
-        int playerX = currentLevel.getPlayer().getPlayerX();
-        int playerY = currentLevel.getPlayer().getPlayerY();
-
-        if (item != null && item.getItemX() == playerX && item.getItemY() == playerY) {
-            System.out.println("You found the " + itemType + "!");
-            currentLevel.getPlayer().collectItem(item);
+    public int processMoves(List<Direction> moves) {
+        int applied = 0;
+        for (Direction direction : moves) {
+            if (!currentLevel.tryMove(direction)) {
+                break;
+            }
+            applied++;
+            record(Replay.step(direction));
+            if (currentLevel.getLevelNumber() > 1) {
+                currentLevel.updateVisibility(); // Only the last step is drawn, but every step is seen
+            }
+            if (resolveStep(true)) {
+                break; // Level completed, the remaining moves are discarded
+            }
         }
+        return applied;
     }
 
     /**
      * MODIFIES: this
-     * EFFECTS: Checks if the player is near the ghost (within a distance of 1
-     * unit).
-     * If a collision is detected, the player is sent back to the maze's entrance,
-     * and a message is displayed.
+     * EFFECTS: Resolves the consequences of one player step with
+     * Level.resolveStep, the rules replays follow too: if ghostFollows the
+     * ghost moves first, then items are collected, ghost collisions handled
+     * and the exit checked, with a message for each. Returns true if the step
+     * completed the level, in which case the current level is cleared.
      */
-    public void checkForGhostCollision() {
-        int playerX = currentLevel.getPlayer().getPlayerX();
-        int playerY = currentLevel.getPlayer().getPlayerY();
-        int ghostX = currentLevel.getGhost().getGhostX();
-        int ghostY = currentLevel.getGhost().getGhostY();
-
-        if (ghostX == playerX && ghostY == playerY) {
-            System.out.println("You have collided with a ghost! Sent back to the entrance.");
-            currentLevel.getPlayer().setPosition(currentLevel.getMaze().getEntrance()[0],
-                    currentLevel.getMaze().getEntrance()[1]);
+    private boolean resolveStep(boolean ghostFollows) {
+        Set<Level.Outcome> outcomes = currentLevel.resolveStep(ghostFollows);
+        if (outcomes.contains(Level.Outcome.KEY_FOUND)) {
+            System.out.println("You found the key!");
+        }
+        if (outcomes.contains(Level.Outcome.FLASHLIGHT_FOUND)) {
+            System.out.println("You found the flashlight!");
+        }
+        if (outcomes.contains(Level.Outcome.CAUGHT)) {
+            System.out.println(CAUGHT_MESSAGE);
+        }
+        if (outcomes.contains(Level.Outcome.EXIT_LOCKED)) {
+            System.out.println("You need the key to exit. Find it first!");
+        }
+        if (outcomes.contains(Level.Outcome.COMPLETED)) {
+            System.out.println("Congratulations! You have completed the level!");
+            this.levelCompleted[currentLevel.getLevelNumber() - 1] = true;
+            currentLevel.getPlayer().clearInventory();
+            currentLevel = null;
+            return true; // Exit level
         }
+        return false;
     }
 
     /**
-     * EFFECTS: Prompts the player to enter a move command (up, down, left, right,
-     * or their corresponding
-     * WASD keys). Ensures valid input and returns the move as a string. Continues
-     * prompting
-     * until valid input is provided.
-     * RETURNS: A string representing the player's chosen move.
+     * EFFECTS: Prompts the player to enter a move command: one or more WASD keys
+     * (e.g. "w" or "wwwddsa"), "file <path>" to play the moves stored in a file,
+     * or "save". Continues prompting until valid input is provided.
+     * RETURNS: The player's input, trimmed and in lower case.
      */
     public String askMove() {
         String move;
-        Set<String> validMoves = Set.of("w", "a", "s", "d", "save"); // Only WASD keys are valid moves
 
         while (true) {
-            System.out.println("Enter your move (up(W), down(S), left(A), right(D)) or Save (by typing 'save'): ");
+            System.out.println("Enter your move (up(W), down(S), left(A), right(D)), several moves (e.g. 'wwdd'), "
+                    + "'file <path>' or Save (by typing 'save'): ");
             move = in.nextLine().trim().toLowerCase();
 
-            if (validMoves.contains(move)) {
+            if (move.equals("save") || move.startsWith(MOVE_FILE_PREFIX) || isMoveString(move)) {
                 break;
             } else {
-                System.out.println("Invalid move. Please enter 'w', 'a', 's', 'd' or 'save'.");
-                displayMaze();
+                System.out.println("Invalid move. Please enter 'w', 'a', 's', 'd', a string of them, "
+                        + "'file <path>' or 'save'."); // The board has not changed, so it is not redrawn
             }
         }
         return move;
     }
 
     /**
-     * MODIFIES: this
-     * EFFECTS: Moves the player in the specified direction. If the player moves
-     * into a wall or outside
-     * the maze boundaries, the player's position is reset to the previous valid
-     * position
-     * and false is returned. Otherwise, returns true.
-     * RETURNS: true if the move is valid (not into a wall or out of bounds), false
-     * otherwise.
+     * EFFECTS: Returns true if input is a non-empty string of WASD keys.
      */
-    public boolean processMove(String move) {
-        int prevX = currentLevel.getPlayer().getPlayerX();
-        int prevY = currentLevel.getPlayer().getPlayerY();
-        currentLevel.getPlayer().move(move);
-
-        int[][] mazeStructure = currentLevel.getMaze().getMaze();
-
-        try {
-            // If the player moves into a wall, reset their position and return false
-            if (mazeStructure[currentLevel.getPlayer().getPlayerY()][currentLevel.getPlayer().getPlayerX()] == 1) {
-                currentLevel.getPlayer().setPosition(prevX, prevY);
+    private static boolean isMoveString(String input) {
+        if (input.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < input.length(); i++) {
+            if (Direction.fromKey(input.charAt(i)) == null) {
                 return false;
             }
-        } catch (ArrayIndexOutOfBoundsException e) {
-            // If the player moves out of the maze, reset their position and return false
-            currentLevel.getPlayer().setPosition(prevX, prevY);
-            return false;
         }
         return true;
     }
 
+    /**
+     * MODIFIES: this
+     * EFFECTS: Moves the player in the specified direction. If the player would
+     * move into a wall or outside the maze boundaries, the player stays where
+     * they are and false is returned. Otherwise, returns true.
+     * RETURNS: true if the move is valid (not into a wall or out of bounds), false
+     * otherwise.
+     */
+    public boolean processMove(String move) {
+        Direction direction = Direction.fromString(move);
+        return direction != null && currentLevel.tryMove(direction);
+    }
+
     /*
      * EFFECTS: Displays the current state of the maze on the console. The player's
      * position, ghost position,
      * and items (key, flashlight) are shown based on the player's visibility. The
      * maze is displayed
-     * with walls, paths, and unexplored areas.
+     * with walls, paths, remembered areas the player has seen before, and
+     * unexplored areas.
      */
     @SuppressWarnings("methodlength")
     public void displayMaze() {
         int[][] mazeStructure = currentLevel.getMaze().getMaze();
         int playerX = currentLevel.getPlayer().getPlayerX();
         int playerY = currentLevel.getPlayer().getPlayerY();
-        int visibilityDiameter = currentLevel.getPlayer().getVisibilityDiameter();
-
+        FieldOfView.Visibility visibility = currentLevel.getLevelNumber() > 1
+                ? currentLevel.updateVisibility() // Computed once per frame
+                : null;
+        ExploredMap explored = currentLevel.getExplored();
+        boolean hasKey = currentLevel.getPlayer().hasKey(); // Inventory does not change while drawing
+        boolean hasFlashlight = currentLevel.getPlayer().hasFlashlight();
+
+        renderer.beginFrame(mazeStructure[0].length, mazeStructure.length);
         for (int y = 0; y < mazeStructure.length; y++) {
             for (int x = 0; x < mazeStructure[y].length; x++) {
+                char glyph;
                 // Only show the dark effect for levels 2 and 3
-                if (currentLevel.getLevelNumber() == 1
-                        || (Math.abs(y - playerY) <= visibilityDiameter / 2
-                                && Math.abs(x - playerX) <= visibilityDiameter / 2)) {
+                if (currentLevel.getLevelNumber() == 1 || visibility.isVisible(x, y)) {
                     if (y == playerY && x == playerX) {
-                        System.out.print("P ");
+                        glyph = 'P';
                     } else if (currentLevel.getLevelNumber() > 2 && currentLevel.getGhost() != null
                             && (currentLevel.getGhost().getGhostX() == x && currentLevel.getGhost().getGhostY() == y)) {
-                        System.out.print("G ");
-                    } else if (currentLevel.getPlayer().hasKey() == false
+                        glyph = 'G';
+                    } else if (!hasKey
                             && (currentLevel.getKey().getItemX() == x && currentLevel.getKey().getItemY() == y)) {
-                        System.out.print("K ");
+                        glyph = 'K';
                     } else if (currentLevel.getLevelNumber() > 1
-                            && currentLevel.getPlayer().hasFlashlight() == false
+                            && !hasFlashlight
                             && (currentLevel.getFlashlight().getItemX() == x
                                     && currentLevel.getFlashlight().getItemY() == y)) {
-                        System.out.print("F ");
+                        glyph = 'F';
                     } else if (mazeStructure[y][x] == 1) {
-                        System.out.print("■ ");
+                        glyph = '■';
                     } else {
-                        System.out.print(". ");
+                        glyph = '.';
                     }
+                } else if (explored.isExplored(x, y)) {
+                    glyph = mazeStructure[y][x] == 1 ? '□' : '·'; // Remembered, shown dimmed
                 } else {
-                    System.out.print("* ");
+                    glyph = '*';
                 }
+                renderer.setCell(x, y, glyph);
             }
-            System.out.println();
         }
+        renderer.endFrame(); // One write per frame; only changed cells on ANSI terminals
     }
 
     /*
@@ -350,7 +520,7 @@ public class GamePanel implements Writable {
     public void startNextLevel() {
         int nextLevelNumber = currentLevel.getLevelNumber() + 1;
         if (nextLevelNumber <= 3) {
-            currentLevel = new Level(nextLevelNumber);
+            currentLevel = newLevel(nextLevelNumber);
             System.out.println("Starting Level " + nextLevelNumber);
             playLevel();
         } else {
@@ -394,6 +564,41 @@ public class GamePanel implements Writable {
         this.levelCompleted = levelCompleted;
     }
 
+    /**
+     * EFFECTS: Returns the save slot the game is saved to.
+     */
+    public String getSlot() {
+        return slot;
+    }
+
+    /**
+     * REQUIRES: SaveStore.isValidSlot(slot)
+     * MODIFIES: this
+     * EFFECTS: Sets the save slot the game is saved to, checkpointing into that
+     * slot from now on.
+     */
+    public void setSlot(String slot) {
+        if (!slot.equals(this.slot)) {
+            this.slot = slot;
+            this.autosaver = newAutosaver(slot);
+        }
+    }
+
+    /*
+     * EFFECTS: Returns an autosaver that checkpoints this game beside the save
+     * file of slot.
+     */
+    private Autosaver newAutosaver(String slot) {
+        return new Autosaver(SaveStore.getInstance().pathOf(slot), this::toJson);
+    }
+
+    /**
+     * EFFECTS: Returns the autosaver that checkpoints this game during play.
+     */
+    public Autosaver getAutosaver() {
+        return autosaver;
+    }
+
     /**
      * EFFECTS: Returns the levelInProgress.
      */
@@ -405,6 +610,13 @@ public class GamePanel implements Writable {
         this.isLevelInProgress = levelInProgress;
     }
 
+    /**
+     * EFFECTS: Returns true if the game is being resumed from a save.
+     */
+    public boolean isResumedGame() {
+        return resumedGame;
+    }
+
     /**
      * EFFECTS: Returns the player in the current level.
      */
@@ -421,29 +633,28 @@ public class GamePanel implements Writable {
      * saves only the level completion status.
      */
     public void saveGame() {
-        GameWriter writer = new GameWriter(SAVE_FILE);
         try {
             gamePanel.setLevelInProgress(true);
-            writer.open();
-            writer.write(this); // Save the entire game panel state, including current level and progress
+            SaveStore.getInstance().save(slot, this); // Save the state, including current level and progress
             System.out.println("Game saved successfully!");
-            writer.close();
         } catch (IOException e) {
             System.out.println("Unable to save the game: " + e.getMessage());
         }
     }
 
     /**
-     * MODIFIES: SAVE_FILE
-     * EFFECTS: Clears the game state by overwriting the save file with an empty
-     * JSON object.
+     * MODIFIES: the save slot
+     * EFFECTS: Clears the game state by deleting the slot, with its backups,
+     * autosave checkpoints and index entry, so it no longer appears in the
+     * list of saves.
      * This ensures that no residual game data is loaded during the next game
      * session.
-     * If the file cannot be written to, prints an error message to the console.
+     * If the files cannot be deleted, prints an error message to the console.
      */
     public void clearGameState() {
-        try (FileWriter writer = new FileWriter(SAVE_FILE)) {
-            writer.write("{}");
+        autosaver.clear();
+        try {
+            SaveStore.getInstance().delete(slot);
             System.out.println("Game state cleared successfully.");
         } catch (IOException e) {
             System.out.println("Failed to clear the game state: " + e.getMessage());
@@ -471,47 +682,61 @@ public class GamePanel implements Writable {
         return json;
     }
 
+    /*
+     * MODIFIES: sink
+     * EFFECTS: Writes the same object as toJson() straight to sink, streaming
+     * the current level rather than building it first.
+     */
+    @Override
+    public void writeTo(JsonSink sink) throws IOException {
+        sink.beginObject();
+        if (currentLevel != null) {
+            sink.name("currentLevel");
+            currentLevel.writeTo(sink);
+        }
+        sink.name("levelCompleted").beginArray();
+        for (boolean completed : levelCompleted) {
+            sink.value(completed);
+        }
+        sink.endArray();
+        sink.name("resumedGame").value(resumedGame);
+        sink.name("isLevelInProgress").value(isLevelInProgress());
+        sink.endObject();
+    }
+
     /*
      * MODIFIES: this
      * EFFECTS: Reconstructs the game state from a JSON object.
      */
     public static GamePanel fromJson(JSONObject json) {
-        GamePanel gamePanel = new GamePanel();
-
         // Restore level completion states
         JSONArray levelArray = json.getJSONArray("levelCompleted");
-        for (int i = 0; i < gamePanel.levelCompleted.length; i++) {
-            gamePanel.levelCompleted[i] = levelArray.getBoolean(i);
+        boolean[] levelCompleted = new boolean[] { false, false, false };
+        for (int i = 0; i < levelCompleted.length; i++) {
+            levelCompleted[i] = levelArray.getBoolean(i);
         }
         // Restore current level if it exists
+        Level currentLevel = null;
+        boolean levelInProgress = false;
         if (json.has("currentLevel")) {
-            gamePanel.currentLevel = Level.fromJson(json.getJSONObject("currentLevel"));
-            gamePanel.isLevelInProgress = json.getBoolean("isLevelInProgress"); // Restore level in progress
-        } else {
-            gamePanel.currentLevel = null;
-            gamePanel.isLevelInProgress = false;
-        }
-
-        // Restore resumedGame state
-        if (json.has("resumedGame")) {
-            gamePanel.resumedGame = json.getBoolean("resumedGame");
-        } else {
-            gamePanel.resumedGame = false; // Default to false if not present
+            currentLevel = Level.fromJson(json.getJSONObject("currentLevel"));
+            levelInProgress = json.getBoolean("isLevelInProgress"); // Restore level in progress
         }
+        // Restore resumedGame state, false if not present
+        boolean resumedGame = json.optBoolean("resumedGame", false);
 
-        return gamePanel;
+        return new GamePanel(currentLevel, levelCompleted, levelInProgress, resumedGame);
     }
 
     /*
      * MODIFIES: this
-     * EFFECTS: Loads the game state from a file, restoring level completion status
-     * and optionally the current level.
+     * EFFECTS: Loads the game state from the save slot, or its newest autosave
+     * checkpoint if that is more recent, restoring level completion status and
+     * optionally the current level.
      */
     public boolean loadGameState() {
-        GameReader reader = new GameReader(SAVE_FILE);
         try {
-            JSONObject json = new JSONObject(reader.readFile(SAVE_FILE));
-            GamePanel loadedGame = GamePanel.fromJson(json);
+            GamePanel loadedGame = SaveStore.getInstance().load(slot);
 
             this.levelCompleted = loadedGame.getLevelCompleted(); // Restore level completion
             this.setCurrentLevel(loadedGame.getCurrentLevel()); // Restore the current level//new
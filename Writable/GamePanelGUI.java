@@ -1,37 +1,58 @@
 package ui;
 
+import model.Direction;
+import model.DirtyCells;
+import model.ExploredMap;
+import model.FieldOfView;
 import model.Level;
 import model.Player;
 import model.Ghost;
 import model.Item;
-import persistence.GameWriter;
+import persistence.AsyncGameStore;
+import persistence.SaveStore;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents the GUI panel for playing the Maze Game.
  * Handles:
- * - Rendering the maze and player position
+ * - Rendering the maze and player position, in a render loop that moves the
+ *   ghost on a fixed timestep and glides the player and ghost between cells
  * - Player movement and interactions with items
  * - Inventory management
  * - Save game functionality
  */
-public class GamePanelGUI extends JPanel implements KeyListener {
-    private static final String SAVE_FILE = "./data/gamePanelState.json";
+public class GamePanelGUI extends JPanel implements KeyListener, RenderLoop.Scene {
     private GamePanel gamePanel; // Reference to the overall game panel
     private Level level; // Current game level
-    private JLabel[][] mazeCells;
+    private MazeCanvas mazeCanvas; // Paints the maze cells
+    private MinimapPanel minimap; // Overview of the whole maze
+    private final DirtyCells dirtyCells = new DirtyCells(); // Cells changed since the maze was last drawn
     private JLabel statusLabel; // Label for displaying messages
     private JButton saveButton; // Save button
     private JButton collectKeyButton; // Collect key button
     private JButton collectFlashlightButton; // Collect flashlight button
     private JList<String> inventoryList; // Inventory list UI
     private DefaultListModel<String> inventoryListModel; // Inventory list model
-    private static final int TILE_SIZE = 30;
+    private static final Color REMEMBERED_WALL = new Color(24, 24, 24); // Wall seen before, out of sight
+    private static final Color REMEMBERED_PATH = Color.GRAY; // Path seen before, out of sight
+    private static final int TARGET_FPS = 60; // Frame rate of the render loop
+    private static final long PLAYER_SLIDE_NANOS = TimeUnit.MILLISECONDS.toNanos(90); // Time to glide one cell
+    private static final long OVERLAY_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(250); // Overlay text period
+    private final RenderLoop renderLoop; // Steps the ghost and draws frames while the panel is showing
+    private MazeCanvas.Sprite playerSprite; // Player drawn over the maze
+    private MazeCanvas.Sprite ghostSprite; // Ghost drawn over the maze
+    private int playerFromX; // Cell the player last moved from
+    private int playerFromY;
+    private long playerMovedAt; // System.nanoTime of the player's last move
+    private int ghostFromX; // Cell the ghost was in before the last simulation step
+    private int ghostFromY;
+    private boolean overlayShown; // True if the performance overlay is shown
+    private long overlayUpdatedAt; // System.nanoTime the overlay text was last refreshed
 
     /**
      * REQUIRES: gamePanel and level are not null
@@ -44,26 +65,37 @@ public class GamePanelGUI extends JPanel implements KeyListener {
         this.level = gamePanel.getCurrentLevel(); // Initialize the level
         setLayout(new BorderLayout());
 
-        // Maze Panel
-        JPanel mazePanel = new JPanel(
-                new GridLayout(level.getMaze().getMaze().length, level.getMaze().getMaze()[0].length));
-        mazeCells = new JLabel[level.getMaze().getMaze().length][level.getMaze().getMaze()[0].length];
-        initMaze(mazePanel);
+        // Maze Canvas
+        int[][] maze = level.getMaze().getMaze();
+        mazeCanvas = new MazeCanvas(maze[0].length, maze.length);
+        minimap = new MinimapPanel();
+        ghostSprite = mazeCanvas.addSprite(Color.RED);
+        playerSprite = mazeCanvas.addSprite(Color.BLUE); // Drawn over the ghost
+        playerFromX = this.level.getPlayer().getPlayerX();
+        playerFromY = this.level.getPlayer().getPlayerY();
+        renderLoop = new RenderLoop(TARGET_FPS, GamePanel.GHOST_STEP_NANOS, this);
+        mazeCanvas.setFrameStats(renderLoop.getStats());
+        updateMaze();
 
         // Status Label
         statusLabel = new JLabel("Use WASD to move!", SwingConstants.CENTER);
         statusLabel.setFont(new Font("Arial", Font.PLAIN, 14));
 
-        // Inventory Panel with Toggle
-        JPanel inventoryPanel = createInventoryPanel();
+        // Minimap above the Inventory Panel with Toggle
+        JPanel sidePanel = new JPanel(new BorderLayout());
+        JPanel minimapPanel = new JPanel(new BorderLayout());
+        minimapPanel.setBorder(BorderFactory.createTitledBorder("Map"));
+        minimapPanel.add(minimap, BorderLayout.CENTER);
+        sidePanel.add(minimapPanel, BorderLayout.NORTH);
+        sidePanel.add(createInventoryPanel(), BorderLayout.CENTER);
 
         // Control Panel for Save and Collect buttons
         JPanel controlPanel = createControlPanel();
 
         // Add components to the main panel
-        add(mazePanel, BorderLayout.CENTER);
+        add(mazeCanvas, BorderLayout.CENTER);
         add(statusLabel, BorderLayout.SOUTH);
-        add(inventoryPanel, BorderLayout.EAST);
+        add(sidePanel, BorderLayout.EAST);
         add(controlPanel, BorderLayout.NORTH); // Place control buttons at the top
 
         // Restore the inventory in the UI
@@ -145,107 +177,171 @@ public class GamePanelGUI extends JPanel implements KeyListener {
         }
     }
 
-    /**
-     * MODIFIES: this
-     * EFFECTS: Initializes the maze panel with cells representing walls, paths, and
-     * items.
-     * 
-     * @param mazePanel the panel to render the maze
-     */
-    private void initMaze(JPanel mazePanel) {
-        int[][] maze = level.getMaze().getMaze();
-        for (int y = 0; y < maze.length; y++) {
-            for (int x = 0; x < maze[0].length; x++) {
-                mazeCells[y][x] = new JLabel("", SwingConstants.CENTER);
-                mazeCells[y][x].setOpaque(true);
-                mazeCells[y][x].setPreferredSize(new Dimension(TILE_SIZE, TILE_SIZE));
-
-                mazeCells[y][x].setBackground(maze[y][x] == 1 ? Color.BLACK : Color.WHITE);
-                mazePanel.add(mazeCells[y][x]);
-            }
-        }
-        updateMaze();
-    }
-
     /**
      * MODIFIES: this
      * EFFECTS: Updates the visual representation of the maze in the GUI,
      * highlighting the player's position, uncollected items, walls, paths,
      * and dark areas outside the player's visibility for levels 2 and 3.
-     * Level 1 displays the full maze without dark cells.
+     * Areas the player has seen before are shown dimmed instead of dark.
+     * Level 1 displays the full maze without dark cells. Only the cells that
+     * changed since the last update are recoloured and repainted.
      */
-    @SuppressWarnings("methodlength")
     private void updateMaze() {
-        Player player = level.getPlayer();
-        Ghost ghost = level.getGhost();
-        // System.out.println(player);
         int[][] maze = level.getMaze().getMaze();
-        Item key = level.getKey(); // Retrieve the key for this level
-        Item flashlight = level.getFlashlight(); // Retrieve the flashlight for this level
-        int playerX = player.getPlayerX();
-        int playerY = player.getPlayerY();
-
-        int visibilityDiameter = player.getVisibilityDiameter(); // Player's vision range
-        int levelNumber = level.getLevelNumber(); // Current level number
-
-        for (int y = 0; y < maze.length; y++) {
-            for (int x = 0; x < maze[0].length; x++) {
-                if (levelNumber > 1) {
-                    // For levels 2 and 3, calculate visibility
-                    boolean isVisible = Math.abs(x - playerX) <= visibilityDiameter / 2
-                            && Math.abs(y - playerY) <= visibilityDiameter / 2;
-
-                    if (!isVisible) {
-                        // Cells outside visibility range are dark
-                        mazeCells[y][x].setBackground(Color.DARK_GRAY);
-                    } else {
-                        updateCell(x, y, playerX, playerY, key, flashlight, ghost, maze);
-                    }
-                } else {
-                    // For level 1, always display the full maze
-                    updateCell(x, y, playerX, playerY, key, flashlight, ghost, maze);
+        FieldOfView.Visibility visibility = level.getLevelNumber() > 1 ? level.updateVisibility() : null;
+        ExploredMap explored = level.getExplored();
+
+        mazeCanvas.setGridSize(maze[0].length, maze.length); // The next level may be a different size
+        dirtyCells.collect(level, visibility);
+        if (dirtyCells.isAll()) {
+            for (int y = 0; y < maze.length; y++) {
+                for (int x = 0; x < maze[0].length; x++) {
+                    recolorCell(x, y, maze, visibility, explored);
                 }
             }
+        } else {
+            for (int i = 0; i < dirtyCells.size(); i++) {
+                recolorCell(dirtyCells.getX(i), dirtyCells.getY(i), maze, visibility, explored);
+            }
         }
-        // Call ghost collision check
+        mazeCanvas.repaintCells(dirtyCells); // Only the canvas changed, so no layout is needed
+        minimap.update(level, visibility);
+
+        // Call ghost collision check; the ghost itself moves in step()
         checkForGhostCollision();
-        if (ghost != null) {
-            ghost.moveToNeighbor();
-            checkForGhostCollision(); // Move the ghost to a neighboring cell
-        }
         gamePanel.setCurrentLevel(level);
         gamePanel.setLevelInProgress(true);
-        revalidate();
-        repaint();
     }
 
     /**
      * MODIFIES: this
-     * EFFECTS: Updates the cell at (x, y) based on its type, player's position, and
-     * ghost's position.
+     * EFFECTS: Recolours the cell at (x, y). For levels 2 and 3 (visibility not
+     * null) cells outside the player's line of sight are dimmed if seen before
+     * and dark otherwise.
      */
-    private void updateCell(int x, int y, int playerX, int playerY, Item key, Item flashlight, Ghost ghost,
-            int[][] maze) {
-        if (playerX == x && playerY == y) {
-            // Player's position
-            mazeCells[y][x].setBackground(Color.BLUE);
-        } else if (ghost != null && ghost.getGhostX() == x && ghost.getGhostY() == y) {
-            // Ghost's position
-            mazeCells[y][x].setBackground(Color.RED);
-        } else if (key != null && !key.isCollected() && key.getItemX() == x && key.getItemY() == y) {
+    private void recolorCell(int x, int y, int[][] maze, FieldOfView.Visibility visibility, ExploredMap explored) {
+        if (visibility == null || visibility.isVisible(x, y)) {
+            mazeCanvas.setCell(x, y, cellColor(x, y, maze));
+        } else {
+            // Cells seen before are shown dimmed, unexplored cells are dark
+            mazeCanvas.setCell(x, y, explored.isExplored(x, y)
+                    ? (maze[y][x] == 1 ? REMEMBERED_WALL : REMEMBERED_PATH)
+                    : Color.DARK_GRAY);
+        }
+    }
+
+    /**
+     * EFFECTS: Returns the colour of the visible cell at (x, y) based on its type.
+     * The player and ghost are drawn over the cells as sprites.
+     */
+    private Color cellColor(int x, int y, int[][] maze) {
+        Item key = level.getKey();
+        Item flashlight = level.getFlashlight();
+        if (key != null && !key.isCollected() && key.getItemX() == x && key.getItemY() == y) {
             // Key position
-            mazeCells[y][x].setBackground(Color.YELLOW);
+            return Color.YELLOW;
         } else if (flashlight != null && !flashlight.isCollected()
                 && flashlight.getItemX() == x && flashlight.getItemY() == y) {
             // Flashlight position
-            mazeCells[y][x].setBackground(Color.GREEN);
+            return Color.GREEN;
         } else if (maze[y][x] == 1) {
             // Wall
-            mazeCells[y][x].setBackground(Color.BLACK);
+            return Color.BLACK;
         } else {
             // Path
-            mazeCells[y][x].setBackground(Color.WHITE);
+            return Color.WHITE;
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * EFFECTS: Starts the render loop once the panel is on screen.
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        renderLoop.start();
+    }
+
+    /**
+     * MODIFIES: this
+     * EFFECTS: Stops the render loop when the panel leaves the screen.
+     */
+    @Override
+    public void removeNotify() {
+        renderLoop.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * MODIFIES: this, level
+     * EFFECTS: Advances the game by one fixed step: the ghost moves to a
+     * neighbouring cell and collisions are checked. Nothing moves while the
+     * game window is inactive, e.g. while a dialog is open.
+     */
+    @Override
+    public void step() {
+        Ghost ghost = level.getGhost();
+        if (ghost == null || !isGameWindowActive()) {
+            return;
         }
+        ghostFromX = ghost.getGhostX();
+        ghostFromY = ghost.getGhostY();
+        ghost.moveToNeighbor();
+        minimap.repaint();
+        checkForGhostCollision();
+    }
+
+    /**
+     * MODIFIES: this
+     * EFFECTS: Draws one frame: the player glides from the cell it last left,
+     * the ghost is drawn alpha of the way between its last two cells, the
+     * camera follows the player, the overlay text is refreshed, and an
+     * autosave checkpoint is taken if one is due.
+     */
+    @Override
+    public void render(double alpha, long frameNanos) {
+        Player player = level.getPlayer();
+        double slide = Math.min(1.0, (double) (System.nanoTime() - playerMovedAt) / PLAYER_SLIDE_NANOS);
+        double playerX = interpolate(playerFromX, player.getPlayerX(), slide);
+        double playerY = interpolate(playerFromY, player.getPlayerY(), slide);
+        playerSprite.place(playerX, playerY, true);
+
+        Ghost ghost = level.getGhost();
+        if (ghost != null) {
+            FieldOfView.Visibility visibility = level.getLevelNumber() > 1 ? level.getVisibility() : null;
+            boolean seen = visibility == null || visibility.isVisible(ghost.getGhostX(), ghost.getGhostY());
+            ghostSprite.place(interpolate(ghostFromX, ghost.getGhostX(), alpha),
+                    interpolate(ghostFromY, ghost.getGhostY(), alpha), seen);
+        } else {
+            ghostSprite.place(0, 0, false);
+        }
+
+        mazeCanvas.follow(playerX + 0.5, playerY + 0.5);
+        mazeCanvas.stepCamera(frameNanos);
+        minimap.setView(mazeCanvas.getViewBounds());
+
+        if (overlayShown && System.nanoTime() - overlayUpdatedAt >= OVERLAY_REFRESH_NANOS) {
+            overlayUpdatedAt = System.nanoTime();
+            mazeCanvas.setOverlay(renderLoop.getStats().describe());
+        }
+        gamePanel.getAutosaver().tick();
+    }
+
+    /*
+     * EFFECTS: Returns the position t of the way from one cell coordinate to the
+     * next, or to itself if they are not neighbours (a jump is not animated).
+     */
+    private static double interpolate(int from, int to, double t) {
+        return Math.abs(to - from) > 1 ? to : from + (to - from) * t;
+    }
+
+    /*
+     * EFFECTS: Returns true if the window holding this panel is the active one.
+     */
+    private boolean isGameWindowActive() {
+        Window window = SwingUtilities.getWindowAncestor(this);
+        return window != null && window.isActive();
     }
 
     /**
@@ -272,75 +368,125 @@ public class GamePanelGUI extends JPanel implements KeyListener {
 
     /**
      * MODIFIES: this
-     * EFFECTS: Saves the current game state to a file. Displays a message
-     * indicating
-     * success or failure.
+     * EFFECTS: Asks for the save slot, offering the game's current one, and
+     * saves the current game state to it in the background. What changed is
+     * captured now, so play can continue while it is written; the save button is
+     * disabled until a message indicates success or failure.
      */
-    @SuppressWarnings("methodlength")
     private void saveGame() {
-        GameWriter writer = new GameWriter(SAVE_FILE);
-        try {
-            writer.open();
-            writer.write(gamePanel);
-            writer.close();
-            JOptionPane.showMessageDialog(this, "Game saved successfully!", "Save Game",
-                    JOptionPane.INFORMATION_MESSAGE);
-        } catch (FileNotFoundException e) {
-            JOptionPane.showMessageDialog(this, "Failed to save game: " + e.getMessage(), "Save Game",
-                    JOptionPane.ERROR_MESSAGE);
+        String slot = (String) JOptionPane.showInputDialog(this, "Save to slot:", "Save Game",
+                JOptionPane.QUESTION_MESSAGE, null, null, gamePanel.getSlot());
+        if (slot == null) {
+            requestFocusInWindow();
+            return; // Cancelled
+        }
+        slot = slot.trim();
+        if (!SaveStore.isValidSlot(slot)) {
+            JOptionPane.showMessageDialog(this, "A slot name is 1 to 64 letters, digits, '_' or '-'.",
+                    "Save Game", JOptionPane.ERROR_MESSAGE);
+            requestFocusInWindow();
+            return;
         }
+        gamePanel.setSlot(slot);
+        saveButton.setEnabled(false);
+        AsyncGameStore.getInstance().save(gamePanel, slot, new AsyncGameStore.Callback<>() {
+            @Override
+            public void onProgress(String stage) {
+                statusLabel.setText(stage + "...");
+            }
+
+            @Override
+            public void onSuccess(Void result) {
+                saveButton.setEnabled(true);
+                statusLabel.setText("Use WASD to move!");
+                JOptionPane.showMessageDialog(GamePanelGUI.this, "Game saved successfully!", "Save Game",
+                        JOptionPane.INFORMATION_MESSAGE);
+                requestFocusInWindow();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                saveButton.setEnabled(true);
+                statusLabel.setText("Use WASD to move!");
+                JOptionPane.showMessageDialog(GamePanelGUI.this, "Failed to save game: " + e.getMessage(),
+                        "Save Game", JOptionPane.ERROR_MESSAGE);
+                requestFocusInWindow();
+            }
+        });
         requestFocusInWindow();
     }
 
     /**
+     * REQUIRES: gamePanel already holds the loaded game state
      * MODIFIES: this
      * EFFECTS: Updates the current game panel GUI to reflect the loaded game state.
      * Synchronizes the game level, player inventory, and maze visuals
-     * with the loaded level state.
+     * with the loaded level state. The save file is not read again here.
      */
     public void loadGame(Level loadedLevel) {
-        if (gamePanel.loadGameState()) { // Attempt to load the game state
-            if (gamePanel.isLevelInProgress()) {
-                JOptionPane.showMessageDialog(this, "Resuming previous game...", "Load Game",
-                        JOptionPane.INFORMATION_MESSAGE);
-                gamePanel.setCurrentLevel(loadedLevel);
-                this.level = gamePanel.getCurrentLevel(); // Sync GUI with GamePanel
-                restoreInventory(); // Restore inventory
-                updateMaze(); // Refresh the maze
-            } else {
-                JOptionPane.showMessageDialog(this, "No ongoing level found. Starting a new game.", "Load Game",
-                        JOptionPane.WARNING_MESSAGE);
-                gamePanel.startGame(); // Start a new game
-                level = gamePanel.getCurrentLevel(); // Sync GUI with GamePanel
-                restoreInventory(); // Initialize inventory for the new game
-                updateMaze(); // Refresh the maze for the new game
-            }
+        if (gamePanel.isLevelInProgress()) {
+            JOptionPane.showMessageDialog(this, "Resuming previous game...", "Load Game",
+                    JOptionPane.INFORMATION_MESSAGE);
+            gamePanel.setCurrentLevel(loadedLevel);
+            this.level = gamePanel.getCurrentLevel(); // Sync GUI with GamePanel
+            restoreInventory(); // Restore inventory
+            updateMaze(); // Refresh the maze
+        } else {
+            JOptionPane.showMessageDialog(this, "No ongoing level found. Starting a new game.", "Load Game",
+                    JOptionPane.WARNING_MESSAGE);
+            gamePanel.startGame(); // Start a new game
+            level = gamePanel.getCurrentLevel(); // Sync GUI with GamePanel
+            restoreInventory(); // Initialize inventory for the new game
+            updateMaze(); // Refresh the maze for the new game
         }
     }
 
     /**
      * MODIFIES: this, level
-     * EFFECTS: Handles the player's movement based on key presses (WASD).
-     * Updates the maze and checks for interactions.
+     * EFFECTS: Handles the player's movement based on key presses (WASD), and
+     * zooming the maze view ('+' and '-' to zoom, '0' to fit), and F3 to toggle
+     * the performance overlay. Updates the maze and checks for interactions.
      */
     @Override
     public void keyPressed(KeyEvent e) {
-        String move = switch (e.getKeyCode()) {
-            case KeyEvent.VK_W -> "up";
-            case KeyEvent.VK_A -> "left";
-            case KeyEvent.VK_S -> "down";
-            case KeyEvent.VK_D -> "right";
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_F3 -> {
+                overlayShown = !overlayShown;
+                overlayUpdatedAt = 0;
+                mazeCanvas.setOverlay(null);
+            }
+            case KeyEvent.VK_EQUALS, KeyEvent.VK_PLUS, KeyEvent.VK_ADD -> mazeCanvas.zoomIn();
+            case KeyEvent.VK_MINUS, KeyEvent.VK_SUBTRACT -> mazeCanvas.zoomOut();
+            case KeyEvent.VK_0, KeyEvent.VK_NUMPAD0 -> mazeCanvas.setZoom(0);
+            default -> {
+                // Not a zoom key
+            }
+        }
+
+        Direction move = switch (e.getKeyCode()) {
+            case KeyEvent.VK_W -> Direction.UP;
+            case KeyEvent.VK_A -> Direction.LEFT;
+            case KeyEvent.VK_S -> Direction.DOWN;
+            case KeyEvent.VK_D -> Direction.RIGHT;
             default -> null;
         };
 
         if (move != null) {
+            int fromX = level.getPlayer().getPlayerX();
+            int fromY = level.getPlayer().getPlayerY();
             boolean validMove = processMove(move);
+            if (validMove) {
+                playerFromX = fromX;
+                playerFromY = fromY;
+                playerMovedAt = System.nanoTime();
+            }
             if (validMove) {
                 checkForGhostCollision();
                 checkForKey();
                 checkForFlashlight();
                 checkForExit();
                 updateMaze();
+                gamePanel.getAutosaver().moved(1);
                 statusLabel.setText("Use WASD to move!"); // Reset status
             } else {
                 statusLabel.setText("You hit a wall!"); // Display status
@@ -351,30 +497,14 @@ public class GamePanelGUI extends JPanel implements KeyListener {
     /**
      * MODIFIES: this, level
      * EFFECTS: Processes the player's movement. If the move is invalid (into a wall
-     * or out of bounds),
-     * the player's position is reset. Returns true if the move is valid.
+     * or out of bounds), the player stays where they are. Returns true if the move
+     * is valid.
      * 
-     * @param move the move direction ("up", "down", "left", or "right")
+     * @param move the move direction
      * @return true if the move is valid, false otherwise
      */
-    private boolean processMove(String move) {
-        int[][] maze = level.getMaze().getMaze();
-        Player player = level.getPlayer();
-
-        int prevX = player.getPlayerX();
-        int prevY = player.getPlayerY();
-        player.move(move);
-
-        try {
-            if (maze[player.getPlayerY()][player.getPlayerX()] == 1) {
-                player.setPosition(prevX, prevY);
-                return false;
-            }
-        } catch (ArrayIndexOutOfBoundsException e) {
-            player.setPosition(prevX, prevY);
-            return false;
-        }
-        return true;
+    private boolean processMove(Direction move) {
+        return level.tryMove(move);
     }
 
     /**
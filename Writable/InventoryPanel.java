@@ -2,6 +2,7 @@ package ui;
 
 import model.Inventory;
 import model.Item;
+import model.ItemType;
 
 import javax.swing.*;
 import java.awt.*;
@@ -85,8 +86,8 @@ public class InventoryPanel extends JPanel {
         StringBuilder sb = new StringBuilder("Inventory:\n");
         inventory.getItems().stream()
                 .filter(item -> filter.equals("All")
-                        || (filter.equals("Keys") && item.getType().equals("key"))
-                        || (filter.equals("Flashlights") && item.getType().equals("flashlight")))
+                        || (filter.equals("Keys") && item.getKind() == ItemType.KEY)
+                        || (filter.equals("Flashlights") && item.getKind() == ItemType.FLASHLIGHT))
                 .forEach(item -> sb.append("- ").append(item.getType()).append("\n"));
         inventoryArea.setText(sb.toString());
     }
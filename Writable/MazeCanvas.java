@@ -0,0 +1,570 @@
+package ui;
+
+import model.DirtyCells;
+
+import javax.swing.JComponent;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Represents a single component that paints the maze. Cell colours are kept in
+ * a cached image with one pixel per cell, which paintComponent scales up to
+ * the tile size in one drawImage call, so there are no per-cell components and
+ * changing a cell never triggers layout. After a step only the screen areas of
+ * the cells that changed are repainted.
+ *
+ * Mazes too large to fit are shown through a camera that follows the player
+ * and scrolls smoothly, at one of several zoom levels. Only the cells inside
+ * the view are drawn, so the cost of a frame depends on the size of the
+ * screen, not of the maze.
+ *
+ * Moving entities are drawn as sprites on top of the cells, at fractional
+ * cell positions so they can glide between cells, and an optional overlay
+ * shows text such as frame statistics in the top-left corner.
+ *
+ * Usage: java ui.MazeCanvas [size] runs a paint benchmark on a size x size maze
+ * (default 1000).
+ */
+public class MazeCanvas extends JComponent {
+    private static final int PREFERRED_TILE_SIZE = 30; // Tile size the canvas asks for when there is room
+    private static final Color BACKGROUND = Color.DARK_GRAY; // Colour around the maze
+    private static final int[] TILE_SIZES = { 1, 2, 4, 8, 16, 30, 48 }; // Zoom levels, in pixels per cell
+    private static final int MIN_FIT_TILE = 8; // Smallest tile used to fit the maze before the camera scrolls
+    private static final double SCROLL_RATE = 12.0; // Camera closes this share of the gap per second, exponentially
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 170); // Behind the overlay text
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+    private int columns; // Number of cells across
+    private int rows; // Number of cells down
+    private BufferedImage cells; // One pixel per cell, holding the cell's colour
+    private int[] pixels; // Backing array of cells, row by row
+    private int zoomTile; // Tile size chosen by zooming, or 0 to fit the maze
+    private double cameraX; // Cell coordinates at the centre of the view, or NaN before the first follow
+    private double cameraY;
+    private double targetX; // Where the camera is scrolling to
+    private double targetY;
+    private final List<Sprite> sprites; // Entities drawn over the cells, in drawing order
+    private List<String> overlay; // Lines of overlay text, or null if the overlay is hidden
+    private Rectangle overlayBounds; // Screen area of the overlay when last painted, or null
+    private FrameStats stats; // Receives paint durations, or null
+
+    /**
+     * Represents an entity drawn over the cells as a filled circle, at a
+     * position in cell coordinates that need not be whole.
+     */
+    public final class Sprite {
+        private final Color color; // Fill colour
+        private double x; // Position of the sprite's top-left corner, in cells
+        private double y;
+        private boolean visible; // False if the sprite is not drawn
+
+        private Sprite(Color color) {
+            this.color = color;
+        }
+
+        /*
+         * MODIFIES: this, MazeCanvas.this
+         * EFFECTS: Moves the sprite to (x, y) in cell coordinates and shows or
+         * hides it, repainting only the areas it left and entered.
+         */
+        public void place(double x, double y, boolean visible) {
+            if (x == this.x && y == this.y && visible == this.visible) {
+                return;
+            }
+            if (this.visible) {
+                repaint(bounds());
+            }
+            this.x = x;
+            this.y = y;
+            this.visible = visible;
+            if (visible) {
+                repaint(bounds());
+            }
+        }
+
+        /*
+         * EFFECTS: Returns the screen area covered by this sprite.
+         */
+        private Rectangle bounds() {
+            int tile = getTileSize();
+            int left = (int) Math.floor((x - viewLeft()) * tile);
+            int top = (int) Math.floor((y - viewTop()) * tile);
+            return new Rectangle(left - 1, top - 1, tile + 3, tile + 3);
+        }
+    }
+
+    /*
+     * REQUIRES: columns > 0, rows > 0
+     * EFFECTS: Constructs a canvas for a columns x rows maze with every cell
+     * painted in the background colour.
+     */
+    public MazeCanvas(int columns, int rows) {
+        setOpaque(true);
+        sprites = new ArrayList<>();
+        setGridSize(columns, rows);
+        addMouseWheelListener(e -> {
+            if (e.getWheelRotation() < 0) {
+                zoomIn();
+            } else if (e.getWheelRotation() > 0) {
+                zoomOut();
+            }
+        });
+    }
+
+    /*
+     * REQUIRES: columns > 0, rows > 0
+     * MODIFIES: this
+     * EFFECTS: Resizes the canvas for a columns x rows maze. The cell image is
+     * only reallocated when the size changes, in which case every cell is reset
+     * to the background colour.
+     */
+    public void setGridSize(int columns, int rows) {
+        if (cells != null && columns == this.columns && rows == this.rows) {
+            return;
+        }
+        this.columns = columns;
+        this.rows = rows;
+        cells = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) cells.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, BACKGROUND.getRGB());
+        cameraX = Double.NaN; // Jump straight to the player in the new maze
+        revalidate();
+        repaint();
+    }
+
+    /*
+     * EFFECTS: Returns the number of cells across.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /*
+     * EFFECTS: Returns the number of cells down.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /*
+     * REQUIRES: 0 <= x < columns, 0 <= y < rows
+     * MODIFIES: this
+     * EFFECTS: Sets the colour of the cell at (x, y). The change shows on the
+     * next paint; call repaint once all cells of a frame have been set.
+     */
+    public void setCell(int x, int y, Color color) {
+        pixels[y * columns + x] = color.getRGB();
+    }
+
+    /*
+     * REQUIRES: 0 <= x < columns, 0 <= y < rows
+     * EFFECTS: Returns the RGB colour of the cell at (x, y).
+     */
+    public int getCell(int x, int y) {
+        return pixels[y * columns + x];
+    }
+
+    /*
+     * EFFECTS: Returns the size of a tile on screen, in pixels: the zoom level if
+     * one was chosen, otherwise the largest whole size that fits the maze in the
+     * component, but no smaller than MIN_FIT_TILE.
+     */
+    public int getTileSize() {
+        if (zoomTile > 0) {
+            return zoomTile;
+        }
+        int fit = Math.min(getWidth() / columns, getHeight() / rows);
+        return Math.max(fit, MIN_FIT_TILE);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Zooms in to the next larger tile size, if any.
+     */
+    public void zoomIn() {
+        int tile = getTileSize();
+        for (int size : TILE_SIZES) {
+            if (size > tile) {
+                setZoom(size);
+                return;
+            }
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Zooms out to the next smaller tile size, if any.
+     */
+    public void zoomOut() {
+        int tile = getTileSize();
+        for (int i = TILE_SIZES.length - 1; i >= 0; i--) {
+            if (TILE_SIZES[i] < tile) {
+                setZoom(TILE_SIZES[i]);
+                return;
+            }
+        }
+    }
+
+    /*
+     * REQUIRES: tile >= 0
+     * MODIFIES: this
+     * EFFECTS: Sets the tile size in pixels, or 0 to fit the maze again, and
+     * repaints.
+     */
+    public void setZoom(int tile) {
+        zoomTile = tile;
+        repaint();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Points the camera at (x, y) in cell coordinates. The view moves
+     * there over the next calls to stepCamera, or jumps there if the camera has
+     * not been placed yet.
+     */
+    public void follow(double x, double y) {
+        targetX = x;
+        targetY = y;
+        if (Double.isNaN(cameraX)) {
+            cameraX = targetX;
+            cameraY = targetY;
+            repaint();
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Moves the camera towards its target as time passes, closing the
+     * gap exponentially, and repaints if the view changed.
+     */
+    public void stepCamera(long elapsedNanos) {
+        if (Double.isNaN(cameraX) || (cameraX == targetX && cameraY == targetY)) {
+            return;
+        }
+        double beforeX = viewLeft();
+        double beforeY = viewTop();
+        double share = 1 - Math.exp(-SCROLL_RATE * elapsedNanos / 1e9);
+        cameraX += (targetX - cameraX) * share;
+        cameraY += (targetY - cameraY) * share;
+        if (Math.abs(targetX - cameraX) < 0.01 && Math.abs(targetY - cameraY) < 0.01) {
+            cameraX = targetX;
+            cameraY = targetY;
+        }
+        if (viewLeft() != beforeX || viewTop() != beforeY) {
+            repaint(); // The view is bounded by the screen, so this costs the same for any maze
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns a new, hidden sprite of the given colour, drawn above the
+     * sprites added before it.
+     */
+    public Sprite addSprite(Color color) {
+        Sprite sprite = new Sprite(color);
+        sprites.add(sprite);
+        return sprite;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Shows the given lines of text in the overlay, or hides the
+     * overlay if lines is null, repainting only the overlay's area.
+     */
+    public void setOverlay(List<String> lines) {
+        if (overlayBounds != null) {
+            repaint(overlayBounds);
+        }
+        overlay = lines;
+        if (lines != null) {
+            FontMetrics metrics = getFontMetrics(OVERLAY_FONT);
+            int width = 0;
+            for (String line : lines) {
+                width = Math.max(width, metrics.stringWidth(line));
+            }
+            overlayBounds = new Rectangle(0, 0, width + 12, lines.size() * metrics.getHeight() + 8);
+            repaint(overlayBounds);
+        } else {
+            overlayBounds = null;
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records the duration of every paint in stats, or stops recording
+     * if stats is null.
+     */
+    public void setFrameStats(FrameStats stats) {
+        this.stats = stats;
+    }
+
+    /*
+     * EFFECTS: Returns the area of the maze inside the view, in cell
+     * coordinates.
+     */
+    public Rectangle2D getViewBounds() {
+        int tile = getTileSize();
+        return new Rectangle2D.Double(viewLeft(), viewTop(), (double) getWidth() / tile,
+                (double) getHeight() / tile);
+    }
+
+    /*
+     * EFFECTS: Returns the cell x-coordinate at the left edge of the view. A maze
+     * narrower than the view is centred; otherwise the camera is kept from
+     * scrolling past the maze's edges.
+     */
+    private double viewLeft() {
+        return viewStart(cameraX, columns, getWidth());
+    }
+
+    /*
+     * EFFECTS: Returns the cell y-coordinate at the top edge of the view, as
+     * viewLeft.
+     */
+    private double viewTop() {
+        return viewStart(cameraY, rows, getHeight());
+    }
+
+    /*
+     * EFFECTS: Returns the first cell coordinate shown along one axis, for a
+     * camera at centre, a maze of cells cells and a view of pixels pixels.
+     */
+    private double viewStart(double centre, int cells, int pixels) {
+        double span = (double) pixels / getTileSize(); // Cells that fit in the view
+        if (span >= cells || Double.isNaN(centre)) {
+            return (cells - span) / 2;
+        }
+        double start = centre - span / 2;
+        return Math.max(0, Math.min(cells - span, start));
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Repaints the screen areas of the given dirty cells, or the whole
+     * canvas if every cell is dirty. Nearby cells are grouped into rectangles,
+     * and each rectangle is painted on its own, so a change near the player and
+     * one near a distant ghost do not repaint everything in between.
+     */
+    public void repaintCells(DirtyCells dirty) {
+        if (dirty.isAll()) {
+            repaint();
+            return;
+        }
+        if (!isShowing()) {
+            return;
+        }
+        Rectangle view = new Rectangle(0, 0, getWidth(), getHeight());
+        for (Rectangle region : groupCells(dirty)) {
+            Rectangle area = toScreen(region).intersection(view);
+            if (!area.isEmpty()) {
+                // repaint() would merge all regions into one; painting each now keeps them apart
+                paintImmediately(area);
+            }
+        }
+    }
+
+    /*
+     * EFFECTS: Returns rectangles, in cell coordinates, that together cover the
+     * dirty cells. A cell joins a rectangle it touches or is next to, and
+     * rectangles that end up touching are merged.
+     */
+    private static List<Rectangle> groupCells(DirtyCells dirty) {
+        List<Rectangle> regions = new ArrayList<>();
+        for (int i = 0; i < dirty.size(); i++) {
+            int x = dirty.getX(i);
+            int y = dirty.getY(i);
+            Rectangle joined = null;
+            for (Rectangle region : regions) {
+                if (x >= region.x - 1 && x <= region.x + region.width
+                        && y >= region.y - 1 && y <= region.y + region.height) {
+                    joined = region;
+                    break;
+                }
+            }
+            if (joined != null) {
+                joined.add(new Rectangle(x, y, 1, 1));
+            } else {
+                regions.add(new Rectangle(x, y, 1, 1));
+            }
+        }
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < regions.size() && !merged; i++) {
+                Rectangle grown = new Rectangle(regions.get(i));
+                grown.grow(1, 1);
+                for (int j = i + 1; j < regions.size(); j++) {
+                    if (grown.intersects(regions.get(j))) {
+                        regions.get(i).add(regions.remove(j));
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return regions;
+    }
+
+    /*
+     * EFFECTS: Returns the screen area covered by the given rectangle of cells,
+     * rounded outwards to whole pixels.
+     */
+    private Rectangle toScreen(Rectangle region) {
+        int tile = getTileSize();
+        int left = (int) Math.floor((region.x - viewLeft()) * tile);
+        int top = (int) Math.floor((region.y - viewTop()) * tile);
+        int right = (int) Math.ceil((region.x + region.width - viewLeft()) * tile);
+        int bottom = (int) Math.ceil((region.y + region.height - viewTop()) * tile);
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        return new Dimension(columns * PREFERRED_TILE_SIZE, rows * PREFERRED_TILE_SIZE);
+    }
+
+    /*
+     * MODIFIES: g
+     * EFFECTS: Paints the cells inside the view, scaled from the cell image with
+     * nearest-neighbour sampling in a single draw, and the background around
+     * the maze.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setColor(BACKGROUND);
+        g2.fillRect(0, 0, getWidth(), getHeight());
+        int tile = getTileSize();
+        double left = viewLeft();
+        double top = viewTop();
+        int firstX = Math.max(0, (int) Math.floor(left));
+        int firstY = Math.max(0, (int) Math.floor(top));
+        int endX = Math.min(columns, (int) Math.ceil(left + (double) getWidth() / tile));
+        int endY = Math.min(rows, (int) Math.ceil(top + (double) getHeight() / tile));
+        if (firstX < endX && firstY < endY) {
+            int screenX = (int) Math.round((firstX - left) * tile);
+            int screenY = (int) Math.round((firstY - top) * tile);
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g2.drawImage(cells, screenX, screenY, screenX + (endX - firstX) * tile,
+                    screenY + (endY - firstY) * tile, firstX, firstY, endX, endY, null);
+        }
+        paintSprites(g2, tile, left, top);
+        paintOverlay(g2);
+        if (stats != null) {
+            stats.recordPaint(System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * MODIFIES: g2
+     * EFFECTS: Draws the visible sprites as circles inset within a tile.
+     */
+    private void paintSprites(Graphics2D g2, int tile, double left, double top) {
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int inset = tile >= 8 ? tile / 8 : 0;
+        for (Sprite sprite : sprites) {
+            if (sprite.visible) {
+                int x = (int) Math.round((sprite.x - left) * tile);
+                int y = (int) Math.round((sprite.y - top) * tile);
+                g2.setColor(sprite.color);
+                if (tile >= 4) {
+                    g2.fillOval(x + inset, y + inset, tile - 2 * inset, tile - 2 * inset);
+                } else {
+                    g2.fillRect(x, y, tile, tile);
+                }
+            }
+        }
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_DEFAULT);
+    }
+
+    /*
+     * MODIFIES: g2
+     * EFFECTS: Draws the overlay text on a translucent box, if it is shown.
+     */
+    private void paintOverlay(Graphics2D g2) {
+        if (overlay == null) {
+            return;
+        }
+        g2.setColor(OVERLAY_BACKGROUND);
+        g2.fill(overlayBounds);
+        g2.setFont(OVERLAY_FONT);
+        g2.setColor(Color.WHITE);
+        FontMetrics metrics = g2.getFontMetrics();
+        int y = 4 + metrics.getAscent();
+        for (String line : overlay) {
+            g2.drawString(line, 6, y);
+            y += metrics.getHeight();
+        }
+    }
+
+    /*
+     * EFFECTS: Fills a size x size canvas with a random maze and prints how long
+     * it takes to recolour every cell and to paint the canvas into an
+     * 800 x 600 frame, fitted and zoomed in on the centre.
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int frames = 200;
+        Random random = new Random(42);
+        int[][] maze = new int[size][size];
+        for (int[] row : maze) {
+            for (int x = 0; x < size; x++) {
+                row[x] = random.nextInt(3) == 0 ? 1 : 0;
+            }
+        }
+
+        MazeCanvas canvas = new MazeCanvas(size, size);
+        canvas.setSize(800, 600);
+        canvas.follow(size / 2.0, size / 2.0);
+        BufferedImage frame = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+
+        long recolour = 0;
+        for (int i = -frames; i < frames; i++) { // The first half warms up
+            long start = System.nanoTime();
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    canvas.setCell(x, y, maze[y][x] == 1 ? Color.BLACK : Color.WHITE);
+                }
+            }
+            if (i >= 0) {
+                recolour += System.nanoTime() - start;
+            }
+        }
+        System.out.printf("%dx%d maze, %d frames%n", size, size, frames);
+        System.out.printf("  recolour all cells:       %.3f ms/frame%n", recolour / 1e6 / frames);
+
+        for (int tile : new int[] { 1, 8, 30 }) {
+            canvas.setZoom(tile);
+            long paint = 0;
+            for (int i = -frames; i < frames; i++) {
+                long start = System.nanoTime();
+                Graphics g = frame.getGraphics();
+                canvas.paintComponent(g);
+                g.dispose();
+                if (i >= 0) {
+                    paint += System.nanoTime() - start;
+                }
+            }
+            System.out.printf("  paint 800x600, %2dpx tiles: %.3f ms/frame%n", canvas.getTileSize(),
+                    paint / 1e6 / frames);
+        }
+    }
+}
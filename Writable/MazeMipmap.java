@@ -0,0 +1,307 @@
+package ui;
+
+import model.ExploredMap;
+import model.FieldOfView;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Represents a pyramid of downscaled views of a maze for the minimap. Level k
+ * has one pixel per 2^k x 2^k block of cells and stores how many of the
+ * block's cells are walls and how many have been explored; each level is the
+ * sum of four pixels of the level below. Marking a cell explored, or changing
+ * a wall, updates one pixel per level, and only those pixels are recoloured in
+ * the level images already built. Drawing a level therefore costs its pixel
+ * count, however large the maze is.
+ */
+public class MazeMipmap {
+    private static final int UNEXPLORED = 0x404040; // Colour of a block nobody has seen
+
+    private final int width; // Number of columns in the maze
+    private final int height; // Number of rows in the maze
+    private final long[] walls; // One bit per cell, set for walls
+    private final long[] explored; // One bit per cell, set once the cell has been explored
+    private final int[][] wallCounts; // Per level k >= 1, the number of walls in each block
+    private final int[][] exploredCounts; // Per level k >= 1, the number of explored cells in each block
+    private final BufferedImage[] images; // Per level, the coloured image, or null until first asked for
+    private final int[][] dirty; // Per level, indices of pixels whose image colour is out of date
+    private final int[] dirtySizes; // Per level, number of entries in dirty
+    private final long[][] dirtyMarks; // Per level, one bit per pixel, set if the pixel is in dirty
+    private boolean fullView; // True if every cell is shown as explored
+
+    /*
+     * REQUIRES: grid is a non-empty rectangular array
+     * EFFECTS: Constructs the pyramid for the maze structure grid (1 for walls)
+     * with no cells explored.
+     */
+    public MazeMipmap(int[][] grid) {
+        height = grid.length;
+        width = grid[0].length;
+        walls = new long[(width * height + 63) / 64];
+        explored = new long[walls.length];
+        int levels = 1;
+        while ((width - 1) >> (levels - 1) > 0 || (height - 1) >> (levels - 1) > 0) {
+            levels++; // Until one pixel covers the whole maze
+        }
+        wallCounts = new int[levels][];
+        exploredCounts = new int[levels][];
+        images = new BufferedImage[levels];
+        dirty = new int[levels][];
+        dirtySizes = new int[levels];
+        dirtyMarks = new long[levels][];
+        for (int k = 1; k < levels; k++) {
+            wallCounts[k] = new int[levelWidth(k) * levelHeight(k)];
+            exploredCounts[k] = new int[wallCounts[k].length];
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (grid[y][x] == 1) {
+                    int index = y * width + x;
+                    walls[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+        rebuildCounts(wallCounts, walls);
+    }
+
+    /*
+     * EFFECTS: Returns the number of levels; level count() - 1 is one pixel.
+     */
+    public int count() {
+        return images.length;
+    }
+
+    /*
+     * EFFECTS: Returns the width in pixels of level k.
+     */
+    public int levelWidth(int k) {
+        return ((width - 1) >> k) + 1;
+    }
+
+    /*
+     * EFFECTS: Returns the height in pixels of level k.
+     */
+    public int levelHeight(int k) {
+        return ((height - 1) >> k) + 1;
+    }
+
+    /*
+     * EFFECTS: Returns the smallest level that fits within maxWidth x maxHeight
+     * pixels, or the last level if none does.
+     */
+    public int levelFor(int maxWidth, int maxHeight) {
+        for (int k = 0; k < images.length; k++) {
+            if (levelWidth(k) <= maxWidth && levelHeight(k) <= maxHeight) {
+                return k;
+            }
+        }
+        return images.length - 1;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Shows every cell as explored if fullView is true, as for a level
+     * without fog; otherwise only cells marked explored.
+     */
+    public void setFullView(boolean fullView) {
+        if (this.fullView != fullView) {
+            this.fullView = fullView;
+            Arrays.fill(images, null); // Every colour changes
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Marks every cell in visibility as explored, updating one pixel per
+     * level for each cell not explored before.
+     */
+    public void markVisible(FieldOfView.Visibility visibility) {
+        int radius = visibility.getRadius();
+        int minX = Math.max(0, visibility.getOriginX() - radius);
+        int maxX = Math.min(width - 1, visibility.getOriginX() + radius);
+        int minY = Math.max(0, visibility.getOriginY() - radius);
+        int maxY = Math.min(height - 1, visibility.getOriginY() + radius);
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                if (visibility.isVisible(x, y)) {
+                    markExplored(x, y);
+                }
+            }
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Marks the cell at (x, y) as explored, updating one pixel per level
+     * if it was not explored before.
+     */
+    public void markExplored(int x, int y) {
+        int index = y * width + x;
+        if ((explored[index >>> 6] & (1L << index)) == 0) {
+            explored[index >>> 6] |= 1L << index;
+            addToLevels(exploredCounts, x, y, 1);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Marks every cell explored in the given map as explored here too,
+     * rebuilding the counts in one pass.
+     */
+    public void markExplored(ExploredMap map) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (map.isExplored(x, y)) {
+                    int index = y * width + x;
+                    explored[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+        rebuildCounts(exploredCounts, explored);
+        Arrays.fill(images, null);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Makes the cell at (x, y) a wall or a path, updating one pixel per
+     * level if it changed.
+     */
+    public void setWall(int x, int y, boolean wall) {
+        int index = y * width + x;
+        boolean was = (walls[index >>> 6] & (1L << index)) != 0;
+        if (was != wall) {
+            walls[index >>> 6] ^= 1L << index;
+            addToLevels(wallCounts, x, y, wall ? 1 : -1);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns the image of level k, one pixel per 2^k x 2^k block,
+     * building it on first use and otherwise recolouring only the pixels that
+     * changed since it was last returned.
+     */
+    public BufferedImage image(int k) {
+        int levelWidth = levelWidth(k);
+        BufferedImage image = images[k];
+        if (image == null) {
+            image = new BufferedImage(levelWidth, levelHeight(k), BufferedImage.TYPE_INT_RGB);
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = color(k, i % levelWidth, i / levelWidth);
+            }
+            images[k] = image;
+            dirtySizes[k] = 0;
+            dirtyMarks[k] = new long[(pixels.length + 63) / 64];
+            dirty[k] = new int[16];
+        } else if (dirtySizes[k] > 0) {
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < dirtySizes[k]; i++) {
+                int index = dirty[k][i];
+                pixels[index] = color(k, index % levelWidth, index / levelWidth);
+                dirtyMarks[k][index >>> 6] = 0;
+            }
+            dirtySizes[k] = 0;
+        }
+        return image;
+    }
+
+    /*
+     * EFFECTS: Returns the RGB colour of the pixel at (x, y) of level k: unexplored
+     * blocks are dark, explored ones shade from white to black with their share
+     * of walls, and partly explored ones lie in between.
+     */
+    private int color(int k, int x, int y) {
+        int cells = blockCells(k, x, y);
+        int wallCount;
+        int exploredCount;
+        if (k == 0) {
+            int index = y * width + x;
+            wallCount = (walls[index >>> 6] & (1L << index)) != 0 ? 1 : 0;
+            exploredCount = (explored[index >>> 6] & (1L << index)) != 0 ? 1 : 0;
+        } else {
+            wallCount = wallCounts[k][y * levelWidth(k) + x];
+            exploredCount = exploredCounts[k][y * levelWidth(k) + x];
+        }
+        if (fullView) {
+            exploredCount = cells;
+        }
+        int seen = 255 - 255 * wallCount / cells; // Grey level if the whole block were explored
+        int grey = (UNEXPLORED & 0xFF) + (seen - (UNEXPLORED & 0xFF)) * exploredCount / cells;
+        return (grey << 16) | (grey << 8) | grey;
+    }
+
+    /*
+     * EFFECTS: Returns the number of maze cells covered by pixel (x, y) of level
+     * k; blocks on the right and bottom edges may be partial.
+     */
+    private int blockCells(int k, int x, int y) {
+        int blockWidth = Math.min(width, (x + 1) << k) - (x << k);
+        int blockHeight = Math.min(height, (y + 1) << k) - (y << k);
+        return blockWidth * blockHeight;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Adds delta to the count of the block holding (x, y) at every level
+     * k >= 1, and marks the affected pixels of every level out of date.
+     */
+    private void addToLevels(int[][] counts, int x, int y, int delta) {
+        markDirty(0, y * width + x);
+        for (int k = 1; k < counts.length; k++) {
+            int index = (y >> k) * levelWidth(k) + (x >> k);
+            counts[k][index] += delta;
+            markDirty(k, index);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records that pixel index of level k must be recoloured, if that
+     * level's image has been built.
+     */
+    private void markDirty(int k, int index) {
+        if (images[k] == null || (dirtyMarks[k][index >>> 6] & (1L << index)) != 0) {
+            return;
+        }
+        dirtyMarks[k][index >>> 6] |= 1L << index;
+        if (dirtySizes[k] == dirty[k].length) {
+            dirty[k] = Arrays.copyOf(dirty[k], dirtySizes[k] * 2);
+        }
+        dirty[k][dirtySizes[k]++] = index;
+    }
+
+    /*
+     * MODIFIES: counts
+     * EFFECTS: Recomputes every level k >= 1 of counts from the cell bits:
+     * level 1 from the cells, each further level from the four pixels below it.
+     */
+    private void rebuildCounts(int[][] counts, long[] bits) {
+        if (counts.length < 2) {
+            return;
+        }
+        Arrays.fill(counts[1], 0);
+        int width1 = levelWidth(1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                if ((bits[index >>> 6] & (1L << index)) != 0) {
+                    counts[1][(y >> 1) * width1 + (x >> 1)]++;
+                }
+            }
+        }
+        for (int k = 2; k < counts.length; k++) {
+            int levelWidth = levelWidth(k);
+            int belowWidth = levelWidth(k - 1);
+            int belowHeight = levelHeight(k - 1);
+            Arrays.fill(counts[k], 0);
+            for (int y = 0; y < belowHeight; y++) {
+                for (int x = 0; x < belowWidth; x++) {
+                    counts[k][(y >> 1) * levelWidth + (x >> 1)] += counts[k - 1][y * belowWidth + x];
+                }
+            }
+        }
+    }
+}
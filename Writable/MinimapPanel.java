@@ -0,0 +1,143 @@
+package ui;
+
+import model.FieldOfView;
+import model.Ghost;
+import model.Item;
+import model.Level;
+import model.Player;
+
+import javax.swing.JComponent;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Represents a minimap showing the whole maze, the parts the player has
+ * explored, the entities the player knows about and the area shown by the
+ * main view. The maze is drawn from the level of a MazeMipmap that best fits
+ * the panel, so a paint costs about as much as the panel has pixels, however
+ * large the maze is.
+ */
+public class MinimapPanel extends JComponent {
+    private static final int PREFERRED_SIZE = 180; // Preferred width and height, in pixels
+    private static final int MIN_DOT_SIZE = 3; // Smallest size an entity is drawn at, in pixels
+
+    private Level level; // Level shown, or null before the first update
+    private int[][] grid; // Maze structure the mipmap was built from
+    private MazeMipmap mipmap; // Downscaled views of the maze
+    private FieldOfView.Visibility visibility; // What the player can see now, or null for full view
+    private Rectangle2D view; // Area shown by the main view, in cells, or null
+
+    /*
+     * EFFECTS: Constructs an empty minimap.
+     */
+    public MinimapPanel() {
+        setOpaque(true);
+        setPreferredSize(new Dimension(PREFERRED_SIZE, PREFERRED_SIZE));
+    }
+
+    /*
+     * REQUIRES: level is not null; visibility is the player's current line of
+     * sight, or null if the whole maze is shown
+     * MODIFIES: this
+     * EFFECTS: Brings the minimap up to date with level. The mipmap is rebuilt
+     * only for a new maze; otherwise just the newly seen cells are added.
+     */
+    public void update(Level level, FieldOfView.Visibility visibility) {
+        int[][] current = level.getMaze().getMaze();
+        if (current != grid) {
+            grid = current;
+            mipmap = new MazeMipmap(current);
+            mipmap.markExplored(level.getExplored());
+        } else if (visibility != null) {
+            mipmap.markVisible(visibility);
+        }
+        mipmap.setFullView(visibility == null);
+        this.level = level;
+        this.visibility = visibility;
+        repaint();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Sets the area shown by the main view, in cells, and repaints if it
+     * changed.
+     */
+    public void setView(Rectangle2D view) {
+        if (!view.equals(this.view)) {
+            this.view = view;
+            repaint();
+        }
+    }
+
+    /*
+     * MODIFIES: g
+     * EFFECTS: Paints the maze scaled to fit the panel, then the entities and
+     * the outline of the main view.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setColor(getBackground() != null ? getBackground() : Color.LIGHT_GRAY);
+        g2.fillRect(0, 0, getWidth(), getHeight());
+        if (mipmap == null) {
+            return;
+        }
+        int k = mipmap.levelFor(getWidth(), getHeight());
+        BufferedImage image = mipmap.image(k);
+        double scale = Math.min((double) getWidth() / image.getWidth(), (double) getHeight() / image.getHeight());
+        int width = (int) (image.getWidth() * scale);
+        int height = (int) (image.getHeight() * scale);
+        int left = (getWidth() - width) / 2;
+        int top = (getHeight() - height) / 2;
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g2.drawImage(image, left, top, width, height, null);
+
+        double cell = scale / (1 << k); // Pixels per maze cell
+        paintItem(g2, level.getKey(), Color.YELLOW, left, top, cell);
+        paintItem(g2, level.getFlashlight(), Color.GREEN, left, top, cell);
+        Ghost ghost = level.getGhost();
+        if (ghost != null && (visibility == null || visibility.isVisible(ghost.getGhostX(), ghost.getGhostY()))) {
+            paintDot(g2, Color.RED, ghost.getGhostX(), ghost.getGhostY(), left, top, cell);
+        }
+        Player player = level.getPlayer();
+        paintDot(g2, Color.BLUE, player.getPlayerX(), player.getPlayerY(), left, top, cell);
+
+        if (view != null) {
+            g2.setColor(Color.ORANGE);
+            g2.drawRect(left + (int) (view.getX() * cell), top + (int) (view.getY() * cell),
+                    (int) (view.getWidth() * cell), (int) (view.getHeight() * cell));
+        }
+    }
+
+    /*
+     * MODIFIES: g2
+     * EFFECTS: Draws item if it has not been collected and the player has seen
+     * its cell.
+     */
+    private void paintItem(Graphics2D g2, Item item, Color color, int left, int top, double cell) {
+        if (item == null || item.isCollected()) {
+            return;
+        }
+        if (visibility == null || level.getExplored().isExplored(item.getItemX(), item.getItemY())) {
+            paintDot(g2, color, item.getItemX(), item.getItemY(), left, top, cell);
+        }
+    }
+
+    /*
+     * MODIFIES: g2
+     * EFFECTS: Draws a dot for the cell at (x, y), at least MIN_DOT_SIZE pixels
+     * across so it stays visible on large mazes.
+     */
+    private void paintDot(Graphics2D g2, Color color, int x, int y, int left, int top, double cell) {
+        int size = Math.max(MIN_DOT_SIZE, (int) Math.ceil(cell));
+        int centreX = left + (int) ((x + 0.5) * cell);
+        int centreY = top + (int) ((y + 0.5) * cell);
+        g2.setColor(color);
+        g2.fillRect(centreX - size / 2, centreY - size / 2, size, size);
+    }
+}
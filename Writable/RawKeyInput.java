@@ -0,0 +1,164 @@
+package ui;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Represents single-key input from the terminal. The terminal is switched to
+ * raw (non-canonical, no echo) mode with stty, and a daemon thread reads
+ * /dev/tty and hands each key to the game thread through a lock-free queue,
+ * waking it if it is parked. The game thread never blocks on the terminal, so
+ * it can keep the world moving while it waits for the next key.
+ */
+public class RawKeyInput implements AutoCloseable {
+    private static final String TTY = "/dev/tty";
+    private static final int NO_KEY = -1; // Returned by nextKey when no key arrived in time
+
+    private final String savedMode; // stty settings to restore on close
+    private final InputStream tty; // Terminal the keys are read from
+    private final ConcurrentLinkedQueue<Character> keys; // Keys read but not yet handled
+    private final Thread consumer; // Game thread to wake when a key arrives
+    private final Thread reader; // Daemon thread reading the terminal
+    private final Thread restoreOnExit; // Restores the terminal if the program exits in raw mode
+    private volatile boolean running; // False once close has been called
+
+    /*
+     * REQUIRES: savedMode is the terminal's stty settings before raw mode
+     * EFFECTS: Constructs an input that reads keys from tty for the calling
+     * thread, and starts the reader thread.
+     */
+    private RawKeyInput(String savedMode, InputStream tty) {
+        this.savedMode = savedMode;
+        this.tty = tty;
+        this.keys = new ConcurrentLinkedQueue<>();
+        this.consumer = Thread.currentThread();
+        this.running = true;
+        this.reader = new Thread(this::readKeys, "raw-key-input");
+        this.reader.setDaemon(true);
+        this.restoreOnExit = new Thread(() -> stty(savedMode), "raw-key-input-restore");
+        Runtime.getRuntime().addShutdownHook(restoreOnExit);
+        this.reader.start();
+    }
+
+    /*
+     * EFFECTS: Switches the terminal to raw mode and returns an input that
+     * delivers keys to the calling thread, or null if there is no interactive
+     * terminal or it cannot be switched. The system property "maze.raw"
+     * (true/false) forces the choice.
+     */
+    public static RawKeyInput open() {
+        String override = System.getProperty("maze.raw");
+        if (override != null ? !Boolean.parseBoolean(override) : System.console() == null) {
+            return null;
+        }
+        String saved = stty("-g");
+        // min 0 time 1: a read returns after at most 0.1s, so the reader notices close
+        if (saved == null || stty("-icanon -echo min 0 time 1") == null) {
+            return null;
+        }
+        try {
+            return new RawKeyInput(saved.trim(), new FileInputStream(TTY));
+        } catch (IOException e) {
+            stty(saved.trim());
+            return null;
+        }
+    }
+
+    /*
+     * EFFECTS: Runs stty with the given arguments on the terminal and returns
+     * its output, or null if it failed.
+     */
+    private static String stty(String arguments) {
+        try {
+            Process process = new ProcessBuilder("sh", "-c", "stty " + arguments + " < " + TTY)
+                    .redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            return process.waitFor() == 0 ? output : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Reads the terminal until closed, queueing each key and waking the
+     * game thread.
+     */
+    private void readKeys() {
+        byte[] buffer = new byte[64];
+        try {
+            while (running) {
+                int read = tty.read(buffer);
+                for (int i = 0; i < read; i++) {
+                    keys.offer((char) (buffer[i] & 0xFF));
+                }
+                if (read > 0) {
+                    LockSupport.unpark(consumer);
+                }
+            }
+        } catch (IOException e) {
+            running = false;
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /*
+     * EFFECTS: Returns true until the input is closed or the terminal fails.
+     */
+    public boolean isOpen() {
+        return running;
+    }
+
+    /*
+     * REQUIRES: called from the thread that opened this input
+     * MODIFIES: this
+     * EFFECTS: Returns the next key, waiting (parked, not spinning) until one
+     * arrives or until deadlineNanos on the System.nanoTime clock. Returns -1
+     * if the deadline passed, or the input was closed, with no key.
+     */
+    public int nextKey(long deadlineNanos) {
+        while (true) {
+            Character key = keys.poll();
+            if (key != null) {
+                return key;
+            }
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                return NO_KEY;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Stops the reader thread and restores the terminal to the mode it
+     * was in when this input was opened.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            reader.join(TimeUnit.SECONDS.toMillis(1));
+            tty.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Nothing left to read from; the terminal is restored below
+        }
+        stty(savedMode);
+        try {
+            Runtime.getRuntime().removeShutdownHook(restoreOnExit);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook restores the terminal
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ui;
+
+import javax.swing.Timer;
+
+/**
+ * Represents the GUI's game loop: a coalescing Swing timer that fires at a
+ * target frame rate on the event dispatch thread. Each frame first advances
+ * the simulation in fixed steps, as many as the elapsed time calls for, then
+ * renders with the fraction of a step that is left over, so that moving
+ * things can be drawn part of the way between their last two positions.
+ */
+public class RenderLoop {
+    private static final long MAX_CATCH_UP_NANOS = 250_000_000L; // Longest pause made up for with extra steps
+
+    private final Timer timer; // Fires once per frame
+    private final long stepNanos; // Length of one simulation step
+    private final Scene scene; // What is simulated and drawn
+    private final FrameStats stats; // Timings of recent frames
+    private long lastFrame; // System.nanoTime of the previous frame, or 0 before the first
+    private long accumulated; // Time not yet simulated
+    private boolean inFrame; // True while a frame is running, to ignore frames fired from modal dialogs
+
+    /**
+     * Represents something driven by the loop.
+     */
+    public interface Scene {
+        /*
+         * MODIFIES: this
+         * EFFECTS: Advances the simulation by one fixed step.
+         */
+        void step();
+
+        /*
+         * MODIFIES: this
+         * EFFECTS: Draws the current state. alpha in [0, 1) is how far time has
+         * moved towards the next step; frameNanos is the time since the last
+         * frame.
+         */
+        void render(double alpha, long frameNanos);
+    }
+
+    /*
+     * REQUIRES: fps > 0, stepNanos > 0, scene is not null
+     * EFFECTS: Constructs a stopped loop that runs scene at about fps frames per
+     * second, advancing it in steps of stepNanos.
+     */
+    public RenderLoop(int fps, long stepNanos, Scene scene) {
+        this.stepNanos = stepNanos;
+        this.scene = scene;
+        this.stats = new FrameStats();
+        this.timer = new Timer(Math.max(1, 1000 / fps), e -> frame());
+        this.timer.setCoalesce(true); // A late frame replaces, rather than queues behind, the next one
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Starts running frames, without making up for time spent stopped.
+     */
+    public void start() {
+        lastFrame = 0;
+        accumulated = 0;
+        stats.open();
+        timer.start();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Stops running frames.
+     */
+    public void stop() {
+        timer.stop();
+        stats.close();
+    }
+
+    /*
+     * EFFECTS: Returns the timings of recent frames.
+     */
+    public FrameStats getStats() {
+        return stats;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Runs one frame: the simulation steps that are due, then a render.
+     */
+    private void frame() {
+        if (inFrame) {
+            return;
+        }
+        inFrame = true;
+        try {
+            long now = System.nanoTime();
+            long elapsed = lastFrame == 0 ? 0 : now - lastFrame;
+            lastFrame = now;
+            if (elapsed > 0) {
+                stats.recordFrame(elapsed);
+            }
+            accumulated += Math.min(elapsed, MAX_CATCH_UP_NANOS);
+            while (accumulated >= stepNanos) {
+                scene.step();
+                accumulated -= stepNanos;
+            }
+            scene.render((double) accumulated / stepNanos, elapsed);
+        } finally {
+            inFrame = false;
+        }
+    }
+}
@@ -6,9 +6,21 @@ package persistence;
  */
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * EFFECTS: returns this as JSON object
  */
 public interface Writable {
     JSONObject toJson();
+
+    /*
+     * MODIFIES: sink
+     * EFFECTS: writes this to sink as the same object toJson() returns. By
+     * default the object is built first; classes that may be large override
+     * this to write their fields straight to the sink.
+     */
+    default void writeTo(JsonSink sink) throws IOException {
+        sink.json(toJson());
+    }
 }